@@ -0,0 +1,55 @@
+package com.millennialmedia.pyro.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.millennialmedia.pyro.test.mock.MockIFile;
+
+/**
+ * Tests that changes to the files an edited file imports discard the edited
+ * model's dependent properties, as delivered by the workspace listener. This
+ * lives in the model package to reach the manager's change handling.
+ *
+ * @author spaxton
+ */
+public class EditedDependenciesTest {
+	private static final List<IFile> NO_FILES = Collections.emptyList();
+
+	@Test
+	public void testImportedResourceChange() {
+		ModelManager manager = ModelManager.getManager();
+		IFile editedFile = new MockIFile("robot");
+		IFile resourceFile = new MockIFile("robot");
+		IFile otherFile = new MockIFile("robot");
+		RobotModel model = manager.getModel(editedFile, "*** Settings ***\nResource  resource.robot\n");
+		try {
+			model.getDependentProperties().put("dependent", "value");
+			manager.setEditedDependencies(editedFile, Arrays.asList(resourceFile));
+
+			// unrelated changes keep the properties
+			manager.filesChanged(Arrays.asList(otherFile), NO_FILES, NO_FILES);
+			Assert.assertEquals("value", model.getDependentProperties().get("dependent"));
+
+			manager.filesChanged(Arrays.asList(resourceFile), NO_FILES, NO_FILES);
+			Assert.assertTrue(model.getDependentProperties().isEmpty());
+
+			// and so does removing an imported file
+			model.getDependentProperties().put("dependent", "value");
+			manager.filesChanged(NO_FILES, NO_FILES, Arrays.asList(resourceFile));
+			Assert.assertTrue(model.getDependentProperties().isEmpty());
+		} finally {
+			manager.releaseModel(editedFile);
+		}
+
+		// a released file's dependencies are forgotten
+		model.getDependentProperties().put("dependent", "value");
+		manager.filesChanged(Arrays.asList(resourceFile), NO_FILES, NO_FILES);
+		Assert.assertEquals("value", model.getDependentProperties().get("dependent"));
+	}
+
+}
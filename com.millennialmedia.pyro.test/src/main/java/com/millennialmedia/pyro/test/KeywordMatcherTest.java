@@ -0,0 +1,99 @@
+package com.millennialmedia.pyro.test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.millennialmedia.pyro.model.util.KeywordMatcher;
+import com.millennialmedia.pyro.model.util.ModelUtil;
+
+/**
+ * Tests for keyword call resolution, including a comparison of the lookup cost
+ * against the original per-call regex matching over thousands of keyword
+ * definitions.
+ *
+ * @author spaxton
+ */
+public class KeywordMatcherTest {
+	private static final int DEFINITION_COUNT = 5000;
+	private static final int CALL_COUNT = 200;
+
+	@Test
+	public void testKeywordMatching() {
+		KeywordMatcher<String> matcher = new KeywordMatcher<String>(true);
+		matcher.addKeyword("Open Login Page", "plain");
+		matcher.addKeyword("Open ${page} Page", "embedded");
+		matcher.addKeyword("User ${name} has (${count}) items", "metacharacters");
+
+		// names are case-insensitive with spaces and underscores ignored
+		Assert.assertEquals("plain", matcher.get("open_login  page"));
+		// plain names take precedence over embedded arguments
+		Assert.assertEquals("plain", matcher.get("Open Login Page"));
+		Assert.assertEquals("embedded", matcher.get("Open Account Page"));
+		Assert.assertEquals("metacharacters", matcher.get("User bob has (3) items"));
+		Assert.assertNull(matcher.get("User bob has 3 items"));
+		Assert.assertNull(matcher.get("Close Login Page"));
+
+		// BDD prefixes are stripped one at a time
+		KeywordMatcher.Match<String> match = matcher.match("Given and Open Login Page");
+		Assert.assertEquals("plain", match.getDefinition());
+		Assert.assertEquals("Open Login Page", match.getKeywordName());
+		Assert.assertEquals(10, match.getOffset());
+		Assert.assertNull(matcher.match("Maybe Open Login Page"));
+
+		// library keywords don't support embedded arguments
+		KeywordMatcher<String> libraryMatcher = new KeywordMatcher<String>(false);
+		libraryMatcher.addKeyword("Open ${page} Page", "embedded");
+		Assert.assertNull(libraryMatcher.get("Open Account Page"));
+	}
+
+	@Test
+	public void testLookupCostAgainstManyDefinitions() {
+		Map<String, Integer> definitions = new LinkedHashMap<String, Integer>();
+		for (int i = 0; i < DEFINITION_COUNT; i++) {
+			// every tenth keyword embeds an argument
+			definitions.put(i % 10 == 0 ? "Keyword " + i + " With ${argument}" : "Keyword Number " + i, i);
+		}
+		String[] calls = new String[CALL_COUNT];
+		for (int i = 0; i < CALL_COUNT; i++) {
+			int target = (i * 7919) % DEFINITION_COUNT;
+			calls[i] = (i % 3 == 0 ? "When " : "") + (target % 10 == 0 ? "keyword " + target + " with value" : "keyword_number " + target);
+		}
+
+		long start = System.nanoTime();
+		KeywordMatcher<Integer> matcher = new KeywordMatcher<Integer>(true);
+		matcher.addKeywords(definitions);
+		long buildTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		Integer[] results = new Integer[CALL_COUNT];
+		for (int i = 0; i < CALL_COUNT; i++) {
+			results[i] = matcher.match(calls[i]).getDefinition();
+		}
+		long matchTime = System.nanoTime() - start;
+
+		// the original approach normalized and regex-matched every definition
+		// against every candidate string for each call
+		start = System.nanoTime();
+		for (int i = 0; i < CALL_COUNT; i++) {
+			Integer legacyResult = null;
+			for (String candidate : ModelUtil.getCandidateKeywordStrings(calls[i]).keySet()) {
+				for (Map.Entry<String, Integer> entry : definitions.entrySet()) {
+					if (ModelUtil.normalizeKeywordName(candidate, false).matches(
+							ModelUtil.normalizeKeywordName(entry.getKey(), true))) {
+						legacyResult = entry.getValue();
+					}
+				}
+			}
+			Assert.assertEquals("Different keyword resolved for " + calls[i], legacyResult, results[i]);
+		}
+		long legacyTime = System.nanoTime() - start;
+
+		// building the matcher once and resolving every call must still beat
+		// the per-call matching, which is orders of magnitude slower
+		Assert.assertTrue("Matcher slower than per-call regex matching", buildTime + matchTime < legacyTime);
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.millennialmedia.pyro.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+
+import com.millennialmedia.pyro.internal.parser.Cell;
+import com.millennialmedia.pyro.internal.parser.Row;
+
+/**
+ * The original split/regex-based tokenizing logic, kept here as a reference
+ * for both correctness and performance.
+ *
+ * @author spaxton
+ */
+class LegacyReader {
+	private static final String TAB = "\t";
+	private static final Pattern SPACE_PATTERN = Pattern.compile(" {2,}");
+	private static final Pattern PIPE_PATTERN = Pattern.compile(" \\|(?= )");
+
+	private boolean tabSeparated;
+
+	LegacyReader(boolean tabSeparated) {
+		this.tabSeparated = tabSeparated;
+	}
+
+	List<Row> getRows(String buffer) {
+		int rowOffset = 0;
+		List<Row> rows = new ArrayList<Row>();
+		String[] rawRows = buffer.split("\n");
+		for (int i = 0; i < rawRows.length; i++) {
+			String rawRow = rawRows[i];
+			int lineLength = rawRow.length() + ((i == rawRows.length - 1) ? 0 : 1);
+			String processedRow = rstrip(rawRow.replace("\u00A0", " "));
+			Row newRow = new Row();
+			newRow.getCells().addAll(tabSeparated ? splitTsvRow(processedRow) : splitTxtRow(processedRow));
+			newRow.setOffset(rowOffset);
+			newRow.setLength(lineLength);
+			rows.add(newRow);
+			rowOffset += lineLength;
+		}
+		return rows;
+	}
+
+	private String rstrip(String src) {
+		int i = src.length() - 1;
+		while (i >= 0 && Character.isWhitespace(src.charAt(i))) {
+			i--;
+		}
+		return src.substring(0, i + 1);
+	}
+
+	private List<Cell> splitTxtRow(String row) {
+		String processedRow = row.replace(TAB, "  ");
+		String[] rawCells = null;
+		if (row.startsWith("| ")) {
+			if (processedRow.endsWith(" |")) {
+				processedRow = processedRow.substring(1, processedRow.length() - 2);
+			} else {
+				processedRow = processedRow.substring(1);
+			}
+			rawCells = PIPE_PATTERN.split(processedRow);
+		} else {
+			rawCells = SPACE_PATTERN.split(processedRow);
+		}
+
+		List<Cell> cells = new ArrayList<Cell>();
+		int offset = 0;
+		processedRow = row;
+		for (int i = 0; i < rawCells.length; i++) {
+			String rawCell = rawCells[i];
+			offset = offset + processedRow.indexOf(rawCell);
+			cells.add(createCell(rawCell, offset));
+			offset = offset + rawCell.length();
+			if (i < rawCells.length - 1) {
+				processedRow = row.substring(offset);
+			}
+		}
+		return cells;
+	}
+
+	private List<Cell> splitTsvRow(String row) {
+		List<Cell> cells = new ArrayList<Cell>();
+		int offset = 0;
+		StringTokenizer tokenizer = new StringTokenizer(row, TAB, true);
+		boolean firstToken = true;
+		while (tokenizer.hasMoreTokens()) {
+			String token = tokenizer.nextToken();
+			if (!TAB.equals(token)) {
+				cells.add(createCell(token.trim(), offset + token.indexOf(token.trim())));
+			} else if (firstToken) {
+				cells.add(createCell("", offset));
+			}
+			firstToken = false;
+			offset += token.length();
+		}
+		return cells;
+	}
+
+	private Cell createCell(String token, int offset) {
+		Cell newCell = new Cell();
+		newCell.setOffsetInRow(offset);
+		newCell.setParsedContents(token);
+		return newCell;
+	}
+
+}
@@ -0,0 +1,271 @@
+package com.millennialmedia.pyro.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.millennialmedia.pyro.model.ModelCacheStatistics;
+import com.millennialmedia.pyro.model.ModelManager;
+import com.millennialmedia.pyro.model.RobotModel;
+import com.millennialmedia.pyro.test.mock.MockIFile;
+
+/**
+ * Exercises the model cache from many threads at once, checking that a file is
+ * only parsed once no matter how many threads request it, and that
+ * invalidations racing with lookups never break the cache. Bulk parsing of
+ * many files at once and eviction beyond the cache's budget are also covered.
+ *
+ * @author spaxton
+ */
+public class ModelManagerStressTest {
+	private static final int THREAD_COUNT = 16;
+	private static final int FILE_COUNT = 8;
+	private static final int LOOKUPS_PER_THREAD = 1000;
+
+	@Test
+	public void testConcurrentRequestsShareOneParse() throws Exception {
+		final CountingFile file = new CountingFile(loadFile("samplefiles/parserTest.robot"), 50);
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		final List<RobotModel> models = Collections.synchronizedList(new ArrayList<RobotModel>());
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						startLatch.await();
+						models.add(ModelManager.getManager().getModel(file));
+					} catch (Throwable t) {
+						failures.add(t);
+					}
+				}
+			});
+		}
+		runAll(threads, startLatch);
+
+		Assert.assertTrue("Unexpected failures: " + failures, failures.isEmpty());
+		Assert.assertEquals("The file should have been read exactly once", 1, file.getReadCount());
+		Assert.assertEquals(THREAD_COUNT, models.size());
+		for (RobotModel model : models) {
+			Assert.assertSame("All threads should share the same model", models.get(0), model);
+		}
+		Assert.assertEquals(4, models.get(0).getTables().size());
+		ModelManager.getManager().invalidate(file);
+	}
+
+	@Test
+	public void testLookupsRacingWithInvalidation() throws Exception {
+		String contents = loadFile("samplefiles/parserTest.robot");
+		final CountingFile[] files = new CountingFile[FILE_COUNT];
+		for (int i = 0; i < FILE_COUNT; i++) {
+			files[i] = new CountingFile(contents, 0);
+		}
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicInteger invalidations = new AtomicInteger();
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			final int threadNumber = i;
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						startLatch.await();
+						for (int j = 0; j < LOOKUPS_PER_THREAD; j++) {
+							RobotModel model = ModelManager.getManager().getModel(files[(threadNumber + j) % FILE_COUNT]);
+							Assert.assertNotNull("Model should never be null", model);
+						}
+					} catch (Throwable t) {
+						failures.add(t);
+					}
+				}
+			});
+		}
+		Thread invalidator = new Thread() {
+			@Override
+			public void run() {
+				try {
+					startLatch.await();
+					int i = 0;
+					while (!done.get()) {
+						ModelManager.getManager().invalidate(files[i++ % FILE_COUNT]);
+						invalidations.incrementAndGet();
+						Thread.yield();
+					}
+				} catch (Throwable t) {
+					failures.add(t);
+				}
+			}
+		};
+		invalidator.start();
+		runAll(threads, startLatch);
+		done.set(true);
+		invalidator.join();
+
+		Assert.assertTrue("Unexpected failures: " + failures, failures.isEmpty());
+		for (CountingFile file : files) {
+			// without an invalidation in between, the cached model is reused
+			RobotModel model = ModelManager.getManager().getModel(file);
+			int readCount = file.getReadCount();
+			Assert.assertSame(model, ModelManager.getManager().getModel(file));
+			Assert.assertEquals(readCount, file.getReadCount());
+			Assert.assertEquals(4, model.getTables().size());
+			// a file is never parsed more often than it's invalidated (plus
+			// the initial parse)
+			Assert.assertTrue(readCount <= invalidations.get() + 1);
+			ModelManager.getManager().invalidate(file);
+		}
+	}
+
+	@Test
+	public void testBulkParse() throws Exception {
+		String contents = loadFile("samplefiles/parserTest.robot");
+		List<IFile> files = new ArrayList<IFile>();
+		for (int i = 0; i < FILE_COUNT * 4; i++) {
+			files.add(new CountingFile(contents, 10));
+		}
+		// one file is already cached and shouldn't be parsed again
+		RobotModel cachedModel = ModelManager.getManager().getModel(files.get(0));
+
+		final AtomicInteger worked = new AtomicInteger();
+		Map<IFile, RobotModel> models = ModelManager.getManager().getModels(files, new NullProgressMonitor() {
+			@Override
+			public void worked(int work) {
+				worked.addAndGet(work);
+			}
+		});
+
+		Assert.assertEquals(files.size(), models.size());
+		Assert.assertEquals(files.size(), worked.get());
+		Assert.assertSame(cachedModel, models.get(files.get(0)));
+		for (IFile file : files) {
+			Assert.assertEquals(1, ((CountingFile) file).getReadCount());
+			Assert.assertSame("Models should be published into the cache", models.get(file), ModelManager
+					.getManager().getModel(file));
+			Assert.assertEquals(4, models.get(file).getTables().size());
+			ModelManager.getManager().invalidate(file);
+		}
+	}
+
+	@Test
+	public void testCacheBudgetEvictsLeastRecentlyUsed() throws Exception {
+		String contents = loadFile("samplefiles/parserTest.robot");
+		ModelManager manager = ModelManager.getManager();
+		long budget = manager.getCacheBudget();
+		CountingFile[] files = new CountingFile[FILE_COUNT];
+		for (int i = 0; i < FILE_COUNT; i++) {
+			files[i] = new CountingFile(contents, 0);
+		}
+		try {
+			RobotModel pinnedModel = manager.getModel(files[0]);
+			manager.getModel(files[0], contents);
+			// start out with only the pinned model, with room for two others
+			manager.setCacheBudget(0);
+			long modelWeight = manager.getCacheStatistics().getWeight();
+			manager.setCacheBudget(modelWeight * 3);
+
+			ModelCacheStatistics before = manager.getCacheStatistics();
+			for (int i = 1; i < FILE_COUNT; i++) {
+				manager.getModel(files[i]);
+			}
+			// the most recent files are still cached, and the pinned one is
+			// never evicted
+			manager.getModel(files[FILE_COUNT - 1]);
+			Assert.assertSame(pinnedModel, manager.getModel(files[0]));
+			Assert.assertEquals(1, files[FILE_COUNT - 1].getReadCount());
+			Assert.assertEquals(1, files[0].getReadCount());
+			manager.getModel(files[1]);
+			Assert.assertEquals(2, files[1].getReadCount());
+
+			ModelCacheStatistics after = manager.getCacheStatistics();
+			Assert.assertEquals(FILE_COUNT, after.getMissCount() - before.getMissCount());
+			Assert.assertEquals(2, after.getHitCount() - before.getHitCount());
+			Assert.assertEquals(FILE_COUNT - 2, after.getEvictionCount() - before.getEvictionCount());
+			Assert.assertTrue(after.getWeight() <= modelWeight * 3);
+
+			// once released, the pinned model can be evicted too
+			manager.releaseModel(files[0]);
+			manager.setCacheBudget(0);
+			Assert.assertEquals(0, manager.getCacheStatistics().getModelCount());
+		} finally {
+			manager.setCacheBudget(budget);
+			for (CountingFile file : files) {
+				manager.invalidate(file);
+			}
+		}
+	}
+
+	private void runAll(List<Thread> threads, CountDownLatch startLatch) throws InterruptedException {
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		startLatch.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	private String loadFile(String testFileName) throws IOException {
+		InputStream stream = null;
+		try {
+			stream = this.getClass().getResourceAsStream(testFileName);
+			return new Scanner(stream).useDelimiter("\\A").next();
+		} finally {
+			if (stream != null) {
+				stream.close();
+			}
+		}
+	}
+
+	/**
+	 * A mock file that serves fixed contents, counting each read and optionally
+	 * slowing it down to widen race windows.
+	 */
+	private static class CountingFile extends MockIFile {
+		private String contents;
+		private long readDelay;
+		private AtomicInteger readCount = new AtomicInteger();
+
+		CountingFile(String contents, long readDelay) {
+			super("txt");
+			this.contents = contents;
+			this.readDelay = readDelay;
+		}
+
+		@Override
+		public InputStream getContents() throws CoreException {
+			readCount.incrementAndGet();
+			if (readDelay > 0) {
+				try {
+					Thread.sleep(readDelay);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return new ByteArrayInputStream(contents.getBytes());
+		}
+
+		int getReadCount() {
+			return readCount.get();
+		}
+	}
+
+}
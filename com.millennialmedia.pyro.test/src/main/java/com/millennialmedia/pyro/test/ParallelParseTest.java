@@ -0,0 +1,118 @@
+package com.millennialmedia.pyro.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.resources.IFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.millennialmedia.pyro.internal.parser.Parser;
+import com.millennialmedia.pyro.test.mock.MockIFile;
+
+/**
+ * Parses a set of different files on many threads at once and checks that
+ * every resulting model is identical to the one produced by a serial parse of
+ * the same file.
+ *
+ * @author spaxton
+ */
+public class ParallelParseTest {
+	private static final int THREAD_COUNT = 8;
+	private static final int ROUNDS = 25;
+
+	@Test
+	public void testParallelParsesMatchSerialParses() throws Exception {
+		final List<IFile> files = new ArrayList<IFile>();
+		final List<String> buffers = new ArrayList<String>();
+		String robotBuffer = loadFile("samplefiles/parserTest.robot");
+		String tsvBuffer = loadFile("samplefiles/parserTest.tsv");
+		files.add(new MockIFile("robot"));
+		buffers.add(robotBuffer);
+		files.add(new MockIFile("tsv"));
+		buffers.add(tsvBuffer);
+		// vary the table contents so that each file produces a distinct model
+		for (int i = 1; i <= 6; i++) {
+			files.add(new MockIFile(i % 2 == 0 ? "tsv" : "robot"));
+			buffers.add(i % 2 == 0 ? tsvBuffer + generateTables(i, "\t") : robotBuffer + generateTables(i, "    "));
+		}
+
+		final List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < files.size(); i++) {
+			expected.add(ParserTest.describe(new Parser(files.get(i)).parse(buffers.get(i))));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		try {
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for (int t = 0; t < THREAD_COUNT; t++) {
+				final Random random = new Random(t);
+				results.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						List<Integer> order = new ArrayList<Integer>();
+						for (int i = 0; i < files.size(); i++) {
+							order.add(i);
+						}
+						for (int round = 0; round < ROUNDS; round++) {
+							Collections.shuffle(order, random);
+							for (int i : order) {
+								String actual = ParserTest.describe(new Parser(files.get(i)).parse(buffers.get(i)));
+								Assert.assertEquals("Parallel parse differs from serial parse of file " + i, expected.get(i),
+										actual);
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private String generateTables(int seed, String separator) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("*** Test Cases ***\n");
+		for (int i = 0; i < seed * 5; i++) {
+			builder.append("Generated Test ").append(seed).append('_').append(i).append('\n');
+			builder.append(separator).append("[Documentation]").append(separator).append("Test ").append(i).append('\n');
+			builder.append(separator).append("Generated Keyword ").append(i % 3).append(separator).append("${arg}").append('\n');
+			builder.append(separator).append("Log").append(separator).append("message ").append(i).append('\n');
+		}
+		builder.append("*** Keywords ***\n");
+		for (int i = 0; i < 3; i++) {
+			builder.append("Generated Keyword ").append(i).append('\n');
+			builder.append(separator).append("[Arguments]").append(separator).append("${arg}").append('\n');
+			builder.append(separator).append(":FOR").append(separator).append("${item}").append(separator).append("IN")
+					.append(separator).append("@{list}").append('\n');
+			builder.append(separator).append("\\").append(separator).append("Log").append(separator).append("${item}").append('\n');
+		}
+		return builder.toString();
+	}
+
+	private String loadFile(String testFileName) throws IOException {
+		InputStream stream = null;
+		try {
+			stream = this.getClass().getResourceAsStream(testFileName);
+			return new Scanner(stream).useDelimiter("\\A").next();
+		} finally {
+			if (stream != null) {
+				stream.close();
+			}
+		}
+	}
+
+}
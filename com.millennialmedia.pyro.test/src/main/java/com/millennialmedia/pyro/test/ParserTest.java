@@ -3,17 +3,24 @@ package com.millennialmedia.pyro.test;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
 
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.millennialmedia.pyro.internal.parser.Parser;
 import com.millennialmedia.pyro.model.Line;
+import com.millennialmedia.pyro.model.LineIndex;
+import com.millennialmedia.pyro.model.ModelManager;
 import com.millennialmedia.pyro.model.RobotModel;
 import com.millennialmedia.pyro.model.Step;
+import com.millennialmedia.pyro.model.StepSegment;
 import com.millennialmedia.pyro.model.StepSegment.SegmentType;
 import com.millennialmedia.pyro.model.Table;
 import com.millennialmedia.pyro.model.Table.TableType;
@@ -270,6 +277,251 @@ public class ParserTest {
 	
 	
 	
+	@Test
+	public void testIncrementalReparseMatchesFullParse() throws Exception {
+		String buffer = loadFile("samplefiles/parserTest.robot");
+
+		// edit an argument inside a testcase
+		assertIncrementalReparse(buffer, "Run Keyword If  ${True}", "Run Keyword If  ${False}", true);
+		// add a new step to a keyword
+		assertIncrementalReparse(buffer, "    log  Test\n", "    log  Test\n    log  Another\n", true);
+		// rename a testcase
+		assertIncrementalReparse(buffer, "TestATemplate", "Renamed Test", true);
+		// split one keyword into two
+		assertIncrementalReparse(buffer, "  Pass execution\n\ntest keyword", "\nnew keyword\n  Pass execution\n\ntest keyword", true);
+		// delete the last line of the file
+		assertIncrementalReparse(buffer, "\n# this last line has no terminating linefeed", "", true);
+
+		// table-level and settings edits can't be handled incrementally
+		assertIncrementalReparse(buffer, "TestATemplate", "*** Keywords ***\nTestATemplate", false);
+		assertIncrementalReparse(buffer, "Force Tags  hello", "Force Tags  goodbye", false);
+	}
+
+	@Test
+	public void testLineIndexMatchesLineChain() throws Exception {
+		String buffer = loadFile("samplefiles/parserTest.robot");
+		RobotModel model = new Parser(mockTxtFile).parse(buffer);
+		assertLineIndex(model, buffer.length());
+
+		// the index must be rebuilt after an incremental reparse
+		int offset = buffer.indexOf("    log  Test");
+		String newBuffer = buffer.substring(0, offset) + "    log  Another\n" + buffer.substring(offset);
+		RobotModel newModel = new Parser(mockTxtFile).reparse(model, newBuffer, offset, 0, "    log  Another\n".length());
+		Assert.assertNotNull(newModel);
+		assertLineIndex(newModel, newBuffer.length());
+		assertLineIndex(model, buffer.length());
+	}
+
+	@Test
+	public void testBackgroundParseOfEditedModel() throws Exception {
+		String buffer = loadFile("samplefiles/parserTest.robot");
+		IFile editedFile = new MockIFile("txt");
+		RobotModel model = ModelManager.getManager().getModel(editedFile, buffer);
+		String before = describe(model);
+
+		// a canceled parse produces nothing
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		Assert.assertNull(new Parser(mockTxtFile).parse(buffer, monitor));
+		Assert.assertNull(ModelManager.getManager().parse(model, buffer, monitor));
+
+		// the edited model is left alone when the new model is published
+		int offset = buffer.indexOf("    log  Test");
+		String newBuffer = buffer.substring(0, offset) + "    log  Another\n" + buffer.substring(offset);
+		RobotModel newModel = ModelManager.getManager().parse(model, newBuffer, new NullProgressMonitor());
+		Assert.assertNotNull(newModel);
+		Assert.assertEquals(before, describe(model));
+		ModelManager.getManager().replaceModel(model, newModel);
+		Assert.assertEquals(before, describe(model));
+		Assert.assertEquals(describe(new Parser(mockTxtFile).parse(newBuffer)), describe(newModel));
+
+		// models that aren't being edited can't be reparsed this way
+		Assert.assertNull(ModelManager.getManager().parse(new RobotModel(), buffer, null));
+	}
+
+	@Test
+	public void testPublishedModelSnapshots() throws Exception {
+		String buffer = loadFile("samplefiles/parserTest.robot");
+		IFile editedFile = new MockIFile("txt");
+		RobotModel model = ModelManager.getManager().getModel(editedFile, buffer);
+		String before = describe(model);
+
+		int offset = buffer.indexOf("    log  Test");
+		String newBuffer = buffer.substring(0, offset) + "    log  Another\n" + buffer.substring(offset);
+		RobotModel newModel = ModelManager.getManager().parse(model, newBuffer, null);
+		ModelManager.getManager().replaceModel(model, newModel);
+
+		// the previous snapshot is untouched, and further edits are parsed
+		// against the newly-published one
+		Assert.assertEquals(before, describe(model));
+		Assert.assertEquals(describe(new Parser(mockTxtFile).parse(newBuffer)), describe(newModel));
+		Assert.assertNull(ModelManager.getManager().parse(model, buffer, null));
+		Assert.assertNotNull(ModelManager.getManager().parse(newModel, buffer, null));
+
+		// undoing the edit only reparses the testcase, and the new model's
+		// copies of the other lines share their segments with the published
+		// model until they're modified
+		String published = describe(newModel);
+		RobotModel undoneModel = ModelManager.getManager().parse(newModel, buffer, offset, "    log  Another\n".length(), 0,
+				null);
+		Assert.assertEquals(describe(new Parser(mockTxtFile).parse(buffer)), describe(undoneModel));
+		Assert.assertEquals(published, describe(newModel));
+		Step publishedStep = getFirstStep(newModel);
+		Step copiedStep = getFirstStep(undoneModel);
+		Assert.assertNotSame(publishedStep, copiedStep);
+		Assert.assertSame(publishedStep.getSegments().get(0).getValue(), copiedStep.getSegments().get(0).getValue());
+		copiedStep.getSegments().get(0).setSegmentType(SegmentType.UNKNOWN);
+		Assert.assertEquals(published, describe(newModel));
+		ModelManager.getManager().releaseModel(editedFile);
+	}
+
+	@Test
+	public void testDiscardDependentProperties() throws Exception {
+		String buffer = loadFile("samplefiles/parserTest.robot");
+		IFile editedFile = new MockIFile("txt");
+		RobotModel model = ModelManager.getManager().getModel(editedFile, buffer);
+		model.getCustomProperties().put("own", "value");
+		model.getDependentProperties().put("dependent", "value");
+
+		// dependent properties outlive edits to the file itself
+		RobotModel newModel = ModelManager.getManager().parse(model, buffer + "\n", null);
+		ModelManager.getManager().replaceModel(model, newModel);
+		Assert.assertEquals("value", newModel.getDependentProperties().get("dependent"));
+		Assert.assertNull(newModel.getCustomProperties().get("own"));
+
+		// only data derived from other files is discarded
+		ModelManager.getManager().discardDependentProperties(new MockIFile("txt"));
+		Assert.assertTrue(newModel.getDependentProperties().containsKey("dependent"));
+		ModelManager.getManager().discardDependentProperties(editedFile);
+		Assert.assertTrue(newModel.getDependentProperties().isEmpty());
+		Assert.assertEquals("value", model.getCustomProperties().get("own"));
+		ModelManager.getManager().releaseModel(editedFile);
+	}
+
+	@Test
+	public void testStepSegmentViews() throws Exception {
+		RobotModel model = new Parser(mockTxtFile).parse("*** Test Cases ***\nTest\n    log  Test\n    log  Test  # note\n");
+		Step first = (Step) model.getFirstLine().getNextLine().getNextLine();
+		Step second = (Step) first.getNextLine();
+		List<StepSegment> segments = second.getSegments();
+
+		// repeated cell contents share a single string
+		Assert.assertSame(first.getSegments().get(0).getValue(), segments.get(0).getValue());
+		Assert.assertSame(first.getSegments().get(1).getValue(), segments.get(1).getValue());
+
+		// changes made through a view are seen by the step
+		segments.get(0).setSegmentType(SegmentType.UNKNOWN);
+		Assert.assertEquals(SegmentType.UNKNOWN, second.getSegments().get(0).getSegmentType());
+
+		int size = segments.size();
+		StepSegment removed = segments.remove(0);
+		Assert.assertEquals(size - 1, second.getSegments().size());
+		Assert.assertEquals("log", removed.getValue());
+		Assert.assertEquals(SegmentType.UNKNOWN, removed.getSegmentType());
+		segments.add(0, removed);
+		Assert.assertEquals(size, segments.size());
+		Assert.assertEquals("log", segments.get(0).getValue());
+		Assert.assertEquals(4, segments.get(0).getOffsetInLine());
+	}
+
+	private Step getFirstStep(RobotModel model) {
+		Line line = model.getFirstLine();
+		while (!(line instanceof Step)) {
+			line = line.getNextLine();
+		}
+		return (Step) line;
+	}
+
+	private void assertLinesChained(RobotModel model) {
+		// the tables and definitions must only refer to the model's own lines
+		Set<Line> chainedLines = Collections.newSetFromMap(new IdentityHashMap<Line, Boolean>());
+		for (Line line = model.getFirstLine(); line != null; line = line.getNextLine()) {
+			chainedLines.add(line);
+		}
+		for (Table table : model.getTables()) {
+			Assert.assertTrue("Table not in the line chain", chainedLines.contains(table));
+			for (Line line : table.getTableLines()) {
+				Assert.assertTrue("Table line not in the line chain", chainedLines.contains(line));
+				if (line instanceof TableItemDefinition) {
+					for (Step step : ((TableItemDefinition) line).getSteps()) {
+						Assert.assertTrue("Step not in the line chain", chainedLines.contains(step));
+					}
+				}
+			}
+		}
+	}
+
+	private void assertLineIndex(RobotModel model, int length) {
+		LineIndex lineIndex = model.getLineIndex();
+		for (int offset = 0; offset <= length; offset++) {
+			// compare against a walk of the whole line chain
+			Line lineAtOffset = null;
+			Line lineEndingAfter = null;
+			Table table = null;
+			TableItemDefinition tableItem = null;
+			for (Line line = model.getFirstLine(); line != null; line = line.getNextLine()) {
+				if (line.getLineOffset() <= offset) {
+					lineAtOffset = line;
+					if (line instanceof Table) {
+						table = (Table) line;
+						tableItem = null;
+					} else if (line instanceof TableItemDefinition) {
+						tableItem = (TableItemDefinition) line;
+					}
+				}
+				if (lineEndingAfter == null && line.getLineOffset() + line.getLineLength() > offset) {
+					lineEndingAfter = line;
+				}
+			}
+			Assert.assertSame("Wrong line at offset " + offset, lineAtOffset, lineIndex.getLineAtOffset(offset));
+			Assert.assertSame("Wrong line ending after offset " + offset, lineEndingAfter, lineIndex.getFirstLineEndingAfter(offset));
+			Assert.assertSame("Wrong table at offset " + offset, table, lineIndex.getContainingTable(offset));
+			Assert.assertSame("Wrong table item at offset " + offset, tableItem, lineIndex.getContainingTableItem(offset));
+		}
+	}
+
+	private void assertIncrementalReparse(String buffer, String oldText, String newText, boolean expectIncremental) {
+		int offset = buffer.indexOf(oldText);
+		Assert.assertTrue("Edit text not found in sample file", offset >= 0);
+		String newBuffer = buffer.substring(0, offset) + newText + buffer.substring(offset + oldText.length());
+
+		RobotModel model = new Parser(mockTxtFile).parse(buffer);
+		String before = describe(model);
+		RobotModel newModel = new Parser(mockTxtFile).reparse(model, newBuffer, offset, oldText.length(), newText.length());
+		Assert.assertEquals("Unexpected incremental reparse result", expectIncremental, newModel != null);
+		Assert.assertEquals("Incremental reparse modified the previous model", before, describe(model));
+		if (newModel != null) {
+			RobotModel expected = new Parser(mockTxtFile).parse(newBuffer);
+			Assert.assertEquals("Incremental reparse differs from full parse", describe(expected), describe(newModel));
+			assertLinesChained(newModel);
+		}
+	}
+
+	static String describe(RobotModel model) {
+		StringBuilder builder = new StringBuilder();
+		for (Line line = model.getFirstLine(); line != null; line = line.getNextLine()) {
+			builder.append(line.getClass().getSimpleName()).append(' ').append(line.getLineOffset()).append(' ')
+					.append(line.getLineLength());
+			if (line instanceof TableItemDefinition) {
+				builder.append(' ').append(((TableItemDefinition) line).getName()).append(' ')
+						.append(((TableItemDefinition) line).getSteps().size());
+			} else if (line instanceof Step) {
+				for (StepSegment segment : ((Step) line).getSegments()) {
+					builder.append(" [").append(segment.getValue()).append(' ').append(segment.getSegmentType()).append(']');
+				}
+			}
+			builder.append('\n');
+		}
+		for (Table table : model.getTables()) {
+			builder.append(table.getTableType());
+			for (Line line : table.getTableLines()) {
+				builder.append(' ').append(line.getLineOffset());
+			}
+			builder.append('\n');
+		}
+		return builder.toString();
+	}
+
 	private String loadFile(String testFileName) throws IOException {
 		InputStream stream = null;
 		try {
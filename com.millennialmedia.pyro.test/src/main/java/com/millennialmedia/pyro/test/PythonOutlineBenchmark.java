@@ -0,0 +1,155 @@
+package com.millennialmedia.pyro.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.python.pydev.core.IModule;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.IToken;
+import org.python.pydev.core.MisconfigurationException;
+import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.plugin.PydevPlugin;
+import org.python.pydev.shared_core.structure.Tuple;
+
+import com.millennialmedia.pyro.python.PythonDefinition;
+import com.millennialmedia.pyro.python.PythonDefinition.DefinitionType;
+import com.millennialmedia.pyro.python.PythonModuleOutline;
+import com.millennialmedia.pyro.python.PythonSourceScanner;
+
+/**
+ * Compares the lightweight Python scanner against the PyDev module extraction
+ * it replaced ({@link AbstractModule#createModule}), over every Python file
+ * below a folder. Both sides read the file from disk, and the top-level class
+ * and function names each one finds are compared.
+ *
+ * This isn't part of the regular test run (its name doesn't match the test
+ * patterns). Run it as a JUnit Plug-in Test in a workspace where PyDev has an
+ * interpreter configured, pointing -Dpyro.benchmark.sources at a folder on that
+ * interpreter's pythonpath (ex. its standard library or site-packages), since
+ * PyDev only builds modules for files it can place on a pythonpath. Files it
+ * can't place are skipped.
+ *
+ * @author spaxton
+ */
+public class PythonOutlineBenchmark {
+	private static final String SOURCES_PROPERTY = "pyro.benchmark.sources";
+	private static final int ITERATIONS = 5;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static class SourceFile {
+		private File file;
+		private String moduleName;
+		private IPythonNature nature;
+	}
+
+	@Test
+	public void compareWithPyDev() throws Exception {
+		String sourcesPath = System.getProperty(SOURCES_PROPERTY);
+		Assume.assumeTrue(sourcesPath != null);
+
+		List<File> files = new ArrayList<File>();
+		collectPythonFiles(new File(sourcesPath), files);
+		List<SourceFile> sourceFiles = new ArrayList<SourceFile>();
+		long totalBytes = 0;
+		for (File file : files) {
+			Tuple<IPythonNature, String> infoForFile = PydevPlugin.getInfoForFile(file);
+			if (infoForFile != null) {
+				SourceFile sourceFile = new SourceFile();
+				sourceFile.file = file;
+				sourceFile.nature = infoForFile.o1;
+				sourceFile.moduleName = infoForFile.o2;
+				sourceFiles.add(sourceFile);
+				totalBytes += file.length();
+			}
+		}
+		Assume.assumeTrue(!sourceFiles.isEmpty());
+
+		// names found by one side but not the other
+		int mismatchedFiles = 0;
+		for (SourceFile sourceFile : sourceFiles) {
+			Set<String> pydevNames = getPyDevNames(sourceFile);
+			if (pydevNames != null && !pydevNames.equals(getScannerNames(sourceFile))) {
+				mismatchedFiles++;
+			}
+		}
+
+		long pydevTime = Long.MAX_VALUE;
+		long scannerTime = Long.MAX_VALUE;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			for (SourceFile sourceFile : sourceFiles) {
+				getPyDevNames(sourceFile);
+			}
+			pydevTime = Math.min(pydevTime, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			for (SourceFile sourceFile : sourceFiles) {
+				getScannerNames(sourceFile);
+			}
+			scannerTime = Math.min(scannerTime, System.nanoTime() - start);
+		}
+
+		System.out.println(String.format(
+				"%d of %d python files (%d bytes): PyDev modules %.1f MB/s, scanner %.1f MB/s, %d files with different names",
+				sourceFiles.size(), files.size(), totalBytes, throughput(totalBytes, pydevTime),
+				throughput(totalBytes, scannerTime), mismatchedFiles));
+	}
+
+	private Set<String> getPyDevNames(SourceFile sourceFile) throws IOException {
+		IModule module;
+		try {
+			module = AbstractModule.createModule(sourceFile.moduleName, sourceFile.file, sourceFile.nature, true);
+		} catch (MisconfigurationException e) {
+			return null;
+		}
+		if (module == null) {
+			return null;
+		}
+		Set<String> names = new TreeSet<String>();
+		for (IToken token : module.getGlobalTokens()) {
+			if (token.getType() == IToken.TYPE_CLASS || token.getType() == IToken.TYPE_FUNCTION) {
+				names.add(token.getRepresentation());
+			}
+		}
+		return names;
+	}
+
+	private Set<String> getScannerNames(SourceFile sourceFile) throws IOException {
+		String contents = new String(Files.readAllBytes(sourceFile.file.toPath()), UTF8);
+		PythonModuleOutline outline = PythonSourceScanner.scan(contents);
+		Set<String> names = new TreeSet<String>();
+		for (PythonDefinition definition : outline.getDefinitions()) {
+			if (definition.getType() == DefinitionType.CLASS || definition.getType() == DefinitionType.FUNCTION) {
+				names.add(definition.getName());
+			}
+		}
+		return names;
+	}
+
+	private void collectPythonFiles(File directory, List<File> files) {
+		File[] children = directory.listFiles();
+		if (children == null) {
+			return;
+		}
+		for (File child : children) {
+			if (child.isDirectory()) {
+				collectPythonFiles(child, files);
+			} else if (child.getName().endsWith(".py")) {
+				files.add(child);
+			}
+		}
+	}
+
+	private double throughput(long bytes, long nanos) {
+		return (bytes / (1024.0 * 1024.0)) / (Math.max(nanos, 1) / 1e9);
+	}
+
+}
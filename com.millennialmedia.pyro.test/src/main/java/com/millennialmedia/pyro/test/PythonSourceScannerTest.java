@@ -0,0 +1,139 @@
+package com.millennialmedia.pyro.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.millennialmedia.pyro.python.PythonDefinition;
+import com.millennialmedia.pyro.python.PythonDefinition.DefinitionType;
+import com.millennialmedia.pyro.python.PythonImport;
+import com.millennialmedia.pyro.python.PythonModuleOutline;
+import com.millennialmedia.pyro.python.PythonSourceScanner;
+
+/**
+ * Tests for the lightweight Python scanner that extracts library keywords and
+ * variable file names without a full parse.
+ *
+ * @see PythonOutlineBenchmark
+ *
+ * @author spaxton
+ */
+public class PythonSourceScannerTest {
+	private static final int CLASS_COUNT = 500;
+
+	@Test
+	public void testLibraryOutline() throws Exception {
+		PythonModuleOutline outline = PythonSourceScanner.scan(loadFile("samplefiles/SampleLibrary.py"));
+
+		Assert.assertEquals(Arrays.asList("module_keyword"), names(outline.getDefinitions(DefinitionType.FUNCTION)));
+		Assert.assertEquals(Arrays.asList("SampleLibrary", "Derived"), names(outline.getDefinitions(DefinitionType.CLASS)));
+
+		// decorated, async and conditionally defined methods are members, but
+		// functions nested in methods and the docstring contents aren't
+		PythonDefinition library = outline.findDefinition("samplelibrary");
+		Assert.assertEquals(Arrays.asList("BaseHelper", "object"), library.getBaseClasses());
+		Assert.assertEquals(Arrays.asList("__init__", "decorated_keyword", "Open_Browser", "async_keyword", "_private_helper",
+				"Inner", "conditional_keyword"), names(library.getMembers()));
+		Assert.assertEquals(Arrays.asList("inner_keyword"), names(library.findMember("inner").getMembers()));
+		Assert.assertNull(outline.findDefinition("not_a_function"));
+
+		PythonDefinition keyword = library.findMember("open_browser");
+		Assert.assertEquals(47, keyword.getLine());
+		Assert.assertEquals(9, keyword.getColumn());
+
+		// keyword arguments and dotted names in the base class list
+		PythonDefinition derived = outline.findDefinition("Derived");
+		Assert.assertEquals(Arrays.asList("helper.Base"), derived.getBaseClasses());
+		Assert.assertEquals(Arrays.asList("derived_keyword"), names(derived.getMembers()));
+	}
+
+	@Test
+	public void testVariablesAndImports() throws Exception {
+		PythonModuleOutline outline = PythonSourceScanner.scan(loadFile("samplefiles/SampleLibrary.py"));
+
+		Assert.assertEquals(Arrays.asList("__all__", "ROBOT_LIBRARY_SCOPE", "first", "second", "chained", "also_chained",
+				"annotated", "timeout", "platform", "json"), names(outline.getDefinitions(DefinitionType.VARIABLE)));
+		Assert.assertEquals(Arrays.asList("SampleLibrary", "module_keyword"), outline.getAllNames());
+
+		List<String> imports = new ArrayList<String>();
+		for (PythonImport pythonImport : outline.getImports()) {
+			imports.add(pythonImport.toString());
+		}
+		Assert.assertEquals(Arrays.asList("import [os, os.path]", "from robot.api import [logger]",
+				"from .helpers import [BaseHelper, other_helper]", "from robot.libraries.BuiltIn import *", "import [json]"),
+				imports);
+		Assert.assertTrue(outline.isGlobalName("BaseHelper"));
+		Assert.assertFalse(outline.isGlobalName("helper"));
+
+		Assert.assertNull(PythonSourceScanner.scan("VALUE = 1\n").getAllNames());
+		Assert.assertEquals(Arrays.asList("a", "b"), PythonSourceScanner.scan("__all__ = 'a', 'b'\n").getAllNames());
+		Assert.assertTrue(PythonSourceScanner.scan("__all__ = ['a'] + other.__all__\n").getAllNames().isEmpty());
+	}
+
+	@Test
+	public void testGeneratedLibrary() {
+		List<Integer> methodCounts = new ArrayList<Integer>();
+		String source = generateLibrary(new Random(1), methodCounts);
+		PythonModuleOutline outline = PythonSourceScanner.scan(source);
+
+		// multi-line default arguments, comprehensions and docstrings holding
+		// code don't add or hide any members
+		List<PythonDefinition> classes = outline.getDefinitions(DefinitionType.CLASS);
+		Assert.assertEquals(CLASS_COUNT, classes.size());
+		for (int i = 0; i < CLASS_COUNT; i++) {
+			Assert.assertEquals("Library" + i, classes.get(i).getName());
+			Assert.assertEquals(methodCounts.get(i).intValue(), classes.get(i).getMembers().size());
+		}
+	}
+
+	private List<String> names(List<PythonDefinition> definitions) {
+		List<String> names = new ArrayList<String>();
+		for (PythonDefinition definition : definitions) {
+			names.add(definition.getName());
+		}
+		return names;
+	}
+
+	private String generateLibrary(Random random, List<Integer> methodCounts) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("import os\nfrom robot.api import logger\n\n");
+		for (int i = 0; i < CLASS_COUNT; i++) {
+			builder.append("class Library").append(i).append("(object):\n");
+			builder.append("    \"\"\"Keywords for library ").append(i).append(".\n\n    def example(): pass\n    \"\"\"\n");
+			int methodCount = 1 + random.nextInt(6);
+			methodCounts.add(methodCount);
+			for (int j = 0; j < methodCount; j++) {
+				if (random.nextInt(4) == 0) {
+					builder.append("    @keyword(name='Keyword ").append(j).append("')\n");
+				}
+				builder.append("    def keyword_").append(j).append("(self, arg, default={'a': [1, 2],\n");
+				builder.append("                                   'b': (3, 4)}):\n");
+				builder.append("        result = [value * 2 for value in arg]  # double the values\n");
+				builder.append("        if result:\n            logger.info('%s' % result)\n");
+				builder.append("        return result\n\n");
+			}
+			builder.append('\n');
+		}
+		return builder.toString();
+	}
+
+	private String loadFile(String testFileName) throws IOException {
+		InputStream stream = null;
+		try {
+			stream = this.getClass().getResourceAsStream(testFileName);
+			return new Scanner(stream, "UTF-8").useDelimiter("\\A").next();
+		} finally {
+			if (stream != null) {
+				stream.close();
+			}
+		}
+	}
+
+}
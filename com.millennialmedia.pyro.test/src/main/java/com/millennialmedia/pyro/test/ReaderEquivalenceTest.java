@@ -0,0 +1,107 @@
+package com.millennialmedia.pyro.test;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.millennialmedia.pyro.internal.parser.AbstractReader;
+import com.millennialmedia.pyro.internal.parser.Cell;
+import com.millennialmedia.pyro.internal.parser.Row;
+import com.millennialmedia.pyro.internal.parser.TsvReader;
+import com.millennialmedia.pyro.internal.parser.TxtReader;
+
+/**
+ * Compares the single-pass readers against the original split/regex-based
+ * tokenizing on generated files. The generated rows must produce identical
+ * cells and offsets from both.
+ *
+ * @see ReaderThroughputBenchmark
+ * @author spaxton
+ */
+public class ReaderEquivalenceTest {
+	private static final int ROW_COUNT = 10000;
+
+	@Test
+	public void testSpaceSeparatedReader() {
+		String buffer = generateFile(new Random(1), "  ", false, ROW_COUNT);
+		compare(new TxtReader(), new LegacyReader(false), buffer);
+	}
+
+	@Test
+	public void testPipeSeparatedReader() {
+		String buffer = generateFile(new Random(2), " | ", true, ROW_COUNT);
+		compare(new TxtReader(), new LegacyReader(false), buffer);
+	}
+
+	@Test
+	public void testTabSeparatedReader() {
+		String buffer = generateFile(new Random(3), "\t", false, ROW_COUNT);
+		compare(new TsvReader(), new LegacyReader(true), buffer);
+	}
+
+	private void compare(AbstractReader reader, LegacyReader legacyReader, String buffer) {
+		List<Row> rows = reader.getRows(buffer);
+		List<Row> legacyRows = legacyReader.getRows(buffer);
+		Assert.assertEquals("Row counts differ", legacyRows.size(), rows.size());
+		for (int i = 0; i < rows.size(); i++) {
+			Assert.assertEquals("Row contents differ at row " + i, describe(legacyRows.get(i)), describe(rows.get(i)));
+		}
+	}
+
+	private static String describe(Row row) {
+		StringBuilder builder = new StringBuilder();
+		builder.append(row.getOffset()).append(' ').append(row.getLength());
+		for (Cell cell : row.getCells()) {
+			builder.append(" [").append(cell.getParsedContents()).append('@').append(cell.getOffsetInRow()).append(']');
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Generates a file of random rows in the given format, also used by the
+	 * throughput benchmark.
+	 */
+	static String generateFile(Random random, String separator, boolean pipes, int rowCount) {
+		String[] words = { "Log", "Should Be Equal", "${variable}", "@{list}", "[Arguments]", "# comment", "...", ":FOR", "IN",
+				"Run Keyword If", "argument with  spaces", "x" };
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < rowCount; i++) {
+			switch (random.nextInt(10)) {
+			case 0:
+				// blank or whitespace-only line
+				builder.append(random.nextBoolean() ? "" : "   ");
+				break;
+			case 1:
+				builder.append("*** Test Cases ***");
+				break;
+			default:
+				if (pipes) {
+					builder.append("| ");
+				} else if (random.nextInt(3) > 0) {
+					// indented step
+					builder.append(separator);
+				}
+				int cellCount = 1 + random.nextInt(8);
+				for (int j = 0; j < cellCount; j++) {
+					if (j > 0) {
+						builder.append(separator);
+					}
+					String word = words[random.nextInt(words.length)];
+					builder.append(separator.equals("  ") ? word.replace("  ", " ") : word);
+				}
+				if (pipes && random.nextBoolean()) {
+					builder.append(" |");
+				}
+			}
+			// trailing whitespace and non-breaking spaces are stripped
+			if (random.nextInt(5) == 0) {
+				builder.append(new String[] { "   ", "\t", "\u00A0" }[random.nextInt(3)]);
+			}
+			builder.append('\n');
+		}
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,55 @@
+package com.millennialmedia.pyro.test;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.millennialmedia.pyro.internal.parser.AbstractReader;
+import com.millennialmedia.pyro.internal.parser.TsvReader;
+import com.millennialmedia.pyro.internal.parser.TxtReader;
+
+/**
+ * Reports the throughput of the single-pass readers against the original
+ * split/regex-based tokenizing on large generated files. Wall-clock timings
+ * are too noisy to assert on a shared build machine, so this isn't part of
+ * the regular test run (its name doesn't match the test patterns) and is run
+ * explicitly instead.
+ *
+ * @see ReaderEquivalenceTest
+ * @author spaxton
+ */
+public class ReaderThroughputBenchmark {
+	private static final int ROW_COUNT = 50000;
+	private static final int ITERATIONS = 10;
+
+	@Test
+	public void measureReaders() {
+		measure("space-separated", new TxtReader(), new LegacyReader(false),
+				ReaderEquivalenceTest.generateFile(new Random(1), "  ", false, ROW_COUNT));
+		measure("pipe-separated", new TxtReader(), new LegacyReader(false),
+				ReaderEquivalenceTest.generateFile(new Random(2), " | ", true, ROW_COUNT));
+		measure("tab-separated", new TsvReader(), new LegacyReader(true),
+				ReaderEquivalenceTest.generateFile(new Random(3), "\t", false, ROW_COUNT));
+	}
+
+	private void measure(String description, AbstractReader reader, LegacyReader legacyReader, String buffer) {
+		long legacyTime = Long.MAX_VALUE;
+		long time = Long.MAX_VALUE;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			legacyReader.getRows(buffer);
+			legacyTime = Math.min(legacyTime, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			reader.getRows(buffer);
+			time = Math.min(time, System.nanoTime() - start);
+		}
+		System.out.println(String.format("%s, %d chars: legacy reader %.1f MB/s, single-pass reader %.1f MB/s", description,
+				buffer.length(), throughput(buffer, legacyTime), throughput(buffer, time)));
+	}
+
+	private double throughput(String buffer, long nanos) {
+		return (buffer.length() / (1024.0 * 1024.0)) / (Math.max(nanos, 1) / 1e9);
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.millennialmedia.pyro.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Scanner;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.millennialmedia.pyro.internal.cache.SummaryCache;
+import com.millennialmedia.pyro.internal.parser.Parser;
+import com.millennialmedia.pyro.model.ModelSummary;
+import com.millennialmedia.pyro.model.RobotModel;
+import com.millennialmedia.pyro.model.Table;
+import com.millennialmedia.pyro.model.TableItemDefinition;
+import com.millennialmedia.pyro.test.mock.MockIFile;
+
+/**
+ * Tests for the persistent model summary cache, checking that summaries
+ * survive a save and reload through the cache file and are only served while
+ * the file they describe is unchanged.
+ *
+ * @author spaxton
+ */
+public class SummaryCacheTest {
+	private static final String PATH = "/project/parserTest.robot";
+
+	@Test
+	public void testSummaryRoundTrip() throws Exception {
+		String contents = loadFile("samplefiles/parserTest.robot");
+		RobotModel model = new Parser(new MockIFile("robot")).parse(contents);
+		ModelSummary summary = new ModelSummary(model);
+		Assert.assertFalse(summary.getKeywords().isEmpty());
+		Assert.assertEquals(4, summary.getTables().size());
+		Assert.assertFalse(summary.getVariableNames().isEmpty());
+		Assert.assertEquals("foo", summary.getResourceFilePaths().get(0));
+		Assert.assertEquals("something", summary.getLibraries().get(0));
+
+		File cacheFile = File.createTempFile("summaries", ".bin");
+		try {
+			long contentHash = SummaryCache.hash(contents);
+			SummaryCache cache = new SummaryCache(cacheFile);
+			cache.put(PATH, 1, contentHash, summary);
+			cache.save();
+
+			SummaryCache reloadedCache = new SummaryCache(cacheFile);
+			ModelSummary reloadedSummary = reloadedCache.get(PATH, 1);
+			Assert.assertNotNull(reloadedSummary);
+			Assert.assertEquals(describe(summary), describe(reloadedSummary));
+
+			// a different stamp is only accepted if the contents are unchanged
+			reloadedCache = new SummaryCache(cacheFile);
+			Assert.assertNull(reloadedCache.get(PATH, 2));
+			Assert.assertNull(reloadedCache.get(PATH, 2, contentHash + 1));
+			Assert.assertNotNull(reloadedCache.get(PATH, 2, contentHash));
+			Assert.assertNotNull(reloadedCache.get(PATH, 2));
+			Assert.assertNull(reloadedCache.get("/project/other.robot", 1));
+
+			// a loaded cache can be saved over its own file, and summaries that
+			// were never requested are carried over as they are
+			reloadedCache = new SummaryCache(cacheFile);
+			reloadedCache.put("/project/other.robot", 1, contentHash, summary);
+			reloadedCache.save();
+			reloadedCache = new SummaryCache(cacheFile);
+			Assert.assertEquals(describe(summary), describe(reloadedCache.get(PATH, 1)));
+			Assert.assertNotNull(reloadedCache.get("/project/other.robot", 1));
+			reloadedCache.remove("/project/other.robot");
+			reloadedCache.save();
+			Assert.assertNull(new SummaryCache(cacheFile).get("/project/other.robot", 1));
+
+			// a damaged cache file is treated as empty
+			FileOutputStream out = new FileOutputStream(cacheFile);
+			out.write(new byte[] { 0x50, 0x59, 0x52, 0x53, 0, 0, 0, 1, 0, 0, 0, 9 });
+			out.close();
+			Assert.assertNull(new SummaryCache(cacheFile).get(PATH, 1));
+		} finally {
+			cacheFile.delete();
+		}
+	}
+
+	private String describe(ModelSummary summary) {
+		StringBuilder builder = new StringBuilder();
+		for (Map.Entry<String, TableItemDefinition> entry : summary.getKeywords().entrySet()) {
+			TableItemDefinition keyword = entry.getValue();
+			builder.append(entry.getKey()).append(' ').append(keyword.getName()).append(' ')
+					.append(keyword.getNameLength()).append(' ').append(keyword.getLineOffset()).append(' ')
+					.append(keyword.getLineLength()).append('\n');
+		}
+		for (Table table : summary.getTables()) {
+			builder.append(table.getTableType()).append(' ').append(table.getTableName()).append(' ')
+					.append(table.getLineOffset()).append(' ').append(table.getLineLength()).append('\n');
+		}
+		builder.append(summary.getVariableNames()).append(summary.getResourceFilePaths())
+				.append(summary.getVariableFilePaths()).append(summary.getLibraries())
+				.append(summary.getLibraryNameToPathMap());
+		return builder.toString();
+	}
+
+	private String loadFile(String testFileName) throws IOException {
+		InputStream stream = null;
+		try {
+			stream = this.getClass().getResourceAsStream(testFileName);
+			return new Scanner(stream).useDelimiter("\\A").next();
+		} finally {
+			if (stream != null) {
+				stream.close();
+			}
+		}
+	}
+
+}
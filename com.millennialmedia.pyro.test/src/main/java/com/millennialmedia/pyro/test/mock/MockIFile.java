@@ -4,6 +4,7 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.net.URI;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
@@ -20,20 +21,26 @@ import org.eclipse.core.resources.ResourceAttributes;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.QualifiedName;
 import org.eclipse.core.runtime.content.IContentDescription;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 
 /**
  * A mock for IFile that only deals with a file extension (that's all the the Pyro parser checks).
+ * Each mock is given its own workspace path, since models are cached by path.
  * 
  * @author spaxton
  */
 public class MockIFile implements IFile {
+	private static AtomicInteger mockCount = new AtomicInteger();
+
 	private String fileExtension;
+	private IPath fullPath;
 	
 	public MockIFile(String fileExtension) {
 		this.fileExtension = fileExtension;
+		this.fullPath = new Path("/mock/file" + mockCount.incrementAndGet() + "." + fileExtension);
 	}
 	
 	@Override
@@ -549,8 +556,7 @@ public class MockIFile implements IFile {
 
 	@Override
 	public IPath getFullPath() {
-		// TODO Auto-generated method stub
-		return null;
+		return fullPath;
 	}
 
 	@Override
@@ -0,0 +1,69 @@
+# -*- coding: utf-8 -*-
+"""A sample keyword library.
+
+def not_a_function():
+    this docstring should be skipped
+"""
+import os, os.path as osp
+from robot.api import logger
+from .helpers import (BaseHelper,
+                      other_helper as helper)
+from robot.libraries.BuiltIn import *
+
+__all__ = ['SampleLibrary', "module_keyword"]
+
+ROBOT_LIBRARY_SCOPE = 'GLOBAL'
+first, second = 1, 2
+chained = also_chained = 'value'
+annotated: int = 3
+timeout = \
+    30
+if os.name == 'nt': platform = 'windows'
+else: platform = 'other'
+try: import json
+except ImportError: json = None
+
+
+def module_keyword(arg, default={'key': 'value',
+                                 'other': (1, 2)}):
+    local_variable = 1
+
+    def nested_function():
+        pass
+    return local_variable
+
+
+class SampleLibrary(BaseHelper, object):
+    ROBOT_LIBRARY_VERSION = '1.0'
+
+    def __init__(self):
+        self.value = '''def fake():'''
+
+    @property
+    def decorated_keyword(self):
+        return 1
+
+	# a comment indented with a tab
+    def Open_Browser(self, url):
+        if url:
+            def inner():
+                pass
+        return url
+
+    async def async_keyword(self):
+        pass
+
+    def _private_helper(self):
+        pass
+
+    class Inner(object):
+        def inner_keyword(self):
+            pass
+
+    if True:
+        def conditional_keyword(self):
+            pass
+
+
+class Derived(helper.Base, metaclass=type):
+    def derived_keyword(self): pass
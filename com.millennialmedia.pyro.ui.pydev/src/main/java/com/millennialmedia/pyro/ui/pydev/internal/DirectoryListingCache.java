@@ -0,0 +1,206 @@
+package com.millennialmedia.pyro.ui.pydev.internal;
+
+import java.io.File;
+import java.nio.file.InvalidPathException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Workspace-wide cache of directory listings, used to answer the many
+ * existence probes made while resolving libraries and variable files across
+ * every source folder and interpreter path. Listing a directory once answers
+ * both positive and negative probes for all of its children, and a missing
+ * directory is cached as well, so probes below it don't touch the disk either.
+ *
+ * Listings of workspace folders are invalidated from resource deltas. Any
+ * listing is also revalidated against its directory's modification time once
+ * it's older than a few seconds, so files installed outside of Eclipse (ex. in
+ * site-packages) are eventually picked up as well.
+ *
+ * Paths are normalized lexically, so "a/b/../c" is looked up as "a/c" even
+ * when "a/b" doesn't exist.
+ *
+ * Names are compared case-insensitively where {@link File} paths are (ex. on
+ * Windows). Elsewhere, a name that only matches a child in a different case
+ * is checked on the disk, since some filesystems are case-insensitive even
+ * though paths aren't (ex. the default macOS filesystem).
+ *
+ * @author spaxton
+ */
+public class DirectoryListingCache {
+	private static final int MAX_LISTINGS = 2048;
+	private static final long RECHECK_INTERVAL = 5000;
+	private static final boolean CASE_INSENSITIVE = new File("a").equals(new File("A"));
+
+	private static DirectoryListingCache cache = new DirectoryListingCache();
+
+	private static class Listing {
+		// child names in listing order, or null if the directory doesn't
+		// exist. Never modified once listed
+		final Set<String> children;
+		long lastModified;
+		long checkTime;
+
+		Listing(Set<String> children, long lastModified, long checkTime) {
+			this.children = children;
+			this.lastModified = lastModified;
+			this.checkTime = checkTime;
+		}
+	}
+
+	// iterates from least- to most-recently used
+	private LinkedHashMap<String, Listing> listings = new LinkedHashMap<String, Listing>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+			return size() > MAX_LISTINGS;
+		}
+	};
+
+	private DirectoryListingCache() {
+	}
+
+	public static DirectoryListingCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * A cached equivalent of {@link File#exists()}.
+	 */
+	public boolean exists(File file) {
+		File normalizedFile = normalize(file);
+		File parent = normalizedFile == null ? null : normalizedFile.getParentFile();
+		if (parent == null) {
+			return file.exists();
+		}
+		Listing listing = getListing(parent);
+		String name = normalizedFile.getName();
+		if (listing.children == null) {
+			return false;
+		}
+		if (listing.children.contains(name)) {
+			return true;
+		}
+		if (!containsIgnoringCase(listing.children, name)) {
+			return false;
+		}
+		// only a child differing in case, which is a match if the filesystem
+		// itself is case-insensitive
+		return CASE_INSENSITIVE || normalizedFile.exists();
+	}
+
+	/**
+	 * A cached equivalent of {@link File#listFiles()}.
+	 *
+	 * @return the directory's children, or null if it isn't a directory
+	 */
+	public File[] listFiles(File directory) {
+		File normalizedDirectory = normalize(directory);
+		if (normalizedDirectory == null) {
+			return directory.listFiles();
+		}
+		Listing listing = getListing(normalizedDirectory);
+		if (listing.children == null) {
+			return null;
+		}
+		List<File> files = new ArrayList<File>();
+		for (String name : listing.children) {
+			files.add(new File(directory, name));
+		}
+		return files.toArray(new File[files.size()]);
+	}
+
+	/**
+	 * Discards the listing of the given file's directory, and of the file
+	 * itself and everything below it if it's a directory. This is called for
+	 * any workspace resource that's added or removed.
+	 */
+	public void invalidate(File file) {
+		File normalizedFile = normalize(file);
+		if (normalizedFile == null) {
+			clear();
+			return;
+		}
+		String key = normalizedFile.getPath();
+		String prefix = key.endsWith(File.separator) ? key : key + File.separator;
+		synchronized (this) {
+			if (normalizedFile.getParentFile() != null) {
+				listings.remove(normalizedFile.getParent());
+			}
+			Iterator<String> iterator = listings.keySet().iterator();
+			while (iterator.hasNext()) {
+				String listingKey = iterator.next();
+				if (listingKey.equals(key) || listingKey.startsWith(prefix)) {
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		listings.clear();
+	}
+
+	private Listing getListing(File directory) {
+		String key = directory.getPath();
+		long now = System.currentTimeMillis();
+		Listing listing;
+		synchronized (this) {
+			listing = listings.get(key);
+			if (listing != null && now - listing.checkTime < RECHECK_INTERVAL) {
+				return listing;
+			}
+		}
+
+		// read the modification time first, so a change made while listing is
+		// caught by the next check
+		long lastModified = directory.lastModified();
+		if (listing != null && listing.lastModified == lastModified) {
+			synchronized (this) {
+				listing.checkTime = now;
+			}
+			return listing;
+		}
+
+		// list outside of the lock, probes of other directories shouldn't wait
+		Set<String> children = null;
+		String[] names = directory.list();
+		if (names != null) {
+			children = new LinkedHashSet<String>(Arrays.asList(names));
+		}
+		listing = new Listing(children, lastModified, now);
+		synchronized (this) {
+			listings.put(key, listing);
+		}
+		return listing;
+	}
+
+	private static boolean containsIgnoringCase(Set<String> children, String name) {
+		for (String childName : children) {
+			if (childName.equalsIgnoreCase(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the absolute, lexically normalized file, or null if the path
+	 *         isn't valid on this platform
+	 */
+	private static File normalize(File file) {
+		try {
+			return file.getAbsoluteFile().toPath().normalize().toFile();
+		} catch (InvalidPathException e) {
+			return null;
+		}
+	}
+
+}
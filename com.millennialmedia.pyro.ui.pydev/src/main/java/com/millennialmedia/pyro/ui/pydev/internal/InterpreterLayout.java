@@ -0,0 +1,102 @@
+package com.millennialmedia.pyro.ui.pydev.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records where the Robot Framework standard libraries and the site-packages
+ * folders live on an interpreter's pythonpath, so library lookups don't have to
+ * rescan every interpreter path. Layouts are cached per distinct pythonpath,
+ * and are all discarded whenever a project's pythonpath is rebuilt (ex. after
+ * the interpreter configuration changes).
+ *
+ * @author spaxton
+ */
+public class InterpreterLayout {
+	private static final int MAX_LAYOUTS = 16;
+
+	// iterates from least- to most-recently used
+	private static Map<List<String>, InterpreterLayout> layouts = new LinkedHashMap<List<String>, InterpreterLayout>(16,
+			0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<String>, InterpreterLayout> eldest) {
+			return size() > MAX_LAYOUTS;
+		}
+	};
+
+	private String standardLibraryPath;
+	private List<String> sitePackagesPaths = new ArrayList<String>();
+
+	private InterpreterLayout(List<String> interpreterPaths) {
+		DirectoryListingCache directoryCache = DirectoryListingCache.getCache();
+		for (String path : interpreterPaths) {
+			if (path.contains("site-packages")) {
+				sitePackagesPaths.add(path);
+			}
+		}
+
+		for (String path : interpreterPaths) {
+			// some hacky stuff here to distinguish how macos and windows include
+			// robot in their interpreter paths - this may have also changed a bit
+			// across pydev versions, so try several ways
+			if (path.contains("robot")) {
+				if (path.endsWith(".egg")) {
+					standardLibraryPath = path + "/robot/libraries";
+				} else {
+					standardLibraryPath = path + "/libraries";
+				}
+				break;
+			} else if (path.contains("site-packages")) {
+				if (directoryCache.exists(new File(path + "/robot/libraries"))) {
+					standardLibraryPath = path + "/robot/libraries";
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the layout of the interpreter with the given pythonpath, only
+	 * scanning the paths if no interpreter with the same pythonpath has been
+	 * seen since the last rebuild.
+	 */
+	public static InterpreterLayout getLayout(List<String> interpreterPaths) {
+		List<String> key = new ArrayList<String>(interpreterPaths);
+		synchronized (layouts) {
+			InterpreterLayout layout = layouts.get(key);
+			if (layout == null) {
+				layout = new InterpreterLayout(key);
+				layouts.put(key, layout);
+			}
+			return layout;
+		}
+	}
+
+	public static void clearLayouts() {
+		synchronized (layouts) {
+			layouts.clear();
+		}
+	}
+
+	/**
+	 * @return the folder holding the standard libraries, or null if robot
+	 *         wasn't found on the pythonpath
+	 */
+	public String getStandardLibraryPath() {
+		return standardLibraryPath;
+	}
+
+	/**
+	 * @return the pythonpath entries for site-packages folders, in pythonpath
+	 *         order
+	 */
+	public List<String> getSitePackagesPaths() {
+		return Collections.unmodifiableList(sitePackagesPaths);
+	}
+
+}
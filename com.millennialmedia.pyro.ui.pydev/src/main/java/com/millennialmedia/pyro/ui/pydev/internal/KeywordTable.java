@@ -0,0 +1,196 @@
+package com.millennialmedia.pyro.ui.pydev.internal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.millennialmedia.pyro.model.util.ModelUtil;
+import com.millennialmedia.pyro.python.PythonDefinition;
+import com.millennialmedia.pyro.python.PythonDefinition.DefinitionType;
+import com.millennialmedia.pyro.ui.editor.util.PathUtil;
+
+/**
+ * An immutable table of the keywords a resolved Python module provides,
+ * sorted by normalized keyword name for exact and prefix lookups. A table is
+ * compiled once per module and library path (see
+ * {@link PythonModuleCache#getKeywordTable(ModuleInfo)}), and shared by
+ * content assist and hyperlinking until the module changes.
+ *
+ * @author spaxton
+ */
+public class KeywordTable {
+	private static final Comparator<Keyword> NORMALIZED_NAME_ORDER = new Comparator<Keyword>() {
+		@Override
+		public int compare(Keyword keyword1, Keyword keyword2) {
+			return keyword1.getNormalizedName().compareTo(keyword2.getNormalizedName());
+		}
+	};
+
+	/**
+	 * A single keyword, along with the location of the function that implements
+	 * it.
+	 */
+	public static class Keyword {
+		private String normalizedName;
+		private String displayName;
+		private File file;
+		private int line;
+		private int column;
+
+		Keyword(String normalizedName, String displayName, File file, int line, int column) {
+			this.normalizedName = normalizedName;
+			this.displayName = displayName;
+			this.file = file;
+			this.line = line;
+			this.column = column;
+		}
+
+		public String getNormalizedName() {
+			return normalizedName;
+		}
+
+		public String getDisplayName() {
+			return displayName;
+		}
+
+		/**
+		 * @return the source file of the module defining the keyword
+		 */
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * @return the 1-based line of the function definition
+		 */
+		public int getLine() {
+			return line;
+		}
+
+		/**
+		 * @return the 1-based column of the function definition
+		 */
+		public int getColumn() {
+			return column;
+		}
+	}
+
+	private Keyword[] keywords;
+
+	private KeywordTable(Keyword[] keywords) {
+		this.keywords = keywords;
+	}
+
+	/**
+	 * Collects the keywords for the given module and library path. These are
+	 * the module's public functions, plus the public methods of the classes
+	 * named by the remaining library path and of any class named like the
+	 * module itself.
+	 */
+	public static KeywordTable compile(ModuleInfo moduleInfo) {
+		List<PythonDefinition> definitions = new ArrayList<PythonDefinition>(moduleInfo.getOutline().getDefinitions());
+		for (String subclass : PathUtil.getPathSegments(moduleInfo.getRemainingPath())) {
+			for (PythonDefinition definition : definitions) {
+				if (subclass.equalsIgnoreCase(definition.getName())) {
+					// found the definition representing the next portion of the
+					// library reference inside this module
+					definitions.addAll(definition.getMembers());
+					break;
+				}
+			}
+		}
+
+		// also look for a class of the same name defined in the module
+		String moduleName = moduleInfo.getModuleName();
+		for (PythonDefinition definition : definitions) {
+			if (definition.getType() == DefinitionType.CLASS && moduleName.equals(definition.getName())) {
+				definitions.addAll(definition.getMembers());
+				break;
+			}
+		}
+
+		List<Keyword> keywordList = new ArrayList<Keyword>();
+		Set<String> keywordNames = new HashSet<String>();
+		for (PythonDefinition definition : definitions) {
+			// filter out internal methods, and non-functions (ex. constants,
+			// including some expected robot constants like ROBOT_LIBRARY_*
+			// (scope, version, doc format))
+			if (definition.getName().startsWith("_") || definition.getType() != DefinitionType.FUNCTION) {
+				continue;
+			}
+
+			// the first definition found wins, ex. a module-level function over
+			// a method of the same name
+			String displayName = definition.getName().replace("_", " ");
+			if (keywordNames.add(displayName)) {
+				keywordList.add(new Keyword(ModelUtil.normalizeKeywordName(displayName, false), displayName,
+						moduleInfo.getFile(), definition.getLine(), definition.getColumn()));
+			}
+		}
+
+		Keyword[] keywords = keywordList.toArray(new Keyword[keywordList.size()]);
+		// stable, so keywords that normalize alike keep the order above
+		Arrays.sort(keywords, NORMALIZED_NAME_ORDER);
+		return new KeywordTable(keywords);
+	}
+
+	/**
+	 * @return all keywords, ordered by normalized name
+	 */
+	public List<Keyword> getKeywords() {
+		return Collections.unmodifiableList(Arrays.asList(keywords));
+	}
+
+	/**
+	 * @return the keyword with the given normalized name, or null if there's
+	 *         none
+	 */
+	public Keyword find(String normalizedName) {
+		int index = lowerBound(normalizedName);
+		if (index < keywords.length && keywords[index].getNormalizedName().equals(normalizedName)) {
+			return keywords[index];
+		}
+		return null;
+	}
+
+	/**
+	 * @return the keywords whose normalized names start with the given
+	 *         normalized prefix, ordered by normalized name
+	 */
+	public List<Keyword> findByPrefix(String normalizedPrefix) {
+		int start = lowerBound(normalizedPrefix);
+		int end = start;
+		while (end < keywords.length && keywords[end].getNormalizedName().startsWith(normalizedPrefix)) {
+			end++;
+		}
+		return Collections.unmodifiableList(Arrays.asList(keywords).subList(start, end));
+	}
+
+	public int size() {
+		return keywords.length;
+	}
+
+	/**
+	 * @return the index of the first keyword whose normalized name isn't less
+	 *         than the given one
+	 */
+	private int lowerBound(String normalizedName) {
+		int low = 0;
+		int high = keywords.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keywords[mid].getNormalizedName().compareTo(normalizedName) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+}
@@ -6,10 +6,17 @@ import java.util.List;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 
+/**
+ * The python modules resolved for the libraries imported by a Robot file,
+ * along with a fingerprint of the imports they were resolved from.
+ * 
+ * @author spaxton
+ */
 public class LibraryInfo {
 
 	private List<String> orderedLibraries = new ArrayList<String>();
 	private Multimap<String, ModuleInfo> moduleMap = ArrayListMultimap.create();
+	private String importFingerprint;
 	
 	public Multimap<String, ModuleInfo> getModuleMap() {
 		return moduleMap;
@@ -18,5 +25,13 @@ public class LibraryInfo {
 	public List<String> getOrderedLibraries() {
 		return orderedLibraries;
 	}
+
+	public String getImportFingerprint() {
+		return importFingerprint;
+	}
+
+	public void setImportFingerprint(String importFingerprint) {
+		this.importFingerprint = importFingerprint;
+	}
 	
 }
@@ -1,20 +1,24 @@
 package com.millennialmedia.pyro.ui.pydev.internal;
 
-import org.python.pydev.core.IModule;
+import java.io.File;
+
+import com.millennialmedia.pyro.python.PythonModuleOutline;
 
 /**
  * A value object containing resolved information about Python modules.
- * 
+ *
  * @author spaxton
  */
 public class ModuleInfo {
 	private String libraryName;
-	private IModule module;
+	private File file;
+	private PythonModuleOutline outline;
 	private String remainingPath;
 
-	public ModuleInfo(String libraryName, IModule module, String remainingPath) {
+	public ModuleInfo(String libraryName, File file, PythonModuleOutline outline, String remainingPath) {
 		this.libraryName = libraryName;
-		this.module = module;
+		this.file = file;
+		this.outline = outline;
 		this.remainingPath = remainingPath;
 	}
 
@@ -22,12 +26,28 @@ public class ModuleInfo {
 		return libraryName;
 	}
 
-	public IModule getModule() {
-		return module;
+	public File getFile() {
+		return file;
+	}
+
+	public PythonModuleOutline getOutline() {
+		return outline;
+	}
+
+	/**
+	 * @return the module's name, ex. "MyLibrary" for MyLibrary.py or for
+	 *         MyLibrary/__init__.py
+	 */
+	public String getModuleName() {
+		String fileName = file.getName();
+		if ("__init__.py".equals(fileName) && file.getParentFile() != null) {
+			return file.getParentFile().getName();
+		}
+		return fileName.endsWith(".py") ? fileName.substring(0, fileName.length() - 3) : fileName;
 	}
 
 	public String getRemainingPath() {
 		return remainingPath;
 	}
 
-}
\ No newline at end of file
+}
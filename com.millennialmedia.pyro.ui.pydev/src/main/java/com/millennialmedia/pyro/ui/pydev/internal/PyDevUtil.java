@@ -6,36 +6,29 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
-import org.python.pydev.core.IModule;
-import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.IPythonPathNature;
-import org.python.pydev.core.IToken;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.PythonNatureWithoutProjectException;
-import org.python.pydev.editor.codecompletion.revisited.modules.AbstractModule;
-import org.python.pydev.editor.codecompletion.revisited.modules.SourceToken;
-import org.python.pydev.parser.jython.SimpleNode;
-import org.python.pydev.parser.jython.ast.ClassDef;
-import org.python.pydev.parser.jython.ast.Import;
-import org.python.pydev.parser.jython.ast.ImportFrom;
-import org.python.pydev.parser.jython.ast.Name;
-import org.python.pydev.parser.jython.ast.NameTok;
-import org.python.pydev.parser.jython.ast.aliasType;
-import org.python.pydev.parser.jython.ast.exprType;
-import org.python.pydev.plugin.PydevPlugin;
 import org.python.pydev.plugin.nature.PythonNature;
-import org.python.pydev.shared_core.structure.Tuple;
 
 import com.millennialmedia.pyro.model.ModelManager;
 import com.millennialmedia.pyro.model.RobotModel;
+import com.millennialmedia.pyro.model.util.IModelConstants;
 import com.millennialmedia.pyro.model.util.ModelUtil;
+import com.millennialmedia.pyro.python.PythonDefinition;
+import com.millennialmedia.pyro.python.PythonDefinition.DefinitionType;
+import com.millennialmedia.pyro.python.PythonImport;
+import com.millennialmedia.pyro.python.PythonModuleOutline;
 import com.millennialmedia.pyro.ui.editor.RobotFrameworkEditor;
+import com.millennialmedia.pyro.ui.editor.util.ImportGraph;
 import com.millennialmedia.pyro.ui.editor.util.PathUtil;
 
 /**
@@ -46,6 +39,7 @@ import com.millennialmedia.pyro.ui.editor.util.PathUtil;
 public class PyDevUtil {
 	private static final String PROPSKEY_NON_BUILTIN_LIBRARY_INFO_CACHE = "PYDEV_NON_BUILTIN_MODULE_MAP_CACHE";
 	private static final String PROPSKEY_BUILTIN_LIBRARY_INFO_CACHE = "PYDEV_BUILTIN_MODULE_MAP_CACHE";
+	private static final String PROPSKEY_IMPORT_FINGERPRINT = "PYDEV_IMPORT_FINGERPRINT";
 	
 	private static List<String> standardLibsList = Arrays.asList(new String[] { 
 		"BuiltIn", 
@@ -67,33 +61,36 @@ public class PyDevUtil {
 	 */
 	public static LibraryInfo getNonBuiltInLibraryModules(RobotFrameworkEditor editor) {
 		// first try to retrieve a cached module map from the robot model.
-		// any editing changes at all (including changing library references) will force
-		// a model re-parse, so the cache can never be stale unless the pythonpath was 
-		// changed.  in that case a simple close/reopen or single character change in the
-		// editor will catch up, so I will skip extra listener/notification code here 
+		// the cache is carried over as the editor reparses, and only reused while the
+		// file's imports are unchanged, so typing anywhere else never re-resolves
+		// libraries.  changes to imported resource files, python modules or a project's
+		// pythonpath all discard the model's dependent properties, so the cache only
+		// goes stale for modules installed outside of Eclipse.  in that case a simple
+		// close/reopen will catch up
 		RobotModel model = editor.getModel();
-		LibraryInfo cachedInfo = (LibraryInfo) model.getCustomProperties().get(PROPSKEY_NON_BUILTIN_LIBRARY_INFO_CACHE);
-		if (cachedInfo != null) {
+		String importFingerprint = getImportFingerprint(model);
+		LibraryInfo cachedInfo = (LibraryInfo) model.getDependentProperties().get(PROPSKEY_NON_BUILTIN_LIBRARY_INFO_CACHE);
+		if (cachedInfo != null && importFingerprint.equals(cachedInfo.getImportFingerprint())) {
 			return cachedInfo;
 		}
 		
 		IFile sourceFile = PathUtil.getEditorFile(editor);
-		List<IFile> filesVisited = new ArrayList<IFile>();
+		LibraryInfo libraryInfo = new LibraryInfo();
+		libraryInfo.setImportFingerprint(importFingerprint);
 
-		// load all the library modules directly referenced from the source file, excluding any built-in robot libs
-		List<String> libraries = ModelUtil.getLibraries(ModelManager.getManager().getModel(sourceFile));
+		// load all the library modules directly referenced from the source file's current
+		// contents, excluding any built-in robot libs
+		List<String> libraries = ModelUtil.getLibraries(model);
 		libraries.removeAll(standardLibsList);
-		
-		LibraryInfo libraryInfo = new LibraryInfo();
 		PyDevUtil.findModules(libraries, sourceFile, libraryInfo);
 
-		filesVisited.add(sourceFile);
-		
-		// traverse all resource file dependencies recursively and pull in additional library references from them too
-		addTransitiveReferencedLibraryModules(libraryInfo, filesVisited, sourceFile);
+		// pull in additional library references from all resource file dependencies too
+		for (IFile resourceFile : PathUtil.collectReferencedResourceFiles(editor)) {
+			addLibraryModules(libraryInfo, resourceFile);
+		}
 
 		// cache for subsequent requests
-		model.getCustomProperties().put(PROPSKEY_NON_BUILTIN_LIBRARY_INFO_CACHE, libraryInfo);
+		model.getDependentProperties().put(PROPSKEY_NON_BUILTIN_LIBRARY_INFO_CACHE, libraryInfo);
 		return libraryInfo;
 	}
 	
@@ -103,16 +100,21 @@ public class PyDevUtil {
 	 */
 	public static LibraryInfo getBuiltInLibraryModules(RobotFrameworkEditor editor) {
 		RobotModel model = editor.getModel();
-		LibraryInfo cachedLibraryInfo = (LibraryInfo) model.getCustomProperties().get(PROPSKEY_BUILTIN_LIBRARY_INFO_CACHE);
-		if (cachedLibraryInfo != null) {
+		String importFingerprint = getImportFingerprint(model);
+		LibraryInfo cachedLibraryInfo = (LibraryInfo) model.getDependentProperties().get(PROPSKEY_BUILTIN_LIBRARY_INFO_CACHE);
+		if (cachedLibraryInfo != null && importFingerprint.equals(cachedLibraryInfo.getImportFingerprint())) {
 			return cachedLibraryInfo;
 		}
 
 		
-		List<String> referencedLibraries = PyDevUtil.getReferencedLibraries(PathUtil.getEditorFile(editor));
+		List<String> referencedLibraries = ModelUtil.getLibraries(model);
+		for (IFile resourceFile : PathUtil.collectReferencedResourceFiles(editor)) {
+			referencedLibraries.addAll(ModelManager.getManager().getSummary(resourceFile).getLibraries());
+		}
 		referencedLibraries.add("BuiltIn");
 
 		LibraryInfo libraryInfo = new LibraryInfo();
+		libraryInfo.setImportFingerprint(importFingerprint);
 		
 		for (String libraryName : referencedLibraries) {
 			if (!standardLibsList.contains(libraryName)) {
@@ -127,60 +129,56 @@ public class PyDevUtil {
 		}
 
 		// cache for subsequent requests
-		model.getCustomProperties().put(PROPSKEY_BUILTIN_LIBRARY_INFO_CACHE, libraryInfo);
+		model.getDependentProperties().put(PROPSKEY_BUILTIN_LIBRARY_INFO_CACHE, libraryInfo);
 		return libraryInfo;
 	}
 	
-	private static void addTransitiveReferencedLibraryModules(LibraryInfo libraryInfo, List<IFile> filesVisited, IFile referencedFile) {
-		// add library references from the local file
-		List<String> libraries = ModelUtil.getLibraries(ModelManager.getManager().getModel(referencedFile));
-		libraries.removeAll(standardLibsList);
-
-		PyDevUtil.findModules(libraries, referencedFile, libraryInfo);
+	/**
+	 * Returns a fingerprint of the library and resource imports (along with library aliases) in
+	 * the given model's current contents.  Library information only has to be resolved again
+	 * when this changes.
+	 */
+	@SuppressWarnings("unchecked")
+	private static String getImportFingerprint(RobotModel model) {
+		String fingerprint = (String) model.getCustomProperties().get(PROPSKEY_IMPORT_FINGERPRINT);
+		if (fingerprint != null) {
+			return fingerprint;
+		}
 
-		filesVisited.add(referencedFile);
-		
-		// now check any referenced resource files
-		RobotModel targetModel = ModelManager.getManager().getModel(referencedFile);
-		List<String> resourceFilePaths = ModelUtil.getResourceFilePaths(targetModel);
-
-		for (String resourceFilePath : resourceFilePaths) {
-			IResource resource = PathUtil.getResourceForPath(referencedFile, resourceFilePath);
-			if (resource != null && resource instanceof IFile) {
-				IFile targetFile = (IFile) resource;
-				// avoid cycles, but otherwise recursively add additional library modules
-				if (!filesVisited.contains(targetFile)) {
-					addTransitiveReferencedLibraryModules(libraryInfo, filesVisited, targetFile);
-				}
+		StringBuilder builder = new StringBuilder();
+		for (String library : ModelUtil.getLibraries(model)) {
+			builder.append("Library\t").append(library).append('\n');
+		}
+		Map<String, String> libraryNameToPathMap = (Map<String, String>) model.getCustomProperties().get(
+				IModelConstants.PROPSKEY_LIBRARY_NAME_TO_PATH_MAP);
+		if (libraryNameToPathMap != null) {
+			for (Map.Entry<String, String> entry : new TreeMap<String, String>(libraryNameToPathMap).entrySet()) {
+				builder.append("Alias\t").append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
 			}
 		}
+		for (String resourceFilePath : ModelUtil.getResourceFilePaths(model)) {
+			builder.append("Resource\t").append(resourceFilePath).append('\n');
+		}
+		fingerprint = builder.toString();
+		model.getCustomProperties().put(PROPSKEY_IMPORT_FINGERPRINT, fingerprint);
+		return fingerprint;
 	}
-	
-	public static List<String> getReferencedLibraries(IFile sourceFile) {
-		List<String> referencedLibraries = new ArrayList<String>();
-		List<IFile> filesVisited = new ArrayList<IFile>();
-		collectReferencedLibraryNames(referencedLibraries, filesVisited, sourceFile);
-		return referencedLibraries;
+
+	private static void addLibraryModules(LibraryInfo libraryInfo, IFile file) {
+		List<String> libraries = new ArrayList<String>(ModelManager.getManager().getSummary(file).getLibraries());
+		libraries.removeAll(standardLibsList);
+		PyDevUtil.findModules(libraries, file, libraryInfo);
 	}
 	
-	private static void collectReferencedLibraryNames(List<String> libraryNames, List<IFile> filesVisited, IFile sourceFile) {
-		filesVisited.add(sourceFile);
-		RobotModel model = ModelManager.getManager().getModel(sourceFile);
-		libraryNames.addAll(ModelUtil.getLibraries(model));
-		
+	public static List<String> getReferencedLibraries(IFile sourceFile) {
+		List<String> referencedLibraries = new ArrayList<String>(ModelManager.getManager().getSummary(sourceFile)
+				.getLibraries());
+
 		// now check any referenced resource files
-		List<String> resourceFilePaths = ModelUtil.getResourceFilePaths(model);
-
-		for (String resourceFilePath : resourceFilePaths) {
-			IResource resource = PathUtil.getResourceForPath(sourceFile, resourceFilePath);
-			if (resource != null && resource instanceof IFile) {
-				IFile targetFile = (IFile) resource;
-				// avoid cycles, but otherwise recursively add additional library modules
-				if (!filesVisited.contains(targetFile)) {
-					collectReferencedLibraryNames(libraryNames, filesVisited, targetFile);
-				}
-			}
+		for (IFile resourceFile : ImportGraph.getGraph().getTransitiveResourceFiles(sourceFile)) {
+			referencedLibraries.addAll(ModelManager.getManager().getSummary(resourceFile).getLibraries());
 		}
+		return referencedLibraries;
 	}
 	
 	public static LibraryInfo findModules(List<String> libraryNames, IFile sourceFile) {
@@ -258,25 +256,11 @@ public class PyDevUtil {
 		PythonNature nature = PythonNature.getPythonNature(project);
 		if (nature != null) {
 			try {
-				List<String> interpreterPaths = nature.getProjectInterpreter().getPythonPath();
-				String standardLibPath = null;
-				for (String path : interpreterPaths) {
-					// some hacky stuff here to distinguish how macos and windows include
-					// robot in their interpreter paths - this may have also changed a bit
-					// across pydev versions, so try several ways
-					if (path.contains("robot")) {
-						if (path.endsWith(".egg")) {
-							standardLibPath = path + "/robot/libraries";
-						} else {
-							standardLibPath = path + "/libraries";
-						}
-						break;
-					} else if (path.contains("site-packages")) {
-						File checkFile = new File(path + "/robot/libraries");
-						if (checkFile.exists()) {
-							standardLibPath = path + "/robot/libraries";
-						}
-					}
+				// the interpreter paths are only scanned once per pythonpath
+				InterpreterLayout layout = InterpreterLayout.getLayout(nature.getProjectInterpreter().getPythonPath());
+				String standardLibPath = layout.getStandardLibraryPath();
+				if (standardLibPath == null) {
+					return null;
 				}
 
 				List<ModuleInfo> infos = new ArrayList<ModuleInfo>();
@@ -303,16 +287,17 @@ public class PyDevUtil {
 		PythonNature nature = PythonNature.getPythonNature(project);
 		if (nature != null) {
 			try {
-				List<String> interpreterPaths = nature.getProjectInterpreter().getPythonPath();
+				InterpreterLayout layout = InterpreterLayout.getLayout(nature.getProjectInterpreter().getPythonPath());
 				String libPath = null;
-				for (String path : interpreterPaths) {
-					if (path.contains("site-packages")) {
-						File checkFile = new File(path + "/" + libraryName);
-						if (checkFile.exists()) {
-							libPath = checkFile.getCanonicalPath();
-						}
+				for (String path : layout.getSitePackagesPaths()) {
+					File checkFile = new File(path + "/" + libraryName);
+					if (exists(checkFile)) {
+						libPath = checkFile.getCanonicalPath();
 					}
 				}
+				if (libPath == null) {
+					return null;
+				}
 
 				ModuleInfo info = getModuleInfo(libraryName, libPath, libraryName);
 				return info;
@@ -346,23 +331,19 @@ public class PyDevUtil {
 			}
 
 			File file = new File(rootPath + "/" + candidatePath);
-			if (file.exists()) {
-				IModule module = findModule(file);
-				if (module != null) {
-					return createModuleInfo(module, libraryName, pathSegments);
+			if (exists(file)) {
+				PythonModuleOutline outline = findOutline(file);
+				if (outline != null) {
+					return createModuleInfo(libraryName, file, outline, pathSegments);
 				}
 			} else if (pathSegments.isEmpty()) {
 				// look for a package initializer at this location instead
 				String initializerPath = modulePathString + "/__init__.py";
 				file = new File(rootPath + "/" + initializerPath);
-				if (file.exists()) {
-					IModule module = findModule(file);
-					if (module != null) {
-						for (IToken token : module.getGlobalTokens()) {
-							if (segment.equalsIgnoreCase(token.getRepresentation())) {
-								return createModuleInfo(module, libraryName, Arrays.asList(new String[] { segment }));
-							}
-						}
+				if (exists(file)) {
+					PythonModuleOutline outline = findOutline(file);
+					if (outline != null && outline.isGlobalName(segment)) {
+						return createModuleInfo(libraryName, file, outline, Arrays.asList(new String[] { segment }));
 					}
 				} else {
 					// we didn't find a module after completely checking the full path.
@@ -372,17 +353,13 @@ public class PyDevUtil {
 							modulePathString.substring(0, modulePathString.length() - segment.length())
 							+ "__init__.py";
 					file = new File(rootPath + "/" + initializerPath);
-					if (file.exists()) {
-						IModule module = findModule(file);
-						if (module != null) {
-							for (IToken token : module.getGlobalTokens()) {
-								if (segment.equalsIgnoreCase(token.getRepresentation())) {
-									// we've found an __init__.py package
-									// initializer that contains a class matching
-									// the library name
-									return createModuleInfo(module, libraryName, Arrays.asList(new String[] { segment }));
-								}
-							}
+					if (exists(file)) {
+						PythonModuleOutline outline = findOutline(file);
+						if (outline != null && outline.isGlobalName(segment)) {
+							// we've found an __init__.py package
+							// initializer that contains a class matching
+							// the library name
+							return createModuleInfo(libraryName, file, outline, Arrays.asList(new String[] { segment }));
 						}
 					}
 					
@@ -393,23 +370,19 @@ public class PyDevUtil {
 		return null;
 	}
 
-	private static IModule findModule(File file) {
-		Tuple<IPythonNature, String> infoForFile = PydevPlugin.getInfoForFile(file);
-		if (infoForFile != null) {
-			IPythonNature pythonNature = infoForFile.o1;
-			String moduleName = infoForFile.o2;
-			try {
-				return AbstractModule.createModule(moduleName, file, pythonNature, true);
-			} catch (IOException e) {
-				e.printStackTrace();
-			} catch (MisconfigurationException e) {
-				e.printStackTrace();
-			}
-		}
-		return null;
+	private static boolean exists(File file) {
+		// most probes miss, so they're answered from cached directory listings
+		// rather than the disk
+		return DirectoryListingCache.getCache().exists(file);
+	}
+
+	private static PythonModuleOutline findOutline(File file) {
+		// outlines are shared across editors, and only rescanned when the file changes
+		return PythonModuleCache.getCache().getOutline(file);
 	}
 
-	private static ModuleInfo createModuleInfo(IModule module, String libraryName, List<String> pathSegments) {
+	private static ModuleInfo createModuleInfo(String libraryName, File file, PythonModuleOutline outline,
+			List<String> pathSegments) {
 		StringWriter writer = new StringWriter();
 		boolean skipSlash = true;
 		for (String seg : pathSegments) {
@@ -421,7 +394,7 @@ public class PyDevUtil {
 			writer.append(seg);
 		}
 		String remainingPath = writer.toString();
-		return new ModuleInfo(libraryName, module, remainingPath);
+		return new ModuleInfo(libraryName, file, outline, remainingPath);
 	}
 	
 	/**
@@ -432,27 +405,15 @@ public class PyDevUtil {
 		List<ModuleInfo> baseModules = new ArrayList<ModuleInfo>();
 		List<ModuleInfo> imports = new ArrayList<ModuleInfo>();
 		List<String> baseClasses = new ArrayList<String>();
-		List<String> localClasses = new ArrayList<String>();
+		PythonModuleOutline outline = moduleInfo.getOutline();
 		
 		// first find any base types used in the module's class definition
-		IToken[] tokens = moduleInfo.getModule().getGlobalTokens();
-		for (IToken token : tokens) {
-			if (token instanceof SourceToken) {
-				if (token.getType() == IToken.TYPE_CLASS) {
-					localClasses.add(token.getRepresentation());
-					
-					if (moduleInfo.getLibraryName().equals(token.getRepresentation())) {
-						SourceToken sourceToken = (SourceToken) token;
-						SimpleNode node = sourceToken.getAst();
-						if (node instanceof ClassDef) {
-							ClassDef classDef = (ClassDef) node;
-							exprType[] bases = classDef.bases;
-							for (exprType type : bases) {
-								if (type instanceof Name) {
-									baseClasses.add(((Name) type).id);
-								}
-							}
-						}
+		for (PythonDefinition definition : outline.getDefinitions(DefinitionType.CLASS)) {
+			if (moduleInfo.getLibraryName().equals(definition.getName())) {
+				for (String baseClass : definition.getBaseClasses()) {
+					// only plain names can be matched up with the imports below
+					if (!baseClass.contains(".")) {
+						baseClasses.add(baseClass);
 					}
 				}
 			}
@@ -460,70 +421,55 @@ public class PyDevUtil {
 		
 		// if no base types, nothing to do
 		if (!baseClasses.isEmpty()) {
-			// collect all the tokens for any imports - we'll need to match the base types 
+			// load up every module we can find from the imports - we'll need to match the base types 
 			// against these imports to figure out where to load modules from if they're external
-			IToken[] wildImports = moduleInfo.getModule().getWildImportedModules();
-			IToken[] tokenImports = moduleInfo.getModule().getTokenImportedModules();
-			List<IToken> importTokens = new ArrayList<IToken>();
-			importTokens.addAll(Arrays.asList(tokenImports));
-			importTokens.addAll(Arrays.asList(wildImports));
-			
-			// load up every module we can find from these imports
-			for (IToken token : importTokens) {
-				if (token instanceof SourceToken && token.getType() == IToken.TYPE_IMPORT) {
-					SourceToken sourceToken = (SourceToken) token;
-					SimpleNode node = sourceToken.getAst();
-					if (node instanceof Import) {
-						Import importDef = (Import) node;
-						aliasType[] aliases = importDef.names;
-						for (aliasType alias : aliases) {
-							ModuleInfo info = getModuleInfo(((NameTok) alias.name).id, moduleInfo.getModule().getFile().getParent() + File.separator + ((NameTok) alias.name).id, ((NameTok) alias.name).id);
-							if (info != null) {
-								imports.add(info);
-							}
+			String moduleDirectory = moduleInfo.getFile().getParent();
+			for (PythonImport pythonImport : outline.getImports()) {
+				if (pythonImport.getModule() == null) {
+					for (String name : pythonImport.getNames()) {
+						ModuleInfo info = getModuleInfo(name, moduleDirectory + File.separator + name, name);
+						if (info != null) {
+							imports.add(info);
 						}
-					} else if (node instanceof ImportFrom) {
-						ImportFrom importDef = (ImportFrom) node;
-						NameTok moduleName = (NameTok) importDef.module;
-						aliasType[] aliases = importDef.names;
-						if (aliases.length == 0) {
-							// import everything from path
-							File folder = new File(moduleInfo.getModule().getFile().getParent() + File.separator + moduleName.id);
-							if (folder.exists() && folder.isDirectory()) {
-								File[] files = folder.listFiles();
-								for (File file : files) {
-									ModuleInfo info = getModuleInfo(file.getName(), folder.getPath(), file.getName());
-									if (info != null) {
-										imports.add(info);
-									}
-								}
-							}
-							
-						} else {
-							// form of:  from X import Y,Z
-							for (aliasType alias : aliases) {
-								ModuleInfo info = getModuleInfo(((NameTok) alias.name).id, moduleInfo.getModule().getFile().getParent() + File.separator + moduleName.id, ((NameTok) alias.name).id);
+					}
+				} else {
+					File folder = new File(moduleDirectory + File.separator + getModulePath(pythonImport.getModule()));
+					if (pythonImport.isWildcard()) {
+						// import everything from path
+						File[] files = DirectoryListingCache.getCache().listFiles(folder);
+						if (files != null) {
+							for (File file : files) {
+								ModuleInfo info = getModuleInfo(file.getName(), folder.getPath(), file.getName());
 								if (info != null) {
 									imports.add(info);
 								}
 							}
 						}
+						
+					} else {
+						// form of:  from X import Y,Z
+						for (String name : pythonImport.getNames()) {
+							ModuleInfo info = getModuleInfo(name, folder.getPath(), name);
+							if (info != null) {
+								imports.add(info);
+							}
+						}
 					}
 				}
 			}
 			
 			// now that the modules have been located and loaded, see which ones define the base classes we're looking for
 			for (String baseClass : baseClasses) {
-				if (localClasses.contains(baseClass)) {
+				PythonDefinition localClass = outline.findDefinition(baseClass);
+				if (localClass != null && localClass.getType() == DefinitionType.CLASS) {
 					// locally-defined class in this source module
-					baseModules.add(new ModuleInfo(moduleInfo.getLibraryName(), moduleInfo.getModule(), baseClass));
+					baseModules.add(new ModuleInfo(moduleInfo.getLibraryName(), moduleInfo.getFile(), outline, baseClass));
 				} else {
 					// external imported class
 					for (ModuleInfo importInfo : imports) {
-						for (IToken token : importInfo.getModule().getGlobalTokens()) {
-							if (baseClass.equalsIgnoreCase(token.getRepresentation())) {
-								baseModules.add(new ModuleInfo(importInfo.getLibraryName(),  importInfo.getModule(), baseClass));
-							}
+						if (importInfo.getOutline().isGlobalName(baseClass)) {
+							baseModules.add(new ModuleInfo(importInfo.getLibraryName(), importInfo.getFile(),
+									importInfo.getOutline(), baseClass));
 						}
 					}
 				}
@@ -532,4 +478,16 @@ public class PyDevUtil {
 
 		return baseModules;
 	}
+
+	/**
+	 * Converts a module name from an import statement to a relative path, ex. "a.b" to "a/b".  Any leading
+	 * dots of a relative import are dropped, since imports are always looked up next to the importing module.
+	 */
+	private static String getModulePath(String moduleName) {
+		int start = 0;
+		while (start < moduleName.length() && moduleName.charAt(start) == '.') {
+			start++;
+		}
+		return moduleName.substring(start).replace(".", File.separator);
+	}
 }
@@ -1,11 +1,33 @@
 package com.millennialmedia.pyro.ui.pydev.internal;
 
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.jface.resource.ImageRegistry;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
+import org.osgi.framework.BundleContext;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.plugin.nature.IPythonNatureListener;
+import org.python.pydev.plugin.nature.PythonNatureListenersManager;
+
+import com.millennialmedia.pyro.model.IFileChangeListener;
+import com.millennialmedia.pyro.model.ModelManager;
 
 /**
  * Activator for the PyDev-specific ui contributions. Exposes an additional icon
- * image.
+ * image, and discards the scanned modules and library information cached for a
+ * Python module whenever it changes. Cached directory listings are discarded as
+ * workspace resources are added or removed, and cached interpreter layouts
+ * whenever a project's pythonpath is rebuilt.
  * 
  * @author spaxton
  */
@@ -15,6 +37,70 @@ public class PyroPyDevPlugin extends AbstractUIPlugin {
 	public static final String IMAGE_PYTHON = "image_python";
 
 	private static PyroPyDevPlugin plugin;
+	private IFileChangeListener pythonFileChangeListener = new IFileChangeListener() {
+		@Override
+		public void filesChanged(List<IFile> changedFiles, List<IFile> addedFiles, List<IFile> removedFiles) {
+			boolean pythonFileChanged = false;
+			for (List<IFile> files : Arrays.asList(changedFiles, addedFiles, removedFiles)) {
+				for (IFile file : files) {
+					if ("py".equalsIgnoreCase(file.getFileExtension())) {
+						pythonFileChanged = true;
+						// the modification time alone can miss quick saves
+						// that keep the file's size
+						IPath location = file.getLocation();
+						if (location != null && files != addedFiles) {
+							PythonModuleCache.getCache().remove(location.toFile());
+						}
+					}
+				}
+			}
+			if (pythonFileChanged) {
+				// library lookups go through the pythonpath, so any edited file
+				// may depend on the module
+				ModelManager.getManager().discardAllDependentProperties();
+			}
+		}
+	};
+
+	private IResourceChangeListener directoryChangeListener = new IResourceChangeListener() {
+		@Override
+		public void resourceChanged(IResourceChangeEvent event) {
+			if (event.getDelta() == null) {
+				return;
+			}
+			try {
+				event.getDelta().accept(new IResourceDeltaVisitor() {
+					@Override
+					public boolean visit(IResourceDelta delta) throws CoreException {
+						if (delta.getKind() != IResourceDelta.ADDED && delta.getKind() != IResourceDelta.REMOVED) {
+							return true;
+						}
+						// invalidating a folder covers everything below it
+						IPath location = delta.getResource().getLocation();
+						if (location != null) {
+							DirectoryListingCache.getCache().invalidate(location.toFile());
+						} else {
+							DirectoryListingCache.getCache().clear();
+						}
+						return false;
+					}
+				});
+			} catch (CoreException e) {
+				// ignore
+			}
+		}
+	};
+	// pydev only holds weak references to its nature listeners
+	private IPythonNatureListener pythonPathListener = new IPythonNatureListener() {
+		@Override
+		public void notifyPythonPathRebuilt(IProject project, IPythonNature nature) {
+			// the interpreter configuration may have changed, so libraries have to
+			// be resolved again
+			InterpreterLayout.clearLayouts();
+			DirectoryListingCache.getCache().clear();
+			ModelManager.getManager().discardAllDependentProperties();
+		}
+	};
 
 	public PyroPyDevPlugin() {
 		super();
@@ -25,6 +111,26 @@ public class PyroPyDevPlugin extends AbstractUIPlugin {
 		return plugin;
 	}
 
+	@Override
+	public void start(BundleContext context) throws Exception {
+		super.start(context);
+		ModelManager.getManager().addFileChangeListener(pythonFileChangeListener);
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(directoryChangeListener,
+				IResourceChangeEvent.POST_CHANGE);
+		PythonNatureListenersManager.addPythonNatureListener(pythonPathListener);
+	}
+
+	@Override
+	public void stop(BundleContext context) throws Exception {
+		ModelManager.getManager().removeFileChangeListener(pythonFileChangeListener);
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(directoryChangeListener);
+		PythonNatureListenersManager.removePythonNatureListener(pythonPathListener);
+		PythonModuleCache.getCache().clear();
+		DirectoryListingCache.getCache().clear();
+		InterpreterLayout.clearLayouts();
+		super.stop(context);
+	}
+
 	@Override
 	protected void initializeImageRegistry(ImageRegistry reg) {
 		reg.put(IMAGE_PYTHON, imageDescriptorFromPlugin(PLUGIN_ID, "icons/python.gif"));
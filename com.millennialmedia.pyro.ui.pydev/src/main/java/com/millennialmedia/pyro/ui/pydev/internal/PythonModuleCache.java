@@ -0,0 +1,179 @@
+package com.millennialmedia.pyro.ui.pydev.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.millennialmedia.pyro.python.PythonModuleOutline;
+import com.millennialmedia.pyro.python.PythonSourceScanner;
+
+/**
+ * Workspace-wide cache of scanned Python modules, shared by every editor that
+ * resolves libraries or variable files. Module outlines are keyed by the
+ * canonical path of their source file, and a cached outline is only reused
+ * while the file's modification time and size are unchanged, so edits made
+ * outside of Eclipse (ex. to installed site-packages) are picked up on the next
+ * lookup.
+ *
+ * Keyword tables compiled from a module are kept alongside its outline, so
+ * they're only recompiled once the module itself is rescanned.
+ *
+ * The cache is bounded by the total size of the cached source files, and the
+ * least-recently used modules are dropped once that exceeds the budget.
+ * Concurrent misses for the same file may each scan it, in which case the last
+ * result is kept.
+ *
+ * @author spaxton
+ */
+public class PythonModuleCache {
+	// an outline retains a small fraction of its source's size, so this holds
+	// a few hundred typical keyword libraries
+	private static final long DEFAULT_BUDGET = 16 * 1024 * 1024;
+	// counted on top of the source size, so empty package initializers aren't
+	// free
+	private static final long ENTRY_WEIGHT = 1024;
+
+	private static PythonModuleCache cache = new PythonModuleCache(DEFAULT_BUDGET);
+
+	private static class Entry {
+		PythonModuleOutline outline;
+		long lastModified;
+		long length;
+		// keyed by the library path remaining inside the module
+		Map<String, KeywordTable> keywordTables = new HashMap<String, KeywordTable>();
+
+		Entry(PythonModuleOutline outline, long lastModified, long length) {
+			this.outline = outline;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+	}
+
+	// iterates from least- to most-recently used
+	private LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private long budget;
+	private long weight;
+
+	private PythonModuleCache(long budget) {
+		this.budget = budget;
+	}
+
+	public static PythonModuleCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Returns the outline of the given Python source file, scanning it only if
+	 * it isn't cached or has changed since it was cached.
+	 *
+	 * @return the outline, or null if the file can't be read
+	 */
+	public PythonModuleOutline getOutline(File file) {
+		String key = getKey(file);
+		long lastModified = file.lastModified();
+		long length = file.length();
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				if (entry.lastModified == lastModified && entry.length == length) {
+					return entry.outline;
+				}
+				entries.remove(key);
+				weight -= getWeight(entry);
+			}
+		}
+
+		// scan outside of the lock, lookups of other modules shouldn't wait
+		PythonModuleOutline outline = null;
+		try {
+			outline = PythonSourceScanner.scan(file);
+		} catch (IOException e) {
+			// treated as a missing module
+		}
+		if (outline != null) {
+			Entry entry = new Entry(outline, lastModified, length);
+			synchronized (this) {
+				Entry replacedEntry = entries.put(key, entry);
+				if (replacedEntry != null) {
+					weight -= getWeight(replacedEntry);
+				}
+				weight += getWeight(entry);
+				evict();
+			}
+		}
+		return outline;
+	}
+
+	/**
+	 * Returns the keyword table for the given resolved module, compiling it
+	 * only if it isn't cached with the module. Tables for a module that's no
+	 * longer cached (ex. evicted, or replaced by a newer scan) are compiled
+	 * every time.
+	 */
+	public KeywordTable getKeywordTable(ModuleInfo moduleInfo) {
+		String remainingPath = moduleInfo.getRemainingPath();
+		String key = getKey(moduleInfo.getFile());
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null && entry.outline == moduleInfo.getOutline()) {
+				KeywordTable keywordTable = entry.keywordTables.get(remainingPath);
+				if (keywordTable != null) {
+					return keywordTable;
+				}
+			}
+		}
+
+		KeywordTable keywordTable = KeywordTable.compile(moduleInfo);
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null && entry.outline == moduleInfo.getOutline()) {
+				entry.keywordTables.put(remainingPath, keywordTable);
+			}
+		}
+		return keywordTable;
+	}
+
+	/**
+	 * Discards the module cached for the given file, if any.
+	 */
+	public void remove(File file) {
+		String key = getKey(file);
+		synchronized (this) {
+			Entry entry = entries.remove(key);
+			if (entry != null) {
+				weight -= getWeight(entry);
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		// always keep the newest module, even if it's over budget by itself
+		while (weight > budget && entries.size() > 1 && iterator.hasNext()) {
+			Entry entry = iterator.next().getValue();
+			iterator.remove();
+			weight -= getWeight(entry);
+		}
+	}
+
+	private static long getWeight(Entry entry) {
+		return ENTRY_WEIGHT + entry.length;
+	}
+
+	private static String getKey(File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			return file.getAbsolutePath();
+		}
+	}
+
+}
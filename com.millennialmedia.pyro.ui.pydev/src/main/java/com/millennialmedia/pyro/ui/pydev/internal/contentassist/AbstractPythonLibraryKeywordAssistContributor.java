@@ -1,29 +1,29 @@
 package com.millennialmedia.pyro.ui.pydev.internal.contentassist;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.viewers.StyledString;
-import org.python.pydev.core.ILocalScope;
-import org.python.pydev.core.IToken;
-import org.python.pydev.editor.codecompletion.revisited.modules.SourceToken;
-import org.python.pydev.parser.jython.ast.FunctionDef;
 
 import com.millennialmedia.pyro.model.util.ModelUtil;
 import com.millennialmedia.pyro.ui.contentassist.KeywordAssistContributorBase;
 import com.millennialmedia.pyro.ui.contentassist.RobotCompletionProposal;
 import com.millennialmedia.pyro.ui.editor.util.PathUtil;
+import com.millennialmedia.pyro.ui.pydev.internal.KeywordTable;
+import com.millennialmedia.pyro.ui.pydev.internal.KeywordTable.Keyword;
 import com.millennialmedia.pyro.ui.pydev.internal.LibraryInfo;
 import com.millennialmedia.pyro.ui.pydev.internal.ModuleInfo;
+import com.millennialmedia.pyro.ui.pydev.internal.PythonModuleCache;
 
 /**
  * Base class for keyword content assist contributor for any Python-authored keywords,
- * both Robot Framework built-ins and 3rd-party provided libraries.
+ * both Robot Framework built-ins and 3rd-party provided libraries.  Keywords are
+ * looked up by prefix in each library module's precompiled {@link KeywordTable}.
  * 
  * @author spaxton
  */
@@ -40,13 +40,12 @@ public abstract class AbstractPythonLibraryKeywordAssistContributor extends Keyw
 
 		String keywordNamePrefix = keywordFragments[0];
 		List<String> keywordLibSegments = PathUtil.getPathSegments(keywordNamePrefix);
+		Map<String, Integer> candidateFragmentStrings = ModelUtil.getCandidateKeywordStrings(keywordNamePrefix);
 
 		// get any Library imports
 		LibraryInfo libraryInfo = getLibraryInfo();
 
 		for (String libraryName : libraryInfo.getOrderedLibraries()) {
-			Collection<ModuleInfo> moduleInfos = null;
-
 			String referencedLibraryName = ModelUtil.getLibraryAlias(getEditor().getModel(), libraryName);
 
 			List<String> librarySegments = PathUtil.getNormalizedPathSegments(referencedLibraryName);
@@ -58,97 +57,57 @@ public abstract class AbstractPythonLibraryKeywordAssistContributor extends Keyw
 				prefixWithLibraryName = true;
 			}
 			
-			moduleInfos = libraryInfo.getModuleMap().get(libraryName);
+			Collection<ModuleInfo> moduleInfos = libraryInfo.getModuleMap().get(libraryName);
+			if (moduleInfos == null || moduleInfos.isEmpty()) {
+				continue;
+			}
 
 			// reassign to use an alias name (if present)
 			libraryName = referencedLibraryName;
-
-			if (moduleInfos != null) {
-				List<IToken> tokens = new ArrayList<IToken>();
-				for (ModuleInfo moduleInfo : moduleInfos) {
-					List<String> subclasses = PathUtil.getPathSegments(moduleInfo.getRemainingPath());
-					tokens.addAll(Arrays.asList(moduleInfo.getModule().getGlobalTokens()));
-					while (!subclasses.isEmpty()) {
-						String subclass = subclasses.remove(0);
-						for (IToken token : tokens) {
-							if (subclass.equalsIgnoreCase(token.getRepresentation())) {
-								// found the token representing the next
-								// portion of the library reference inside
-								// this module
-								int line = token.getLineDefinition();
-								int col = token.getColDefinition();
-								ILocalScope localScope = moduleInfo.getModule().getLocalScope(line, col);
-								tokens.addAll(Arrays.asList(localScope.getAllLocalTokens()));
-								break;
-							}
-						}
-					}
-					
-					// also look for a class of the same name defined in the module
-					// because the module name may include a package structure, match this via endsWith()
-					for (IToken token : tokens) {
-						if (moduleInfo.getModule().getName().endsWith(token.getRepresentation())) {
-							int line = token.getLineDefinition();
-							int col = token.getColDefinition();
-							ILocalScope localScope = moduleInfo.getModule().getLocalScope(line, col);
-							tokens.addAll(Arrays.asList(localScope.getAllLocalTokens()));
-							break;
-						}
-					}
-				}
-
-				if (tokens.isEmpty()) {
+			String normalizedLibraryPrefix = prefixWithLibraryName ? ModelUtil.normalizeKeywordName(libraryName + ".",
+					false) : "";
+
+			// matching keywords in display order, each with the fragments it matched
+			Map<String, Set<String>> keywordMatches = new TreeMap<String, Set<String>>();
+			for (String fragment : candidateFragmentStrings.keySet()) {
+				String normalizedFragment = ModelUtil.normalizeKeywordName(fragment, false);
+				String normalizedKeywordPrefix;
+				if (normalizedFragment.startsWith(normalizedLibraryPrefix)) {
+					normalizedKeywordPrefix = normalizedFragment.substring(normalizedLibraryPrefix.length());
+				} else if (normalizedLibraryPrefix.startsWith(normalizedFragment)) {
+					// still typing the library name, so every keyword matches
+					normalizedKeywordPrefix = "";
+				} else {
 					continue;
 				}
 
-				List<String> keywords = new ArrayList<String>();
-				for (IToken token : tokens) {
-					String tokenName = token.getRepresentation();
-					// filter out internal methods
-					if (tokenName.startsWith("_")) {
-						continue;
-					}
-
-					// also filter out non-functions (ex. constants,
-					// including some expected robot constants like
-					// ROBOT_LIBRARY_* (scope, version, doc format))
-					if (token instanceof SourceToken) {
-						SourceToken sourceToken = (SourceToken) token;
-						if (!(sourceToken.getAst() instanceof FunctionDef)) {
-							continue;
+				for (ModuleInfo moduleInfo : moduleInfos) {
+					KeywordTable keywordTable = PythonModuleCache.getCache().getKeywordTable(moduleInfo);
+					for (Keyword keyword : keywordTable.findByPrefix(normalizedKeywordPrefix)) {
+						String keywordName = prefixWithLibraryName ? libraryName + "." + keyword.getDisplayName()
+								: keyword.getDisplayName();
+						Set<String> matchedFragments = keywordMatches.get(keywordName);
+						if (matchedFragments == null) {
+							matchedFragments = new LinkedHashSet<String>();
+							keywordMatches.put(keywordName, matchedFragments);
 						}
-					}
-
-					String targetKeyword = tokenName.replace("_", " ");
-					if (prefixWithLibraryName) {
-						keywords.add(libraryName + "." + targetKeyword);
-					} else {
-						keywords.add(targetKeyword);
+						matchedFragments.add(fragment);
 					}
 				}
+			}
 
-				Collections.sort(keywords);
-				for (String keyword : keywords) {
-					Map<String, Integer> candidateFragmentStrings = ModelUtil
-							.getCandidateKeywordStrings(keywordFragments[0]);
-					List<String> candidateFragments = new ArrayList<String>(candidateFragmentStrings.keySet());
-					for (String fragment : candidateFragments) {
-						if (ModelUtil.normalizeKeywordName(keyword, false).startsWith(
-								ModelUtil.normalizeKeywordName(fragment, false))) {
-							keyword = performSmartCapitalization(keyword, fragment);
-
-							StyledString styledDisplayString = new StyledString();
-							styledDisplayString.append(keyword, RobotCompletionProposal.FOREGROUND_STYLER);
-							
-							String libraryPath = PathUtil.joinPathSegments(PathUtil.getNormalizedPathSegments(libraryName));
-							styledDisplayString.append(" - " + libraryPath,
-									RobotCompletionProposal.QUALIFIER_STYLER);
-							addCompletionProposal(proposals, keyword, offset - keywordFragments[0].length()
-									+ candidateFragmentStrings.get(fragment), keywordFragments[0].length()
-									- candidateFragmentStrings.get(fragment) + keywordFragments[1].length(),
-									keyword.length(), keyword + " - " + libraryName, styledDisplayString);
-						}
-					}
+			String libraryPath = PathUtil.joinPathSegments(PathUtil.getNormalizedPathSegments(libraryName));
+			for (Map.Entry<String, Set<String>> keywordMatch : keywordMatches.entrySet()) {
+				for (String fragment : keywordMatch.getValue()) {
+					String keyword = performSmartCapitalization(keywordMatch.getKey(), fragment);
+
+					StyledString styledDisplayString = new StyledString();
+					styledDisplayString.append(keyword, RobotCompletionProposal.FOREGROUND_STYLER);
+					styledDisplayString.append(" - " + libraryPath, RobotCompletionProposal.QUALIFIER_STYLER);
+					addCompletionProposal(proposals, keyword, offset - keywordNamePrefix.length()
+							+ candidateFragmentStrings.get(fragment), keywordNamePrefix.length()
+							- candidateFragmentStrings.get(fragment) + keywordFragments[1].length(),
+							keyword.length(), keyword + " - " + libraryName, styledDisplayString);
 				}
 			}
 		}
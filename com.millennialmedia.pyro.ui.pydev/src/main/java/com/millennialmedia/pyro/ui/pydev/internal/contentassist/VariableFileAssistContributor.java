@@ -6,23 +6,13 @@ import java.util.Collections;
 import java.util.List;
 
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.IResource;
-import org.eclipse.core.runtime.IPath;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.viewers.StyledString;
-import org.python.pydev.core.IModule;
-import org.python.pydev.core.IToken;
-import org.python.pydev.editor.codecompletion.revisited.modules.SourceModule;
-import org.python.pydev.editor.codecompletion.revisited.modules.SourceToken;
-import org.python.pydev.parser.jython.SimpleNode;
-import org.python.pydev.parser.jython.ast.Assign;
-import org.python.pydev.parser.jython.ast.Str;
-import org.python.pydev.parser.jython.ast.exprType;
-import org.python.pydev.parser.visitors.scope.EasyASTIteratorVisitor;
 
 import com.millennialmedia.pyro.model.ModelManager;
-import com.millennialmedia.pyro.model.RobotModel;
 import com.millennialmedia.pyro.model.util.ModelUtil;
+import com.millennialmedia.pyro.python.PythonDefinition;
+import com.millennialmedia.pyro.python.PythonDefinition.DefinitionType;
 import com.millennialmedia.pyro.ui.PyroUIPlugin;
 import com.millennialmedia.pyro.ui.contentassist.RobotCompletionProposal;
 import com.millennialmedia.pyro.ui.contentassist.VariableNameAssistContributorBase;
@@ -33,7 +23,8 @@ import com.millennialmedia.pyro.ui.pydev.internal.ModuleInfo;
 import com.millennialmedia.pyro.ui.pydev.internal.PyDevUtil;
 
 /**
- * Content assist contributor for python variable files imported via the Settings table.
+ * Content assist contributor for python variable files imported via the Settings table.  The
+ * variables are taken from the module's scanned outline.
  * 
  * @author spaxton
  */
@@ -64,55 +55,25 @@ public class VariableFileAssistContributor extends VariableNameAssistContributor
 			
 			final List<String> varNames = new ArrayList<String>();
 			
-			IToken[] tokens = info.getModule().getGlobalTokens();
-			for (final IToken token : tokens) {
-				if (token.getType() == IToken.TYPE_ATTR && token instanceof SourceToken) {
-					if ("__all__".equals(token.getRepresentation())) {
-						// just take the given var names from the array assignment and ignore everything else in the file
-						varNames.clear();
-						
-						IModule module = info.getModule();
-						if (module instanceof SourceModule) {
-							SimpleNode node = ((SourceModule) module).getAst();
-							try {
-								// go traverse the whole AST - we're looking to match the token we just found
-								node.traverse(new EasyASTIteratorVisitor() {
-									@Override
-									public Object visitAssign(Assign node) throws Exception {
-										for (exprType expr : node.targets) {
-											if (expr == ((SourceToken) token).getAst()) {
-												// we've found the __all__ assignment, now find the value
-												exprType valueExpr = node.value;
-												if (valueExpr instanceof org.python.pydev.parser.jython.ast.List) {
-													org.python.pydev.parser.jython.ast.List list = (org.python.pydev.parser.jython.ast.List) valueExpr;
-													for (exprType listMember: list.elts) {
-														// add each variable
-														if (listMember instanceof Str) {
-															varNames.add("${" + ((Str) listMember).s + "}");
-														}
-													}
-												}
-											}
-										}
-										return super.visitAssign(node);
-									}
-								});
-							} catch (Exception e) {
-							}
-						}
-						
-						break;
-					} else if (token.getRepresentation().startsWith("list__")) {
-						varNames.add("@{" + token.getRepresentation() + "}");
+			List<String> allNames = info.getOutline().getAllNames();
+			if (allNames != null) {
+				// just take the given var names from the array assignment and ignore everything else in the file
+				for (String name : allNames) {
+					varNames.add("${" + name + "}");
+				}
+			} else {
+				for (PythonDefinition definition : info.getOutline().getDefinitions(DefinitionType.VARIABLE)) {
+					if (definition.getName().startsWith("list__")) {
+						varNames.add("@{" + definition.getName() + "}");
 					} else {
-						varNames.add("${" + token.getRepresentation() + "}");
+						varNames.add("${" + definition.getName() + "}");
 					}
 				}
 			}
 		
 			Collections.sort(varNames);
 			
-			createProposals(varNames, offset, variableBeginning, proposals, info.getModule().getFile().getName());
+			createProposals(varNames, offset, variableBeginning, proposals, info.getFile().getName());
 		}
 	}
 
@@ -152,42 +113,15 @@ public class VariableFileAssistContributor extends VariableNameAssistContributor
 			}
 		}
 		
-		List<String> resourceFilePaths = ModelUtil.getResourceFilePaths(editor.getModel());
-		if (!resourceFilePaths.isEmpty()) {
-			IPath rootPath = PathUtil.getRootPath(editor);
-			if (rootPath != null) {
-				// for each resource file in the Settings table(s)
-				for (String resourceFilePath : resourceFilePaths) {
-					addIndirectlyReferencedFiles(filePaths, file, resourceFilePath);
+		// then any variable files referenced from resource files, directly or transitively
+		for (IFile resourceFile : PathUtil.collectReferencedResourceFiles(editor)) {
+			for (String varPath : ModelManager.getManager().getSummary(resourceFile).getVariableFilePaths()) {
+				if (!filePaths.contains(varPath)) {
+					filePaths.add(varPath);
 				}
 			}
 		}
 		return filePaths;
 	}
 	
-	public static void addIndirectlyReferencedFiles(List<String> filePaths, IFile localFile, String resourceFilePath) {
-		// add any variable files referenced from this local file
-		List<String> variableFilePaths = ModelUtil.getVariableFilePaths(ModelManager.getManager().getModel(localFile));
-		for (String varPath : variableFilePaths) {
-			if (!filePaths.contains(varPath)) {
-				filePaths.add(varPath);
-			}
-		}
-		
-		// now find any resource files and recursively check against those too
-		IResource resource = PathUtil.getResourceForPath(localFile, resourceFilePath);
-		if (resource != null && resource instanceof IFile) {
-			IFile targetFile = (IFile) resource;
-			RobotModel targetModel = ModelManager.getManager().getModel(targetFile);
-
-			// repeat for any files contained within this model (transitive resource file imports)
-			List<String> resourceFilePaths = ModelUtil.getResourceFilePaths(targetModel);
-			if (!resourceFilePaths.isEmpty()) {
-				for (String transitiveResourceFilePath : resourceFilePaths) {
-					addIndirectlyReferencedFiles(filePaths, targetFile, transitiveResourceFilePath);
-				}
-			}
-		}
-	}
-	
 }
@@ -1,19 +1,14 @@
 package com.millennialmedia.pyro.ui.pydev.internal.hyperlink;
 
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.hyperlink.IHyperlink;
-import org.python.pydev.core.ILocalScope;
-import org.python.pydev.core.IToken;
 import org.python.pydev.editor.actions.PyOpenAction;
 import org.python.pydev.editor.model.ItemPointer;
 import org.python.pydev.shared_core.structure.Location;
@@ -21,11 +16,15 @@ import org.python.pydev.shared_core.structure.Location;
 import com.millennialmedia.pyro.model.util.ModelUtil;
 import com.millennialmedia.pyro.ui.editor.util.PathUtil;
 import com.millennialmedia.pyro.ui.hyperlink.AbstractKeywordDefinitionHyperlinkDetector;
+import com.millennialmedia.pyro.ui.pydev.internal.KeywordTable.Keyword;
 import com.millennialmedia.pyro.ui.pydev.internal.LibraryInfo;
 import com.millennialmedia.pyro.ui.pydev.internal.ModuleInfo;
+import com.millennialmedia.pyro.ui.pydev.internal.PythonModuleCache;
 
 /**
  * Base class for hyperlink detection of keywords implemented in Python libraries.
+ * Keywords are looked up by normalized name in each library module's precompiled
+ * keyword table.
  * 
  * @author spaxton
  */
@@ -50,221 +49,64 @@ public abstract class AbstractPythonLibraryKeywordDefinitionHyperlinkDetector ex
 		LibraryInfo libraryInfo = getLibraryInfo();
 
 		for (final String candidateKeywordName : candidateCallStrings.keySet()) {
-			Collection<ModuleInfo> moduleInfos = null;
-			String keywordName = null;
-			IToken matchingToken = null;
-			Map<IToken, ModuleInfo> tokenToModuleInfoMap = new HashMap<IToken, ModuleInfo>();
-
 			for (String libraryName : libraryInfo.getOrderedLibraries()) {
+				String keywordName;
 				if (candidateKeywordName.contains(".")) {
-					// break into segments and look up against the module map
-					List<IToken> tokens = new CopyOnWriteArrayList<IToken>();
+					// a qualified keyword only matches within the named library
 					String referencedLibraryName = ModelUtil.getLibraryAlias(getEditor().getModel(), libraryName);
-
-					if (libraryNameMatches(referencedLibraryName,
+					if (!libraryNameMatches(referencedLibraryName,
 							candidateKeywordName.substring(0, candidateKeywordName.lastIndexOf(".")))) {
-						moduleInfos = libraryInfo.getModuleMap().get(libraryName);
-
-						String[] segments = candidateKeywordName.split("\\.");
-						keywordName = segments[segments.length - 1];
-
-						if (moduleInfos != null) {
-							for (ModuleInfo moduleInfo : moduleInfos) {
-								List<String> subclasses = PathUtil.getPathSegments(moduleInfo.getRemainingPath());
-								List<IToken> tokenList = Arrays.asList(moduleInfo.getModule().getGlobalTokens());
-								tokens.addAll(tokenList);
-								for (IToken copyToken : tokenList) {
-									tokenToModuleInfoMap.put(copyToken, moduleInfo);
-								}
-								
-								while (!subclasses.isEmpty()) {
-									String subclass = subclasses.remove(0);
-									for (IToken token : tokens) {
-										if (subclass.equalsIgnoreCase(token.getRepresentation())) {
-											// found the token representing the next
-											// portion of the library reference
-											// inside this module
-											int line = token.getLineDefinition();
-											int col = token.getColDefinition();
-											ILocalScope localScope = moduleInfo.getModule().getLocalScope(line, col);
-											tokenList = Arrays.asList(localScope.getAllLocalTokens());
-											tokens.addAll(tokenList);
-											for (IToken copyToken : tokenList) {
-												tokenToModuleInfoMap.put(copyToken, moduleInfo);
-											}
-											break;
-										}
-									}
-								}
-							}
-						}
-
-						if (tokens.isEmpty()) {
-							continue;
-						}
-						
-						for (IToken token : tokens) {
-							if (!token.getRepresentation().startsWith("_") &&
-									ModelUtil.normalizeKeywordName(candidateKeywordName, false)
-									.endsWith(ModelUtil.normalizeKeywordName(token.getRepresentation(), false))
-								) {
-								matchingToken = token;
-								break;
-							}
-						}
-						
-						if (matchingToken == null) {
-							// haven't found anything yet - check for a Class of the same name defined inside this module and repeat 
-							for (IToken token : tokens) {
-								for (ModuleInfo moduleInfo : moduleInfos) {
-									if (moduleInfo.getModule().getName().endsWith(token.getRepresentation())) {
-										int line = token.getLineDefinition();
-										int col = token.getColDefinition();
-										ILocalScope localScope = moduleInfo.getModule().getLocalScope(line, col);
-
-										List<IToken> tokenList = Arrays.asList(localScope.getAllLocalTokens());
-										tokens.addAll(tokenList);
-										for (IToken copyToken : tokenList) {
-											tokenToModuleInfoMap.put(copyToken, moduleInfo);
-										}
-										break;
-									}
-								}
-							}
-
-							if (tokens.isEmpty()) {
-								continue;
-							}
-							
-							for (IToken token : tokens) {
-								if (!token.getRepresentation().startsWith("_") &&
-										ModelUtil.normalizeKeywordName(candidateKeywordName, false)
-										.endsWith(ModelUtil.normalizeKeywordName(token.getRepresentation(), false))
-									) {
-									matchingToken = token;
-									break;
-								}
-							}
-						}
+						continue;
 					}
+					keywordName = candidateKeywordName.substring(candidateKeywordName.lastIndexOf(".") + 1);
 				} else {
 					// plain keyword without module qualifiers, search across
 					// libraries in referenced order
-					moduleInfos = libraryInfo.getModuleMap().get(libraryName);
 					keywordName = candidateKeywordName;
-					List<IToken> tokens = new CopyOnWriteArrayList<IToken>();
+				}
 
-					if (moduleInfos != null) {
-						for (ModuleInfo moduleInfo : moduleInfos) {
-							List<String> subclasses = PathUtil.getPathSegments(moduleInfo.getRemainingPath());
-							List<IToken> tokenList = Arrays.asList(moduleInfo.getModule().getGlobalTokens());
-							tokens.addAll(tokenList);
-							for (IToken copyToken : tokenList) {
-								tokenToModuleInfoMap.put(copyToken, moduleInfo);
-							}
-							
-							while (!subclasses.isEmpty()) {
-								String subclass = subclasses.remove(0);
-								for (IToken token : tokens) {
-									if (subclass.equalsIgnoreCase(token.getRepresentation())) {
-										// found the token representing the next
-										// portion of the library reference inside
-										// this module
-										int line = token.getLineDefinition();
-										int col = token.getColDefinition();
-										ILocalScope localScope = moduleInfo.getModule().getLocalScope(line, col);
-										tokenList = Arrays.asList(localScope.getAllLocalTokens());
-										tokens.addAll(tokenList);
-										for (IToken copyToken : tokenList) {
-											tokenToModuleInfoMap.put(copyToken, moduleInfo);
-										}
-										break;
-									}
-								}
-							}
-						}
-					}
+				Collection<ModuleInfo> moduleInfos = libraryInfo.getModuleMap().get(libraryName);
+				if (moduleInfos == null) {
+					continue;
+				}
 
-					if (tokens.isEmpty()) {
-						continue;
-					}
-					
-					for (IToken token : tokens) {
-						if (!token.getRepresentation().startsWith("_") &&
-								ModelUtil.normalizeKeywordName(candidateKeywordName, false)
-								.endsWith(ModelUtil.normalizeKeywordName(token.getRepresentation(), false))
-							) {
-							matchingToken = token;
-							break;
-						}
+				String normalizedKeywordName = ModelUtil.normalizeKeywordName(keywordName, false);
+				Keyword matchingKeyword = null;
+				for (ModuleInfo moduleInfo : moduleInfos) {
+					matchingKeyword = PythonModuleCache.getCache().getKeywordTable(moduleInfo).find(normalizedKeywordName);
+					if (matchingKeyword != null) {
+						break;
 					}
+				}
 
-					if (matchingToken == null) {
-						// haven't found anything yet - check for a Class of the same name defined inside this module and repeat 
-						for (IToken token : tokens) {
-							for (ModuleInfo moduleInfo : moduleInfos) {
-								if (moduleInfo.getModule().getName().endsWith(token.getRepresentation())) {
-									int line = token.getLineDefinition();
-									int col = token.getColDefinition();
-									ILocalScope localScope = moduleInfo.getModule().getLocalScope(line, col);
-
-									List<IToken> tokenList = Arrays.asList(localScope.getAllLocalTokens());
-									tokens.addAll(tokenList);
-									for (IToken copyToken : tokenList) {
-										tokenToModuleInfoMap.put(copyToken, moduleInfo);
-									}
-									break;
-								}
-							}
+				if (matchingKeyword != null) {
+					final ItemPointer pointer = new ItemPointer(matchingKeyword.getFile(), new Location(
+							matchingKeyword.getLine() - 1, matchingKeyword.getColumn() - 1), new Location(
+							matchingKeyword.getLine() - 1, matchingKeyword.getColumn() - 1));
+					final IProject project = PathUtil.getEditorFile(getEditor()).getProject();
+					IHyperlink link = new IHyperlink() {
+						@Override
+						public void open() {
+							new PyOpenAction().run(pointer, project, null);
 						}
 
-						if (tokens.isEmpty()) {
-							continue;
-						}
-						
-						for (IToken token : tokens) {
-							if (!token.getRepresentation().startsWith("_") &&
-									ModelUtil.normalizeKeywordName(candidateKeywordName, false)
-									.endsWith(ModelUtil.normalizeKeywordName(token.getRepresentation(), false))
-								) {
-								matchingToken = token;
-								break;
-							}
+						@Override
+						public String getTypeLabel() {
+							return "";
 						}
-					}
-				}
-
-				if (keywordName != null && matchingToken != null) {
-					ModuleInfo matchingModuleInfo = tokenToModuleInfoMap.get(matchingToken);
-					if (matchingModuleInfo != null) {
-						final ItemPointer pointer = new ItemPointer(matchingModuleInfo.getModule().getFile(), new Location(
-								matchingToken.getLineDefinition() - 1, matchingToken.getColDefinition() - 1), new Location(
-								matchingToken.getLineDefinition() - 1, matchingToken.getColDefinition() - 1));
-						final IProject project = PathUtil.getEditorFile(getEditor()).getProject();
-						IHyperlink link = new IHyperlink() {
-							@Override
-							public void open() {
-								new PyOpenAction().run(pointer, project, null);
-							}
-
-							@Override
-							public String getTypeLabel() {
-								return "";
-							}
 
-							@Override
-							public String getHyperlinkText() {
-								return "";
-							}
+						@Override
+						public String getHyperlinkText() {
+							return "";
+						}
 
-							@Override
-							public IRegion getHyperlinkRegion() {
-								return new Region(keywordCallContext.getKeywordStartOffset()
-										+ candidateCallStrings.get(candidateKeywordName), candidateKeywordName.length());
-							}
-						};
-						return new IHyperlink[] { link };
-					}
+						@Override
+						public IRegion getHyperlinkRegion() {
+							return new Region(keywordCallContext.getKeywordStartOffset()
+									+ candidateCallStrings.get(candidateKeywordName), candidateKeywordName.length());
+						}
+					};
+					return new IHyperlink[] { link };
 				}
 			}
 		}
@@ -8,8 +8,6 @@ import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.hyperlink.IHyperlink;
-import org.python.pydev.core.ILocalScope;
-import org.python.pydev.core.IToken;
 import org.python.pydev.editor.actions.PyOpenAction;
 import org.python.pydev.editor.model.ItemPointer;
 import org.python.pydev.shared_core.structure.Location;
@@ -19,6 +17,7 @@ import com.millennialmedia.pyro.model.Step;
 import com.millennialmedia.pyro.model.Step.StepType;
 import com.millennialmedia.pyro.model.StepSegment;
 import com.millennialmedia.pyro.model.StepSegment.SegmentType;
+import com.millennialmedia.pyro.python.PythonDefinition;
 import com.millennialmedia.pyro.ui.editor.util.PathUtil;
 import com.millennialmedia.pyro.ui.hyperlink.AbstractRobotHyperlinkDetector;
 import com.millennialmedia.pyro.ui.pydev.internal.LibraryInfo;
@@ -58,10 +57,7 @@ public class PythonLibraryHyperlinkDetector extends AbstractRobotHyperlinkDetect
 		int linkOffset = region.getOffset();
 
 		// advance to the line containing the possible link
-		Line line = getEditor().getModel().getFirstLine();
-		while (line.getLineOffset() + line.getLineLength() < linkOffset) {
-			line = line.getNextLine();
-		}
+		Line line = getEditor().getModel().getLineIndex().getFirstLineEndingAfter(linkOffset - 1);
 
 		// now walk through each step in the line to see if a keyword is the
 		// link origin
@@ -106,27 +102,25 @@ public class PythonLibraryHyperlinkDetector extends AbstractRobotHyperlinkDetect
 		}
 
 		List<String> subclasses = PathUtil.getPathSegments(moduleInfo.getRemainingPath());
-		IToken[] tokens = moduleInfo.getModule().getGlobalTokens();
-		IToken targetToken = null;
+		List<PythonDefinition> definitions = moduleInfo.getOutline().getDefinitions();
+		PythonDefinition targetDefinition = null;
 		while (!subclasses.isEmpty()) {
 			String subclass = subclasses.remove(0);
-			for (IToken token : tokens) {
-				if (subclass.equalsIgnoreCase(token.getRepresentation())) {
-					// found the token representing the next portion of the
+			for (PythonDefinition definition : definitions) {
+				if (subclass.equalsIgnoreCase(definition.getName())) {
+					// found the definition representing the next portion of the
 					// library reference inside this module
-					int line = token.getLineDefinition();
-					int col = token.getColDefinition();
-					ILocalScope localScope = moduleInfo.getModule().getLocalScope(line, col);
-					targetToken = token;
-					tokens = localScope.getAllLocalTokens();
+					targetDefinition = definition;
+					definitions = definition.getMembers();
 					break;
 				}
 			}
 		}
 
-		if (targetToken != null) {
+		if (targetDefinition != null) {
 			return new IHyperlink[] { createLink(libraryReferenceContext.libraryStartOffset,
-					libraryReferenceContext.libraryName.length(), moduleInfo, targetToken) };
+					libraryReferenceContext.libraryName.length(), moduleInfo, targetDefinition.getLine() - 1,
+					targetDefinition.getColumn() - 1) };
 		}
 
 		// otherwise we're pointing at a whole module file to just link to the
@@ -154,15 +148,9 @@ public class PythonLibraryHyperlinkDetector extends AbstractRobotHyperlinkDetect
 		return null;
 	}
 
-	protected IHyperlink createLink(final int offset, final int length, final ModuleInfo moduleInfo,
-			final IToken targetToken) {
-		return createLink(offset, length, moduleInfo, targetToken.getLineDefinition() - 1,
-				targetToken.getColDefinition() - 1);
-	}
-
 	protected IHyperlink createLink(final int offset, final int length, final ModuleInfo moduleInfo,
 			final int targetLine, final int targetCol) {
-		final ItemPointer pointer = new ItemPointer(moduleInfo.getModule().getFile(), new Location(targetLine,
+		final ItemPointer pointer = new ItemPointer(moduleInfo.getFile(), new Location(targetLine,
 				targetCol), new Location(targetLine, targetCol));
 		final IProject project = PathUtil.getEditorFile(getEditor()).getProject();
 		IHyperlink link = new IHyperlink() {
@@ -1,11 +1,17 @@
 package com.millennialmedia.pyro.ui;
 
 import org.eclipse.jface.resource.ImageRegistry;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
+import org.osgi.framework.BundleContext;
+
+import com.millennialmedia.pyro.ui.internal.preferences.IPreferenceConstants;
+import com.millennialmedia.pyro.ui.internal.preferences.ModelCachePreferencePage;
 
 /**
  * UI plugin activator. Its main purpose is to expose a set of common icons for
- * reuse.
+ * reuse. It also keeps the model cache's budget in line with the preferences.
  * 
  * @author spaxton
  */
@@ -24,6 +30,14 @@ public class PyroUIPlugin extends AbstractUIPlugin {
 	public static final String IMAGE_EXPAND_ALL = "image_expand_all";
 
 	private static PyroUIPlugin plugin;
+	private IPropertyChangeListener cacheBudgetListener = new IPropertyChangeListener() {
+		@Override
+		public void propertyChange(PropertyChangeEvent event) {
+			if (IPreferenceConstants.MODEL_CACHE_BUDGET.equals(event.getProperty())) {
+				ModelCachePreferencePage.applyBudget(getPreferenceStore());
+			}
+		}
+	};
 
 	public PyroUIPlugin() {
 		super();
@@ -34,6 +48,19 @@ public class PyroUIPlugin extends AbstractUIPlugin {
 		return plugin;
 	}
 
+	@Override
+	public void start(BundleContext context) throws Exception {
+		super.start(context);
+		ModelCachePreferencePage.applyBudget(getPreferenceStore());
+		getPreferenceStore().addPropertyChangeListener(cacheBudgetListener);
+	}
+
+	@Override
+	public void stop(BundleContext context) throws Exception {
+		getPreferenceStore().removePropertyChangeListener(cacheBudgetListener);
+		super.stop(context);
+	}
+
 	@Override
 	protected void initializeImageRegistry(ImageRegistry reg) {
 		reg.put(IMAGE_TESTCASE, imageDescriptorFromPlugin(PLUGIN_ID, "icons/test.gif"));
@@ -87,12 +87,10 @@ public class ContentAssistContributorBase extends AbstractEditorAwareContributor
 	 */
 	protected String[] getStringFragments(int offset, SegmentType targetType, ITextViewer viewer) {
 		RobotModel model = getEditor().getModel();
-		Line line = model.getFirstLine();
-		Line previousLine = line;
-		// advance to a line that we know contains the caret location
-		while (line != null && line.getLineOffset() <= offset) {
-			previousLine = line;
-			line = line.getNextLine();
+		// find the last line that begins at or before the caret location
+		Line previousLine = model.getLineIndex().getLineAtOffset(offset);
+		if (previousLine == null) {
+			previousLine = model.getFirstLine();
 		}
 
 		// previousLine now points to our current line
@@ -152,12 +150,7 @@ public class ContentAssistContributorBase extends AbstractEditorAwareContributor
 	}
 
 	protected Line getRobotLineForOffset(int offset) {
-		RobotModel model = getEditor().getModel();
-		Line line = model.getFirstLine();
-		while (line != null && line.getLineOffset() + line.getLineLength() <= offset) {
-			line = line.getNextLine();
-		}
-		return line;
+		return getEditor().getModel().getLineIndex().getFirstLineEndingAfter(offset);
 	}
 
 	/**
@@ -4,13 +4,18 @@ import java.util.Map;
 import java.util.WeakHashMap;
 
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITextViewerExtension2;
 import org.eclipse.jface.text.source.ISourceViewer;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IFileEditorInput;
+import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.editors.text.FileDocumentProvider;
 import org.eclipse.ui.editors.text.TextEditor;
 import org.eclipse.ui.views.contentoutline.IContentOutlinePage;
@@ -20,6 +25,7 @@ import com.millennialmedia.pyro.model.RobotModel;
 import com.millennialmedia.pyro.ui.internal.editor.RobotSourceViewerConfiguration;
 import com.millennialmedia.pyro.ui.internal.outline.RobotOutlinePage;
 import com.millennialmedia.pyro.ui.internal.syntaxcoloring.ColorManager;
+import com.millennialmedia.pyro.ui.internal.syntaxcoloring.RobotPresentationDamager;
 
 /**
  * Entry point for the editor UI.
@@ -27,46 +33,84 @@ import com.millennialmedia.pyro.ui.internal.syntaxcoloring.ColorManager;
  * @author spaxton
  */
 public class RobotFrameworkEditor extends TextEditor {
-	class RobotDocumentProvider extends FileDocumentProvider {
-		private RobotFrameworkEditor editor;
+	public static final String EDITOR_ID = "com.millennialmedia.pyro.ui.editor.RobotFrameworkEditor";
 
-		RobotDocumentProvider(RobotFrameworkEditor editor) {
-			this.editor = editor;
+	private ColorManager colorManager;
+	private RobotOutlinePage outlinePage;
+	private volatile RobotModel model;
+	// the file whose cached model is pinned while it's being edited
+	private IFile editedFile;
+	// modification stamp of the document contents the model was parsed from
+	private volatile long modelStamp = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	// the edits made since the model was parsed, or null if there are none
+	private volatile PendingEdit pendingEdit;
+	private IDocument editedDocument;
+	private IDocumentListener editListener = new IDocumentListener() {
+		@Override
+		public void documentAboutToBeChanged(DocumentEvent event) {
 		}
 
-		protected IDocument createDocument(Object element) throws CoreException {
-			IDocument document = super.createDocument(element);
+		@Override
+		public void documentChanged(DocumentEvent event) {
+			int insertedLength = event.getText() != null ? event.getText().length() : 0;
+			pendingEdit = PendingEdit.add(pendingEdit, getModificationStamp(event.getDocument()), event.getOffset(),
+					event.getLength(), insertedLength);
+		}
+	};
+	private static Map<IDocument, RobotModel> docToModelMap = new WeakHashMap<IDocument, RobotModel>();
 
-			document.addDocumentListener(new IDocumentListener() {
-				@Override
-				public void documentChanged(DocumentEvent event) {
-					editor.documentChanged();
-				}
+	/**
+	 * All the edits made since the model was parsed, coalesced into a single
+	 * edit of the model's contents that covers every one of them.
+	 */
+	private static class PendingEdit {
+		// modification stamp of the document once the last edit was made
+		final long stamp;
+		final int offset;
+		final int replacedLength;
+		final int insertedLength;
 
-				@Override
-				public void documentAboutToBeChanged(DocumentEvent event) {
-				}
-			});
-			return document;
+		PendingEdit(long stamp, int offset, int replacedLength, int insertedLength) {
+			this.stamp = stamp;
+			this.offset = offset;
+			this.replacedLength = replacedLength;
+			this.insertedLength = insertedLength;
 		}
 
+		static PendingEdit add(PendingEdit edit, long stamp, int offset, int replacedLength, int insertedLength) {
+			if (edit == null) {
+				return new PendingEdit(stamp, offset, replacedLength, insertedLength);
+			}
+			// the covered range in the model's contents and in the current
+			// document, grown to take in the new edit
+			int start = Math.min(edit.offset, offset);
+			int previousEnd = edit.offset + edit.replacedLength;
+			int currentEnd = edit.offset + edit.insertedLength;
+			if (offset + replacedLength > currentEnd) {
+				previousEnd += offset + replacedLength - currentEnd;
+				currentEnd = offset + replacedLength;
+			}
+			currentEnd += insertedLength - replacedLength;
+			return new PendingEdit(stamp, start, previousEnd - start, currentEnd - start);
+		}
 	}
 
-	public static final String EDITOR_ID = "com.millennialmedia.pyro.ui.editor.RobotFrameworkEditor";
-
-	private ColorManager colorManager;
-	private RobotOutlinePage outlinePage;
-	private RobotModel model;
-	private static Map<IDocument, RobotModel> docToModelMap = new WeakHashMap<IDocument, RobotModel>();
-
 	public RobotFrameworkEditor() {
 		super();
 		colorManager = new ColorManager();
 		setSourceViewerConfiguration(new RobotSourceViewerConfiguration(this, colorManager));
-		setDocumentProvider(new RobotDocumentProvider(this));
+		setDocumentProvider(new FileDocumentProvider());
 	}
 
 	public void dispose() {
+		if (editedDocument != null) {
+			editedDocument.removeDocumentListener(editListener);
+			editedDocument = null;
+		}
+		if (editedFile != null) {
+			ModelManager.getManager().releaseModel(editedFile);
+			editedFile = null;
+		}
 		colorManager.dispose();
 		super.dispose();
 	}
@@ -88,30 +132,151 @@ public class RobotFrameworkEditor extends TextEditor {
 		return outlinePage;
 	}
 
+	/**
+	 * Returns the current model snapshot for the edited document. Edits are
+	 * normally parsed in the background once typing pauses, but when called on
+	 * the UI thread while edits are still pending, they're parsed right away
+	 * so that the model's offsets match the document.
+	 * 
+	 * A returned model is never modified. Each reparse publishes a new model
+	 * instead, so callers that want to see later edits should call this again
+	 * rather than holding on to the result.
+	 */
 	public RobotModel getModel() {
+		IEditorInput input = getEditorInput();
+		IDocument document = getDocumentProvider().getDocument(input);
 		if (model == null) {
-			IEditorInput input = getEditorInput();
-			IDocument document = getDocumentProvider().getDocument(input);
 			if (input instanceof IFileEditorInput) {
 				IFile file = ((IFileEditorInput) input).getFile();
+				modelStamp = getModificationStamp(document);
+				pendingEdit = null;
 				model = ModelManager.getManager().getModel(file, document.get());
+				editedFile = file;
+				editedDocument = document;
+				document.addDocumentListener(editListener);
+				if (getPresentationDamager() != null) {
+					getPresentationDamager().reset();
+				}
 				docToModelMap.put(document, model);
 			}
+		} else if (Display.getCurrent() != null && modelStamp != getModificationStamp(document)) {
+			long stamp = getModificationStamp(document);
+			RobotModel newModel = parse(model, document.get(), stamp, null);
+			if (newModel != null) {
+				applyModel(newModel, stamp);
+			}
 		}
 		return model;
 	}
 
-	public ISourceViewer getViewer() {
-		return getSourceViewer();
+	/**
+	 * Whether the document has been edited since the model was last parsed.
+	 */
+	public boolean isModelStale() {
+		IDocument document = getDocumentProvider() != null ? getDocumentProvider().getDocument(getEditorInput())
+				: null;
+		return model != null && document != null && modelStamp != getModificationStamp(document);
 	}
 
-	void documentChanged() {
-		ModelManager.getManager().reparse(getModel(), getViewer().getDocument().get());
-		getOutlinePage().refresh();
+	/**
+	 * Brings the model up to date with the given document. The edits since the
+	 * model was parsed are parsed on the calling thread, normally the
+	 * reconciler's background thread, and the result is published as the
+	 * current model on the UI thread followed by a single recoloring and
+	 * outline refresh. The parse is abandoned if the monitor is canceled, and a
+	 * result is discarded if the document was edited again while it was being
+	 * produced.
+	 */
+	public void reconcileModel(final IDocument document, IProgressMonitor monitor) {
+		final RobotModel currentModel = model;
+		final long stamp = getModificationStamp(document);
+		if (currentModel == null || stamp == modelStamp) {
+			return;
+		}
+
+		String contents = document.get();
+		if (stamp != getModificationStamp(document)) {
+			// edited while reading, the reconciler runs again for that edit
+			return;
+		}
+		final RobotModel newModel = parse(currentModel, contents, stamp, monitor);
+		if (newModel == null || (monitor != null && monitor.isCanceled())) {
+			return;
+		}
+
+		PlatformUI.getWorkbench().getDisplay().asyncExec(new Runnable() {
+			@Override
+			public void run() {
+				if (model == currentModel && getSourceViewer() != null && modelStamp != stamp
+						&& stamp == getModificationStamp(document)) {
+					applyModel(newModel, stamp);
+				}
+			}
+		});
+	}
+
+	public ISourceViewer getViewer() {
+		return getSourceViewer();
 	}
 
 	public static RobotModel getModelFor(IDocument document) {
 		return docToModelMap.get(document);
 	}
 
+	/**
+	 * Parses the given contents of the document as of the given stamp. Only
+	 * the part of the document covered by the pending edits is reparsed when
+	 * those are known to be up to date with the contents, otherwise the whole
+	 * document is.
+	 */
+	private RobotModel parse(RobotModel currentModel, String contents, long stamp, IProgressMonitor monitor) {
+		PendingEdit edit = pendingEdit;
+		if (edit != null && edit.stamp == stamp && currentModel == model) {
+			return ModelManager.getManager().parse(currentModel, contents, edit.offset, edit.replacedLength,
+					edit.insertedLength, monitor);
+		}
+		return ModelManager.getManager().parse(currentModel, contents, monitor);
+	}
+
+	private void applyModel(RobotModel newModel, long stamp) {
+		RobotModel previousModel = model;
+		IRegion[] damage = null;
+		if (getPresentationDamager() != null) {
+			damage = getPresentationDamager().getModelDamage(previousModel.getFirstLine(), newModel.getFirstLine());
+		}
+
+		// publish the new snapshot with a single write. readers still holding
+		// the previous model are unaffected
+		ModelManager.getManager().replaceModel(previousModel, newModel);
+		modelStamp = stamp;
+		pendingEdit = null;
+		model = newModel;
+		docToModelMap.put(getDocumentProvider().getDocument(getEditorInput()), newModel);
+
+		// recolor whatever the new model changed along with the outline now
+		// that the model matches the document again
+		ISourceViewer viewer = getSourceViewer();
+		if (damage != null && viewer instanceof ITextViewerExtension2) {
+			for (IRegion region : damage) {
+				((ITextViewerExtension2) viewer).invalidateTextPresentation(region.getOffset(), region.getLength());
+			}
+		} else if (viewer != null) {
+			viewer.invalidateTextPresentation();
+		}
+		if (outlinePage != null) {
+			outlinePage.refresh(newModel);
+		}
+	}
+
+	private RobotPresentationDamager getPresentationDamager() {
+		return ((RobotSourceViewerConfiguration) getSourceViewerConfiguration()).getPresentationDamager();
+	}
+
+	private static long getModificationStamp(IDocument document) {
+		if (document instanceof IDocumentExtension4) {
+			return ((IDocumentExtension4) document).getModificationStamp();
+		}
+		return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+
 }
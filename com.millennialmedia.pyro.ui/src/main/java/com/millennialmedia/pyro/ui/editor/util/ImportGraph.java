@@ -0,0 +1,215 @@
+package com.millennialmedia.pyro.ui.editor.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+
+import com.millennialmedia.pyro.model.IFileChangeListener;
+import com.millennialmedia.pyro.model.ModelManager;
+
+/**
+ * The graph of resource file imports between Robot files in the workspace.
+ * Each file's resolved resource imports are computed once, as is the
+ * transitive closure of resource files reachable from it, so repeated lookups
+ * from the same editor cost a single map lookup. Traversals track visited
+ * files, so cyclic imports are safe.
+ *
+ * Cached entries are dropped as files change. A changed file invalidates its
+ * own imports along with every closure that passes through it, while added or
+ * removed files may change how any import path resolves, so they clear the
+ * whole graph. Models of the files importing a changed file, directly or
+ * through other resource files, have their dependent properties discarded.
+ * Files being edited resolve their imports from their unsaved contents, which
+ * the graph doesn't record, so their dependencies are tracked by the model
+ * manager instead (see {@link ModelManager#setEditedDependencies}).
+ *
+ * @author spaxton
+ */
+public class ImportGraph {
+	private static ImportGraph instance;
+
+	private Map<IFile, List<IFile>> fileToResourceFilesMap = new HashMap<IFile, List<IFile>>();
+	private Map<IFile, List<IFile>> fileToTransitiveResourceFilesMap = new HashMap<IFile, List<IFile>>();
+
+	private ImportGraph() {
+		ModelManager.getManager().addFileChangeListener(new IFileChangeListener() {
+			@Override
+			public void filesChanged(List<IFile> changedFiles, List<IFile> addedFiles, List<IFile> removedFiles) {
+				ImportGraph.this.filesChanged(changedFiles, addedFiles, removedFiles);
+			}
+		});
+	}
+
+	public static synchronized ImportGraph getGraph() {
+		if (instance == null) {
+			instance = new ImportGraph();
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the resource files directly imported by the given file, in
+	 * import order. Imports that don't resolve to a workspace file are
+	 * omitted.
+	 */
+	public synchronized List<IFile> getResourceFiles(IFile file) {
+		List<IFile> resourceFiles = fileToResourceFilesMap.get(file);
+		if (resourceFiles == null) {
+			resourceFiles = Collections.unmodifiableList(resolveResourceFiles(file, ModelManager.getManager()
+					.getSummary(file).getResourceFilePaths()));
+			fileToResourceFilesMap.put(file, resourceFiles);
+		}
+		return resourceFiles;
+	}
+
+	/**
+	 * Returns every resource file reachable through the given file's imports,
+	 * in depth-first import order and excluding the file itself.
+	 */
+	public synchronized List<IFile> getTransitiveResourceFiles(IFile file) {
+		List<IFile> transitiveResourceFiles = fileToTransitiveResourceFilesMap.get(file);
+		if (transitiveResourceFiles == null) {
+			Set<IFile> visitedFiles = new LinkedHashSet<IFile>();
+			visitedFiles.add(file);
+			for (IFile resourceFile : getResourceFiles(file)) {
+				collectResourceFiles(resourceFile, visitedFiles);
+			}
+			visitedFiles.remove(file);
+			transitiveResourceFiles = Collections.unmodifiableList(new ArrayList<IFile>(visitedFiles));
+			fileToTransitiveResourceFilesMap.put(file, transitiveResourceFiles);
+		}
+		return transitiveResourceFiles;
+	}
+
+	/**
+	 * Returns every resource file reachable from the given resource import
+	 * paths, which are resolved relative to the given file. This serves files
+	 * whose imports are still being edited, so the file's own imports on disk
+	 * aren't consulted.
+	 *
+	 * @return a new list of files in depth-first import order, excluding the
+	 *         given file
+	 */
+	public synchronized List<IFile> getTransitiveResourceFiles(IFile file, List<String> resourceFilePaths) {
+		Set<IFile> files = new LinkedHashSet<IFile>();
+		files.add(file);
+		for (IFile resourceFile : resolveResourceFiles(file, resourceFilePaths)) {
+			// anything already reached was reached along with everything it
+			// imports
+			if (files.add(resourceFile)) {
+				files.addAll(getTransitiveResourceFiles(resourceFile));
+			}
+		}
+		files.remove(file);
+		return new ArrayList<IFile>(files);
+	}
+
+	/**
+	 * Drops the cached imports of the given file and every cached closure that
+	 * includes it.
+	 */
+	public synchronized void invalidate(IFile file) {
+		fileToResourceFilesMap.remove(file);
+		for (Iterator<Map.Entry<IFile, List<IFile>>> iter = fileToTransitiveResourceFilesMap.entrySet().iterator(); iter
+				.hasNext();) {
+			Map.Entry<IFile, List<IFile>> entry = iter.next();
+			if (entry.getKey().equals(file) || entry.getValue().contains(file)) {
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * Updates the graph for a batch of file changes, and discards the
+	 * dependent properties of every model whose imports reach a changed or
+	 * removed file.
+	 */
+	void filesChanged(List<IFile> changedFiles, List<IFile> addedFiles, List<IFile> removedFiles) {
+		Set<IFile> dependentFiles = new HashSet<IFile>();
+		synchronized (this) {
+			// the importers have to be found before the graph forgets them
+			Map<IFile, List<IFile>> fileToImportingFilesMap = getImportingFilesMap();
+			for (List<IFile> files : Arrays.asList(changedFiles, removedFiles)) {
+				for (IFile file : files) {
+					collectImportingFiles(file, fileToImportingFilesMap, dependentFiles);
+				}
+			}
+			if (addedFiles.isEmpty() && removedFiles.isEmpty()) {
+				for (IFile file : changedFiles) {
+					invalidate(file);
+				}
+			} else {
+				clear();
+			}
+		}
+
+		ModelManager manager = ModelManager.getManager();
+		if (!addedFiles.isEmpty()) {
+			// a new file may satisfy an import that didn't resolve before
+			manager.discardAllDependentProperties();
+		} else {
+			for (IFile file : dependentFiles) {
+				manager.discardDependentProperties(file);
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		fileToResourceFilesMap.clear();
+		fileToTransitiveResourceFilesMap.clear();
+	}
+
+	private Map<IFile, List<IFile>> getImportingFilesMap() {
+		Map<IFile, List<IFile>> fileToImportingFilesMap = new HashMap<IFile, List<IFile>>();
+		for (Map.Entry<IFile, List<IFile>> entry : fileToResourceFilesMap.entrySet()) {
+			for (IFile resourceFile : entry.getValue()) {
+				List<IFile> importingFiles = fileToImportingFilesMap.get(resourceFile);
+				if (importingFiles == null) {
+					importingFiles = new ArrayList<IFile>();
+					fileToImportingFilesMap.put(resourceFile, importingFiles);
+				}
+				importingFiles.add(entry.getKey());
+			}
+		}
+		return fileToImportingFilesMap;
+	}
+
+	private void collectImportingFiles(IFile file, Map<IFile, List<IFile>> fileToImportingFilesMap,
+			Set<IFile> visitedFiles) {
+		if (visitedFiles.add(file) && fileToImportingFilesMap.containsKey(file)) {
+			for (IFile importingFile : fileToImportingFilesMap.get(file)) {
+				collectImportingFiles(importingFile, fileToImportingFilesMap, visitedFiles);
+			}
+		}
+	}
+
+	private void collectResourceFiles(IFile file, Set<IFile> visitedFiles) {
+		if (visitedFiles.add(file)) {
+			for (IFile resourceFile : getResourceFiles(file)) {
+				collectResourceFiles(resourceFile, visitedFiles);
+			}
+		}
+	}
+
+	private List<IFile> resolveResourceFiles(IFile file, List<String> resourceFilePaths) {
+		List<IFile> resourceFiles = new ArrayList<IFile>();
+		for (String resourceFilePath : resourceFilePaths) {
+			IResource resource = PathUtil.getResourceForPath(file, resourceFilePath);
+			if (resource instanceof IFile && !resourceFiles.contains(resource)) {
+				resourceFiles.add((IFile) resource);
+			}
+		}
+		return resourceFiles;
+	}
+
+}
@@ -1,7 +1,5 @@
 package com.millennialmedia.pyro.ui.hyperlink;
 
-import java.util.Map;
-
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.hyperlink.IHyperlink;
@@ -10,12 +8,13 @@ import com.millennialmedia.pyro.model.Line;
 import com.millennialmedia.pyro.model.Step;
 import com.millennialmedia.pyro.model.StepSegment;
 import com.millennialmedia.pyro.model.StepSegment.SegmentType;
-import com.millennialmedia.pyro.model.util.ModelUtil;
+import com.millennialmedia.pyro.model.util.KeywordMatcher;
 import com.millennialmedia.pyro.model.TableItemDefinition;
 
 /**
  * Base class for hyperlink detection specifically for Robot keywords.
- * Subclasses must implement {@link #detectHyperlinks} and {@link #createLink}
+ * Subclasses must either implement {@link #detectHyperlinks}, or provide
+ * {@link #getTargetKeywordMatcher} and {@link #createLink}.
  * 
  * @author spaxton
  */
@@ -57,10 +56,7 @@ public abstract class AbstractKeywordDefinitionHyperlinkDetector extends Abstrac
 		int linkOffset = region.getOffset();
 
 		// advance to the line containing the possible link
-		Line line = getEditor().getModel().getFirstLine();
-		while (line.getLineOffset() + line.getLineLength() < linkOffset) {
-			line = line.getNextLine();
-		}
+		Line line = getEditor().getModel().getLineIndex().getFirstLineEndingAfter(linkOffset - 1);
 
 		// now walk through each step in the line to see if a keyword is the
 		// link origin
@@ -93,28 +89,16 @@ public abstract class AbstractKeywordDefinitionHyperlinkDetector extends Abstrac
 
 		if (keywordCallContext != null) {
 			// get the candidate keywords that could be the target of this call
-			Map<String, KeywordDefinitionContext> targetKeywordsMap = getTargetKeywords();
-
-			// get the keyword call strings that need to be checked (handles BDD
-			// prefixing)
-			Map<String, Integer> candidateCallStrings = ModelUtil.getCandidateKeywordStrings(keywordCallContext
-					.getKeywordName());
-
-			for (String keyword : targetKeywordsMap.keySet()) {
-				// for keyword definitions that embed variables, replace the
-				// variables with a generic regex to match against
-				String targetKeywordName = ModelUtil.normalizeKeywordName(keyword, isUserKeywordDetector());
-
-				// check each candidate string for a matching keyword definition
-				for (Map.Entry<String, Integer> candidate : candidateCallStrings.entrySet()) {
-					// normalize the check to lower case because keywords are
-					// case-insensitive
-					if (ModelUtil.normalizeKeywordName(candidate.getKey(), false).matches(targetKeywordName)) {
-						return new IHyperlink[] { createLink(
-								keywordCallContext.getKeywordStartOffset() + candidate.getValue(), candidate.getKey()
-										.length(), targetKeywordsMap.get(keyword)) };
-					}
-				}
+			KeywordMatcher<?> targetKeywordMatcher = getTargetKeywordMatcher();
+			if (targetKeywordMatcher == null) {
+				return null;
+			}
+
+			// resolve the call (handles BDD prefixing and embedded arguments)
+			KeywordMatcher.Match<?> match = targetKeywordMatcher.match(keywordCallContext.getKeywordName());
+			if (match != null) {
+				return new IHyperlink[] { createLink(keywordCallContext.getKeywordStartOffset() + match.getOffset(), match
+						.getKeywordName().length(), getDefinitionContext(match.getDefinition())) };
 			}
 		}
 		return null;
@@ -122,9 +106,23 @@ public abstract class AbstractKeywordDefinitionHyperlinkDetector extends Abstrac
 
 	protected abstract boolean isUserKeywordDetector();
 
-	protected Map<String, KeywordDefinitionContext> getTargetKeywords() {
+	/**
+	 * Returns the matcher for the keywords that calls may link to. Hyperlinks
+	 * are detected on every mouse move over the editor, so this should be
+	 * cached with the model rather than built for each call.
+	 */
+	protected KeywordMatcher<?> getTargetKeywordMatcher() {
 		return null;
-	};
+	}
+
+	/**
+	 * Wraps a definition from the target keyword matcher for
+	 * {@link #createLink}. Matchers that already hold contexts need no
+	 * wrapping.
+	 */
+	protected KeywordDefinitionContext getDefinitionContext(Object definition) {
+		return (KeywordDefinitionContext) definition;
+	}
 
 	protected IHyperlink createLink(final int offset, final int length,
 			final KeywordDefinitionContext keywordDefinitionContext) {
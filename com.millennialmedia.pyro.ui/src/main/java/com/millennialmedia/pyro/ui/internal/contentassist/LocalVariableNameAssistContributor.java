@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -23,6 +22,7 @@ import com.millennialmedia.pyro.model.Table.TableType;
 import com.millennialmedia.pyro.model.TableItemDefinition;
 import com.millennialmedia.pyro.model.TableItemDefinition.TableItemType;
 import com.millennialmedia.pyro.model.util.IModelConstants;
+import com.millennialmedia.pyro.model.util.KeywordMatcher;
 import com.millennialmedia.pyro.model.util.ModelUtil;
 import com.millennialmedia.pyro.ui.PyroUIPlugin;
 import com.millennialmedia.pyro.ui.contentassist.RobotCompletionProposal;
@@ -172,20 +172,10 @@ public class LocalVariableNameAssistContributor extends VariableNameAssistContri
 						boolean foundSetupSetting = false;
 						for (StepSegment seg : step.getSegments()) {
 							if (foundSetupSetting) {
-								Set<String> possibleKeywordNames = ModelUtil.getCandidateKeywordStrings(seg.getValue())
-										.keySet();
-								for (String possibleKeywordName : possibleKeywordNames) {
-									String normalizedKeyword = ModelUtil.normalizeKeywordName(possibleKeywordName,
-											false);
-									Map<String, TableItemDefinition> keywordMap = ModelUtil.getKeywords(getEditor()
-											.getModel());
-									for (Map.Entry<String, TableItemDefinition> entry : keywordMap.entrySet()) {
-										String targetKeyword = ModelUtil.normalizeKeywordName(entry.getKey(), true);
-										if (normalizedKeyword.matches(targetKeyword)) {
-											collectTestVariables(getEditor().getModel(), entry.getValue(), null,
-													varNames);
-										}
-									}
+								KeywordMatcher.Match<TableItemDefinition> match = ModelUtil.getKeywordMatcher(
+										getEditor().getModel()).match(seg.getValue());
+								if (match != null) {
+									collectTestVariables(getEditor().getModel(), match.getDefinition(), null, varNames);
 								}
 							} else if (seg.getSegmentType() == SegmentType.SETTING_NAME
 									&& ("Test Setup".equals(seg.getValue()) || "Suite Setup".equals(seg.getValue()))) {
@@ -227,22 +217,16 @@ public class LocalVariableNameAssistContributor extends VariableNameAssistContri
 					addVariableIfFound(segment.getValue(), variableNames);
 					captureVariableName = false;
 				} else if (segment.getSegmentType() == SegmentType.KEYWORD_CALL) {
-					Set<String> possibleKeywordNames = ModelUtil.getCandidateKeywordStrings(segment.getValue())
-							.keySet();
-					for (String possibleKeywordName : possibleKeywordNames) {
-						String normalizedKeyword = ModelUtil.normalizeKeywordName(possibleKeywordName, false);
-						if (normalizedKeyword.contains("settestvariable")
-								|| normalizedKeyword.contains("setsuitevariable")
-								|| normalizedKeyword.contains("setglobalvariable")) {
-							captureVariableName = true;
-						} else {
-							Map<String, TableItemDefinition> keywordMap = ModelUtil.getKeywords(model);
-							for (Map.Entry<String, TableItemDefinition> entry : keywordMap.entrySet()) {
-								String targetKeyword = ModelUtil.normalizeKeywordName(entry.getKey(), true);
-								if (normalizedKeyword.matches(targetKeyword)) {
-									collectTestVariables(model, entry.getValue(), null, variableNames);
-								}
-							}
+					String normalizedKeyword = ModelUtil.normalizeKeywordName(segment.getValue(), false);
+					if (normalizedKeyword.contains("settestvariable")
+							|| normalizedKeyword.contains("setsuitevariable")
+							|| normalizedKeyword.contains("setglobalvariable")) {
+						captureVariableName = true;
+					} else {
+						KeywordMatcher.Match<TableItemDefinition> match = ModelUtil.getKeywordMatcher(model).match(
+								segment.getValue());
+						if (match != null) {
+							collectTestVariables(model, match.getDefinition(), null, variableNames);
 						}
 					}
 				}
@@ -261,12 +245,12 @@ public class LocalVariableNameAssistContributor extends VariableNameAssistContri
 		List<IFile> resourceFiles = PathUtil.collectReferencedResourceFiles(getEditor());
 		
 		for (IFile file : resourceFiles) {
-			RobotModel model = ModelManager.getManager().getModel(file);
-			if (model != null) {
-				List<String> varNames = collectVarsFromVariableTables(model);
-				Collections.sort(varNames);
-				createProposals(varNames, offset, variableBeginning, proposals);
+			List<String> varNames = new ArrayList<String>();
+			for (String variableName : ModelManager.getManager().getSummary(file).getVariableNames()) {
+				addVariableIfFound(variableName, varNames);
 			}
+			Collections.sort(varNames);
+			createProposals(varNames, offset, variableBeginning, proposals);
 		}
 	}
 
@@ -10,7 +10,6 @@ import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.viewers.StyledString;
 
 import com.millennialmedia.pyro.model.ModelManager;
-import com.millennialmedia.pyro.model.RobotModel;
 import com.millennialmedia.pyro.model.TableItemDefinition;
 import com.millennialmedia.pyro.model.util.ModelUtil;
 import com.millennialmedia.pyro.ui.PyroUIPlugin;
@@ -74,9 +73,8 @@ public class ResourceFileKeywordAssistContributor extends KeywordAssistContribut
 		// get any files referenced by a Resource setting
 		List<IFile> files = PathUtil.collectReferencedResourceFiles(getEditor());
 		for (IFile file : files) {
-			RobotModel targetModel = ModelManager.getManager().getModel(file);
 			// find any keyword definitions in this external file
-			Map<String, TableItemDefinition> keywordsMap = ModelUtil.getKeywords(targetModel);
+			Map<String, TableItemDefinition> keywordsMap = ModelManager.getManager().getSummary(file).getKeywords();
 
 			List<KeywordFilePair> newKeywords = new ArrayList<KeywordFilePair>();
 			
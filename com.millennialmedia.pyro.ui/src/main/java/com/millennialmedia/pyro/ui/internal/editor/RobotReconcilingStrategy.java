@@ -0,0 +1,60 @@
+package com.millennialmedia.pyro.ui.internal.editor;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.reconciler.DirtyRegion;
+import org.eclipse.jface.text.reconciler.IReconcilingStrategy;
+import org.eclipse.jface.text.reconciler.IReconcilingStrategyExtension;
+
+import com.millennialmedia.pyro.ui.editor.RobotFrameworkEditor;
+
+/**
+ * Keeps the editor's model in sync with its document. The reconciler calls
+ * this on its background thread once typing pauses, so a burst of edits
+ * results in a single parse. The reconciler cancels the monitor whenever a
+ * newer edit arrives, which abandons a parse that's still in flight.
+ *
+ * @author spaxton
+ */
+public class RobotReconcilingStrategy implements IReconcilingStrategy, IReconcilingStrategyExtension {
+	private RobotFrameworkEditor editor;
+	private IDocument document;
+	private IProgressMonitor monitor;
+
+	public RobotReconcilingStrategy(RobotFrameworkEditor editor) {
+		this.editor = editor;
+	}
+
+	@Override
+	public void setDocument(IDocument document) {
+		this.document = document;
+	}
+
+	@Override
+	public void setProgressMonitor(IProgressMonitor monitor) {
+		this.monitor = monitor;
+	}
+
+	@Override
+	public void initialReconcile() {
+		reconcile();
+	}
+
+	@Override
+	public void reconcile(DirtyRegion dirtyRegion, IRegion subRegion) {
+		reconcile();
+	}
+
+	@Override
+	public void reconcile(IRegion partition) {
+		reconcile();
+	}
+
+	private void reconcile() {
+		if (document != null) {
+			editor.reconcileModel(document, monitor);
+		}
+	}
+
+}
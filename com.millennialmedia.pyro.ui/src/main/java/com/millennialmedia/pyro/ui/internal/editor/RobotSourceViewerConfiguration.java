@@ -5,11 +5,15 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.TextPresentation;
 import org.eclipse.jface.text.contentassist.ContentAssistant;
 import org.eclipse.jface.text.contentassist.IContentAssistant;
 import org.eclipse.jface.text.hyperlink.IHyperlinkDetector;
 import org.eclipse.jface.text.presentation.IPresentationReconciler;
 import org.eclipse.jface.text.presentation.PresentationReconciler;
+import org.eclipse.jface.text.reconciler.IReconciler;
+import org.eclipse.jface.text.reconciler.MonoReconciler;
 import org.eclipse.jface.text.rules.DefaultDamagerRepairer;
 import org.eclipse.jface.text.source.ISourceViewer;
 import org.eclipse.jface.text.source.SourceViewerConfiguration;
@@ -20,6 +24,7 @@ import com.millennialmedia.pyro.ui.hyperlink.AbstractRobotHyperlinkDetector;
 import com.millennialmedia.pyro.ui.internal.contentassist.ContentAssistProcessor;
 import com.millennialmedia.pyro.ui.internal.registry.HyperlinkDetectorRegistryReader;
 import com.millennialmedia.pyro.ui.internal.syntaxcoloring.ColorManager;
+import com.millennialmedia.pyro.ui.internal.syntaxcoloring.RobotPresentationDamager;
 import com.millennialmedia.pyro.ui.internal.syntaxcoloring.Scanner;
 
 /**
@@ -29,10 +34,13 @@ import com.millennialmedia.pyro.ui.internal.syntaxcoloring.Scanner;
  * @author spaxton
  */
 public class RobotSourceViewerConfiguration extends SourceViewerConfiguration {
+	// how long typing has to pause before the document is reparsed
+	private static final int RECONCILE_DELAY_MILLIS = 300;
 
 	private ColorManager colorManager;
 	private RobotFrameworkEditor editor;
 	private IContentAssistant contentAssistant;
+	private RobotPresentationDamager presentationDamager;
 
 	public RobotSourceViewerConfiguration(RobotFrameworkEditor editor, ColorManager colorManager) {
 		this.editor = editor;
@@ -42,12 +50,40 @@ public class RobotSourceViewerConfiguration extends SourceViewerConfiguration {
 
 	@Override
 	public IPresentationReconciler getPresentationReconciler(ISourceViewer sourceViewer) {
-		PresentationReconciler reconciler = new PresentationReconciler();
+		PresentationReconciler reconciler = new PresentationReconciler() {
+			@Override
+			protected TextPresentation createPresentation(IRegion damage, IDocument document) {
+				if (editor.isModelStale()) {
+					// the model's offsets don't match the document until the
+					// next reconcile. leave the existing colors, which shift
+					// along with the edited text, and let the reconcile
+					// recolor whatever the new model changed
+					return null;
+				}
+				return super.createPresentation(damage, document);
+			}
+		};
+
+		presentationDamager = new RobotPresentationDamager();
+		reconciler.setDamager(presentationDamager, IDocument.DEFAULT_CONTENT_TYPE);
+		reconciler.setRepairer(new DefaultDamagerRepairer(new Scanner(editor, colorManager)),
+				IDocument.DEFAULT_CONTENT_TYPE);
 
-		DefaultDamagerRepairer dr = new DefaultDamagerRepairer(new Scanner(editor, colorManager));
-		reconciler.setDamager(dr, IDocument.DEFAULT_CONTENT_TYPE);
-		reconciler.setRepairer(dr, IDocument.DEFAULT_CONTENT_TYPE);
+		return reconciler;
+	}
 
+	/**
+	 * Returns the damager that computes what to recolor when the editor's
+	 * model is replaced, or null before the viewer has been configured.
+	 */
+	public RobotPresentationDamager getPresentationDamager() {
+		return presentationDamager;
+	}
+
+	@Override
+	public IReconciler getReconciler(ISourceViewer sourceViewer) {
+		MonoReconciler reconciler = new MonoReconciler(new RobotReconcilingStrategy(editor), false);
+		reconciler.setDelay(RECONCILE_DELAY_MILLIS);
 		return reconciler;
 	}
 
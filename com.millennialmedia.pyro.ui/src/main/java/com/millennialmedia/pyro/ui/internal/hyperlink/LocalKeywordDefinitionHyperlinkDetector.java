@@ -1,12 +1,10 @@
 package com.millennialmedia.pyro.ui.internal.hyperlink;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.hyperlink.IHyperlink;
 
 import com.millennialmedia.pyro.model.TableItemDefinition;
+import com.millennialmedia.pyro.model.util.KeywordMatcher;
 import com.millennialmedia.pyro.model.util.ModelUtil;
 import com.millennialmedia.pyro.ui.hyperlink.AbstractKeywordDefinitionHyperlinkDetector;
 
@@ -23,20 +21,17 @@ public class LocalKeywordDefinitionHyperlinkDetector extends AbstractKeywordDefi
 	}
 
 	@Override
-	protected Map<String, KeywordDefinitionContext> getTargetKeywords() {
-		Map<String, KeywordDefinitionContext> returnMap = new HashMap<String, KeywordDefinitionContext>();
-
-		// get all the keywords defined in the local file
-		Map<String, TableItemDefinition> keywordsMap = ModelUtil.getKeywords(getEditor().getModel());
+	protected KeywordMatcher<?> getTargetKeywordMatcher() {
+		// all the keywords defined in the local file, cached with the model
+		return ModelUtil.getKeywordMatcher(getEditor().getModel());
+	}
 
-		// copy them into the more generic context wrapper
-		for (String keywordName : keywordsMap.keySet()) {
-			TableItemDefinition definition = keywordsMap.get(keywordName);
-			KeywordDefinitionContext context = new KeywordDefinitionContext();
-			context.setKeywordDefinition(definition);
-			returnMap.put(keywordName, context);
-		}
-		return returnMap;
+	@Override
+	protected KeywordDefinitionContext getDefinitionContext(Object definition) {
+		// wrap the matched definition in the more generic context
+		KeywordDefinitionContext context = new KeywordDefinitionContext();
+		context.setKeywordDefinition((TableItemDefinition) definition);
+		return context;
 	}
 
 	@Override
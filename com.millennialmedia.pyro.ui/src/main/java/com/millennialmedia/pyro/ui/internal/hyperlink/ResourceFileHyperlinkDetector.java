@@ -63,10 +63,7 @@ public class ResourceFileHyperlinkDetector extends AbstractRobotHyperlinkDetecto
 		int linkOffset = region.getOffset();
 
 		// advance to the line containing the possible link
-		Line line = getEditor().getModel().getFirstLine();
-		while (line.getLineOffset() + line.getLineLength() < linkOffset) {
-			line = line.getNextLine();
-		}
+		Line line = getEditor().getModel().getLineIndex().getFirstLineEndingAfter(linkOffset - 1);
 
 		// now walk through each step in the line to see if a keyword is the
 		// link origin
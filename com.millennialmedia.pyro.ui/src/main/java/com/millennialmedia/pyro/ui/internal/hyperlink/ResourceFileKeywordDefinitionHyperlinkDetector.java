@@ -1,12 +1,9 @@
 package com.millennialmedia.pyro.ui.internal.hyperlink;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.IResource;
-import org.eclipse.core.runtime.IPath;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.hyperlink.IHyperlink;
 import org.eclipse.ui.IEditorPart;
@@ -16,7 +13,7 @@ import org.eclipse.ui.ide.IDE;
 import com.millennialmedia.pyro.model.ModelManager;
 import com.millennialmedia.pyro.model.RobotModel;
 import com.millennialmedia.pyro.model.TableItemDefinition;
-import com.millennialmedia.pyro.model.util.ModelUtil;
+import com.millennialmedia.pyro.model.util.KeywordMatcher;
 import com.millennialmedia.pyro.ui.editor.RobotFrameworkEditor;
 import com.millennialmedia.pyro.ui.editor.util.PathUtil;
 import com.millennialmedia.pyro.ui.hyperlink.AbstractKeywordDefinitionHyperlinkDetector;
@@ -28,6 +25,17 @@ import com.millennialmedia.pyro.ui.hyperlink.AbstractKeywordDefinitionHyperlinkD
  * @author spaxton
  */
 public class ResourceFileKeywordDefinitionHyperlinkDetector extends AbstractKeywordDefinitionHyperlinkDetector {
+	private static final String PROPSKEY_RESOURCE_KEYWORD_MATCHER = "RESOURCE_KEYWORD_MATCHER";
+
+	/**
+	 * The matcher over the keywords of a set of resource files, recording the
+	 * files it was built from.
+	 */
+	private static class ResourceKeywordMatcher {
+		private List<IFile> resourceFiles;
+		private KeywordMatcher<KeywordDefinitionContext> matcher;
+	}
+
 	public class ResourceFileKeywordDefinitionContext extends KeywordDefinitionContext {
 		private IFile file;
 
@@ -46,61 +54,42 @@ public class ResourceFileKeywordDefinitionHyperlinkDetector extends AbstractKeyw
 	}
 
 	@Override
-	protected Map<String, KeywordDefinitionContext> getTargetKeywords() {
-		Map<String, KeywordDefinitionContext> targetKeywords = new HashMap<String, KeywordDefinitionContext>();
-
-		// get any files referenced by a Resource setting
-		List<String> resourceFilePaths = ModelUtil.getResourceFilePaths(getEditor().getModel());
-
-		if (!resourceFilePaths.isEmpty()) {
-			IFile file = PathUtil.getEditorFile(getEditor());
-			if (file == null) {
-				return targetKeywords;
-			}
-
-			IPath rootPath = PathUtil.getRootPath(getEditor());
-
-			if (rootPath != null) {
-				// for each resource file in the Settings table(s)
-				for (String resourceFilePath : resourceFilePaths) {
-					addTargetAndTransitiveLinks(targetKeywords, file, resourceFilePath);
-				}
-			}
+	protected KeywordMatcher<?> getTargetKeywordMatcher() {
+		// get any files referenced by a Resource setting, directly or
+		// transitively
+		RobotModel model = getEditor().getModel();
+		List<IFile> resourceFiles = PathUtil.collectReferencedResourceFiles(getEditor());
+
+		// the matcher is carried over as the editor reparses, and reused while
+		// the same files are imported. changes to any of those files discard
+		// the model's dependent properties
+		ResourceKeywordMatcher cachedMatcher = (ResourceKeywordMatcher) model.getDependentProperties().get(
+				PROPSKEY_RESOURCE_KEYWORD_MATCHER);
+		if (cachedMatcher != null && cachedMatcher.resourceFiles.equals(resourceFiles)) {
+			return cachedMatcher.matcher;
 		}
 
-		return targetKeywords;
-	}
-	
-	private void addTargetAndTransitiveLinks(Map<String, KeywordDefinitionContext> targetKeywords, IFile localFile, String resourceFilePath) {
-		IResource resource = PathUtil.getResourceForPath(localFile, resourceFilePath);
-
-		if (resource != null && resource instanceof IFile) {
-			IFile targetFile = (IFile) resource;
-			RobotModel targetModel = ModelManager.getManager().getModel(targetFile);
+		KeywordMatcher<KeywordDefinitionContext> matcher = new KeywordMatcher<KeywordDefinitionContext>(true);
+		for (IFile targetFile : resourceFiles) {
 			// find any keyword definitions in this external file
-			Map<String, TableItemDefinition> keywordsMap = ModelUtil.getKeywords(targetModel);
-
-			// and copy them into our specific context subclass in
-			// order to remember the containing file
-			for (String keywordName : keywordsMap.keySet()) {
-				// check map first to short-circuit cycles of imports
-				if(!targetKeywords.containsKey(keywordName)) {
-					TableItemDefinition definition = keywordsMap.get(keywordName);
-					ResourceFileKeywordDefinitionContext context = new ResourceFileKeywordDefinitionContext();
-					context.setKeywordDefinition(definition);
-					context.setFile(targetFile);
-					targetKeywords.put(keywordName, context);
-				}
-			}
-
-			// repeat for any resource files contained within this model (transitive resource file imports)
-			List<String> resourceFilePaths = ModelUtil.getResourceFilePaths(targetModel);
-			if (!resourceFilePaths.isEmpty()) {
-				for (String transitiveResourceFilePath : resourceFilePaths) {
-					addTargetAndTransitiveLinks(targetKeywords, targetFile, transitiveResourceFilePath);
-				}
+			Map<String, TableItemDefinition> keywordsMap = ModelManager.getManager().getSummary(targetFile).getKeywords();
+
+			// and copy them into our specific context subclass in order to
+			// remember the containing file. the first file in import order
+			// wins
+			for (Map.Entry<String, TableItemDefinition> entry : keywordsMap.entrySet()) {
+				ResourceFileKeywordDefinitionContext context = new ResourceFileKeywordDefinitionContext();
+				context.setKeywordDefinition(entry.getValue());
+				context.setFile(targetFile);
+				matcher.addKeyword(entry.getKey(), context);
 			}
 		}
+
+		cachedMatcher = new ResourceKeywordMatcher();
+		cachedMatcher.resourceFiles = resourceFiles;
+		cachedMatcher.matcher = matcher;
+		model.getDependentProperties().put(PROPSKEY_RESOURCE_KEYWORD_MATCHER, cachedMatcher);
+		return matcher;
 	}
 
 	@Override
@@ -8,6 +8,8 @@ public class Messages extends NLS {
 	public static String CapitalizationPreferencePage_select_capitalization;
 	public static String CapitalizationPreferencePage_smart_caps;
 	public static String CapitalizationPreferencePage_uppercase;
+	public static String ModelCachePreferencePage_budget;
+	public static String ModelCachePreferencePage_statistics;
 	public static String RootPreferencePage_editor_version;
 	static {
 		// initialize resource bundle
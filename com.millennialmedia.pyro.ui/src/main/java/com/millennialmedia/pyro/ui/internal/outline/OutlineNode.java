@@ -0,0 +1,93 @@
+package com.millennialmedia.pyro.ui.internal.outline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.millennialmedia.pyro.model.Line;
+
+/**
+ * An element of the Outline view. Nodes keep their identity across reparses,
+ * with each reparse just pointing them at the newly-parsed line, so the tree
+ * viewer keeps its items and their expansion and selection state.
+ *
+ * @author spaxton
+ */
+public class OutlineNode {
+	private OutlineNode parent;
+	private String key;
+	private Line line;
+	private String label;
+	private String sortKey;
+	private List<OutlineNode> children = new ArrayList<OutlineNode>();
+
+	OutlineNode(OutlineNode parent, String key, Line line, String label) {
+		this.parent = parent;
+		this.key = key;
+		this.line = line;
+		setLabel(label);
+	}
+
+	public OutlineNode getParent() {
+		return parent;
+	}
+
+	/**
+	 * The key identifying this node among its siblings (ex. a testcase's name
+	 * along with how many earlier siblings share that name).
+	 */
+	String getKey() {
+		return key;
+	}
+
+	void setKey(String key) {
+		this.key = key;
+	}
+
+	/**
+	 * The line from the latest parse that this node represents.
+	 */
+	public Line getLine() {
+		return line;
+	}
+
+	void setLine(Line line) {
+		this.line = line;
+	}
+
+	String getLabel() {
+		return label;
+	}
+
+	void setLabel(String label) {
+		this.label = label;
+		sortKey = toSortKey(label);
+	}
+
+	/**
+	 * The label folded so that plain comparisons of sort keys order nodes the
+	 * same way String.CASE_INSENSITIVE_ORDER orders their labels.
+	 */
+	String getSortKey() {
+		return sortKey;
+	}
+
+	List<OutlineNode> getChildren() {
+		return children;
+	}
+
+	void setChildren(List<OutlineNode> children) {
+		this.children = children;
+	}
+
+	private static String toSortKey(String label) {
+		if (label == null) {
+			return "";
+		}
+		char[] chars = label.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
+	}
+
+}
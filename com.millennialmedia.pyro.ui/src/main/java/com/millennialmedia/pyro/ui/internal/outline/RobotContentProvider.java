@@ -1,47 +1,151 @@
 package com.millennialmedia.pyro.ui.internal.outline;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import org.eclipse.jface.viewers.ITreeContentProvider;
+import org.eclipse.jface.viewers.ILabelProvider;
+import org.eclipse.jface.viewers.ILazyTreeContentProvider;
+import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
 
 import com.millennialmedia.pyro.model.Line;
 import com.millennialmedia.pyro.model.RobotModel;
 import com.millennialmedia.pyro.model.Step;
 import com.millennialmedia.pyro.model.StepSegment;
-import com.millennialmedia.pyro.model.Step.StepType;
 import com.millennialmedia.pyro.model.StepSegment.SegmentType;
 import com.millennialmedia.pyro.model.Table;
 import com.millennialmedia.pyro.model.Table.TableType;
 import com.millennialmedia.pyro.model.TableItemDefinition;
-import com.millennialmedia.pyro.model.TableItemDefinition.TableItemType;
-import com.millennialmedia.pyro.model.util.ModelUtil;
 
 /**
  * Content provider for Pyro's Outline view.
- * 
+ *
+ * The outline's elements are {@link OutlineNode}s that survive reparses. After
+ * a reparse, update() matches the new lines against the existing nodes and
+ * reports only the parents whose children changed, so the outline page can
+ * refresh just those parts of the tree.
+ *
+ * The provider is lazy, so the virtual tree asks only for the rows it shows
+ * rather than materializing an item for every testcase and keyword. Sorting
+ * is done here as well, since virtual trees don't support viewer comparators.
+ * Each node's sort key is computed once per reparse and each parent's sorted
+ * children are kept until they change.
+ *
  * @author spaxton
  */
-public class RobotContentProvider implements ITreeContentProvider {
+public class RobotContentProvider implements ILazyTreeContentProvider {
+	private static final Comparator<OutlineNode> SORT_KEY_COMPARATOR = new Comparator<OutlineNode>() {
+		@Override
+		public int compare(OutlineNode node1, OutlineNode node2) {
+			return node1.getSortKey().compareTo(node2.getSortKey());
+		}
+	};
+
+	/**
+	 * The changes made to the outline's nodes by a call to update().
+	 */
+	static class Delta {
+		// parents whose children were added, removed or reordered, null
+		// standing for the root
+		private Set<OutlineNode> changedParents = new LinkedHashSet<OutlineNode>();
+		private List<OutlineNode> relabeledNodes = new ArrayList<OutlineNode>();
+
+		Set<OutlineNode> getChangedParents() {
+			return changedParents;
+		}
+
+		/**
+		 * Nodes whose label changed without their parent's children changing
+		 * order.
+		 */
+		List<OutlineNode> getRelabeledNodes() {
+			return relabeledNodes;
+		}
+
+		boolean isEmpty() {
+			return changedParents.isEmpty() && relabeledNodes.isEmpty();
+		}
+	}
+
+	/**
+	 * A line that the outline should show, as collected from the model.
+	 */
+	private static class Entry {
+		private String key;
+		private Line line;
+		private List<Entry> children;
+
+		Entry(String key, Line line, List<Entry> children) {
+			this.key = key;
+			this.line = line;
+			this.children = children;
+		}
+	}
+
 	private RobotModel model;
+	private ILabelProvider labelProvider;
+	private TreeViewer viewer;
 	private boolean useFlattenedTreeMode = false;
 	private boolean useCombinedRootTables = false;
+	private boolean useSortedOrder = false;
 	private Table internalTestcaseTable;
 	private Table internalKeywordTable;
 	private Table internalSettingTable;
 	private Table internalVariableTable;
 
-	public RobotContentProvider(RobotModel model) {
+	// null until the viewer first asks for the outline's contents
+	private List<OutlineNode> rootNodes;
+	private Map<Line, OutlineNode> lineToNodeMap = new IdentityHashMap<Line, OutlineNode>();
+	// each parent's children in sorted order, null standing for the root
+	private Map<OutlineNode, List<OutlineNode>> sortedChildrenMap = new IdentityHashMap<OutlineNode, List<OutlineNode>>();
+
+	public RobotContentProvider(RobotModel model, ILabelProvider labelProvider) {
 		this.model = model;
+		this.labelProvider = labelProvider;
+
+		internalTestcaseTable = new Table();
+		internalTestcaseTable.setTableType(TableType.TESTCASE);
+		internalKeywordTable = new Table();
+		internalKeywordTable.setTableType(TableType.KEYWORD);
+		internalSettingTable = new Table();
+		internalSettingTable.setTableType(TableType.SETTING);
+		internalVariableTable = new Table();
+		internalVariableTable.setTableType(TableType.VARIABLE);
 	}
 
 	public void setFlattenedTreeMode(boolean flattened) {
 		useFlattenedTreeMode = flattened;
+		// the tree is rebuilt on the next refresh
+		rootNodes = null;
 	}
 
 	public void setCombinedRootTables(boolean combined) {
 		useCombinedRootTables = combined;
+		rootNodes = null;
+	}
+
+	/**
+	 * Sets the model to show. The nodes are brought up to date with it on the
+	 * next update().
+	 */
+	void setModel(RobotModel model) {
+		this.model = model;
+	}
+
+	/**
+	 * Sets whether siblings are shown sorted by label rather than in document
+	 * order.
+	 */
+	public void setSortedOrder(boolean sorted) {
+		useSortedOrder = sorted;
+		sortedChildrenMap.clear();
 	}
 
 	@Override
@@ -50,131 +154,261 @@ public class RobotContentProvider implements ITreeContentProvider {
 
 	@Override
 	public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+		this.viewer = (TreeViewer) viewer;
 	}
 
 	@Override
-	public Object[] getElements(Object inputElement) {
-		return getChildren(inputElement);
+	public void updateElement(Object parent, int index) {
+		List<OutlineNode> children = getShownChildren(parent);
+		if (index < children.size()) {
+			OutlineNode node = children.get(index);
+			viewer.replace(parent, index, node);
+			viewer.setChildCount(node, node.getChildren().size());
+		}
 	}
 
 	@Override
-	public Object[] getChildren(Object parentElement) {
-		List<Object> elements = new ArrayList<Object>();
-		if (parentElement instanceof RobotModel) {
-			internalTestcaseTable = new Table();
-			internalTestcaseTable.setTableType(TableType.TESTCASE);
-			internalKeywordTable = new Table();
-			internalKeywordTable.setTableType(TableType.KEYWORD);
-			internalSettingTable = new Table();
-			internalSettingTable.setTableType(TableType.SETTING);
-			internalVariableTable = new Table();
-			internalVariableTable.setTableType(TableType.VARIABLE);
-
-			for (Table table : ((RobotModel) parentElement).getTables()) {
-				if (useFlattenedTreeMode) {
-					elements.addAll(getChildrenFromTable(table));
-				} else {
-					if (!useCombinedRootTables) {
-						elements.add(table);
-					} else {
-						switch (table.getTableType()) {
-						case TESTCASE:
-							internalTestcaseTable.getTableLines().addAll(table.getTableLines());
-							break;
-						case KEYWORD:
-							internalKeywordTable.getTableLines().addAll(table.getTableLines());
-							break;
-						case SETTING:
-							internalSettingTable.getTableLines().addAll(table.getTableLines());
-							break;
-						case VARIABLE:
-							internalVariableTable.getTableLines().addAll(table.getTableLines());
-							break;
+	public void updateChildCount(Object element, int currentChildCount) {
+		int childCount = getShownChildren(element).size();
+		if (childCount != currentChildCount) {
+			viewer.setChildCount(element, childCount);
+		}
+	}
+
+	@Override
+	public Object getParent(Object element) {
+		if (element instanceof OutlineNode) {
+			return ((OutlineNode) element).getParent();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the children of the given node, or the root nodes for the model,
+	 * in the order they're shown.
+	 */
+	List<OutlineNode> getShownChildren(Object element) {
+		if (rootNodes == null) {
+			rootNodes = new ArrayList<OutlineNode>();
+			sortedChildrenMap.clear();
+			update();
+		}
+
+		OutlineNode parent = element instanceof OutlineNode ? (OutlineNode) element : null;
+		List<OutlineNode> children = parent != null ? parent.getChildren() : rootNodes;
+		if (!useSortedOrder) {
+			return children;
+		}
+
+		List<OutlineNode> sortedChildren = sortedChildrenMap.get(parent);
+		if (sortedChildren == null) {
+			sortedChildren = new ArrayList<OutlineNode>(children);
+			Collections.sort(sortedChildren, SORT_KEY_COMPARATOR);
+			sortedChildrenMap.put(parent, sortedChildren);
+		}
+		return sortedChildren;
+	}
+
+	/**
+	 * Returns the node showing the given line of the current model, or null if
+	 * the line isn't shown.
+	 */
+	OutlineNode getNode(Line line) {
+		return lineToNodeMap.get(line);
+	}
+
+	/**
+	 * Brings the nodes up to date with the model after a reparse. Each line
+	 * still shown keeps its existing node.
+	 */
+	Delta update() {
+		Delta delta = new Delta();
+		if (rootNodes != null) {
+			lineToNodeMap.clear();
+			rootNodes = reconcile(null, rootNodes, collectRootEntries(), delta);
+			for (OutlineNode parent : delta.getChangedParents()) {
+				sortedChildrenMap.remove(parent);
+			}
+
+			if (useCombinedRootTables && !useFlattenedTreeMode) {
+				// the model's tables are shown through the combined table of their
+				// type
+				for (Table table : model.getTables()) {
+					for (OutlineNode node : rootNodes) {
+						if (((Table) node.getLine()).getTableType() == table.getTableType()) {
+							lineToNodeMap.put(table, node);
 						}
-						;
 					}
 				}
 			}
+		}
+		return delta;
+	}
+
+	private List<OutlineNode> reconcile(OutlineNode parent, List<OutlineNode> oldNodes, List<Entry> entries,
+			Delta delta) {
+		Map<String, OutlineNode> oldNodesByKey = new HashMap<String, OutlineNode>();
+		Map<OutlineNode, Integer> oldIndexes = new IdentityHashMap<OutlineNode, Integer>();
+		for (int i = 0; i < oldNodes.size(); i++) {
+			oldNodesByKey.put(oldNodes.get(i).getKey(), oldNodes.get(i));
+			oldIndexes.put(oldNodes.get(i), i);
+		}
+
+		OutlineNode[] nodes = new OutlineNode[entries.size()];
+		for (int i = 0; i < entries.size(); i++) {
+			nodes[i] = oldNodesByKey.remove(entries.get(i).key);
+		}
+
+		// an old node that's no longer matched was most likely renamed, so it's
+		// paired up with the next unmatched line of the same kind
+		List<OutlineNode> unmatchedNodes = new ArrayList<OutlineNode>();
+		for (OutlineNode node : oldNodes) {
+			if (oldNodesByKey.containsKey(node.getKey())) {
+				unmatchedNodes.add(node);
+			}
+		}
+		int nextUnmatched = 0;
+		for (int i = 0; i < entries.size(); i++) {
+			if (nodes[i] == null && nextUnmatched < unmatchedNodes.size()
+					&& isSameKind(unmatchedNodes.get(nextUnmatched).getLine(), entries.get(i).line)) {
+				nodes[i] = unmatchedNodes.get(nextUnmatched++);
+				nodes[i].setKey(entries.get(i).key);
+			}
+		}
+		if (nextUnmatched < unmatchedNodes.size()) {
+			delta.getChangedParents().add(parent);
+			for (OutlineNode node : unmatchedNodes.subList(nextUnmatched, unmatchedNodes.size())) {
+				sortedChildrenMap.remove(node);
+			}
+		}
 
-			if (useCombinedRootTables && !useFlattenedTreeMode) {
-				elements.add(internalTestcaseTable);
-				elements.add(internalKeywordTable);
-				elements.add(internalSettingTable);
-				elements.add(internalVariableTable);
+		List<OutlineNode> newNodes = new ArrayList<OutlineNode>(entries.size());
+		int lastOldIndex = -1;
+		for (int i = 0; i < entries.size(); i++) {
+			Entry entry = entries.get(i);
+			OutlineNode node = nodes[i];
+			String label = labelProvider.getText(entry.line);
+			if (node == null) {
+				node = new OutlineNode(parent, entry.key, entry.line, label);
+				if (entry.children != null) {
+					// the new node's children are shown along with it
+					node.setChildren(reconcile(node, Collections.<OutlineNode> emptyList(), entry.children,
+							new Delta()));
+				}
+				delta.getChangedParents().add(parent);
+			} else {
+				int oldIndex = oldIndexes.get(node);
+				if (oldIndex < lastOldIndex) {
+					delta.getChangedParents().add(parent);
+				}
+				lastOldIndex = oldIndex;
+
+				node.setLine(entry.line);
+				if (label == null ? node.getLabel() != null : !label.equals(node.getLabel())) {
+					node.setLabel(label);
+					if (useSortedOrder) {
+						delta.getChangedParents().add(parent);
+					} else {
+						delta.getRelabeledNodes().add(node);
+					}
+				}
+				if (entry.children != null) {
+					node.setChildren(reconcile(node, node.getChildren(), entry.children, delta));
+				}
 			}
-		} else if (parentElement instanceof Table) {
-			elements.addAll(getChildrenFromTable(parentElement));
+			lineToNodeMap.put(entry.line, node);
+			newNodes.add(node);
 		}
+		return newNodes;
+	}
 
-		return elements.toArray(new Object[0]);
+	private boolean isSameKind(Line line1, Line line2) {
+		if (line1.getClass() != line2.getClass()) {
+			return false;
+		} else if (line1 instanceof TableItemDefinition) {
+			return ((TableItemDefinition) line1).getItemType() == ((TableItemDefinition) line2).getItemType();
+		} else if (line1 instanceof Step) {
+			return ((Step) line1).getStepType() == ((Step) line2).getStepType();
+		} else if (line1 instanceof Table) {
+			return ((Table) line1).getTableType() == ((Table) line2).getTableType();
+		}
+		return true;
 	}
 
-	private List<Object> getChildrenFromTable(Object parentElement) {
-		List<Object> elements = new ArrayList<Object>();
-		if (parentElement instanceof Table && ((Table) parentElement).getTableType() == TableType.TESTCASE) {
-			for (Line line : ((Table) parentElement).getTableLines()) {
+	private List<Entry> collectRootEntries() {
+		List<Entry> entries = new ArrayList<Entry>();
+		Map<String, Integer> keyCounts = new HashMap<String, Integer>();
+		if (useFlattenedTreeMode) {
+			for (Table table : model.getTables()) {
+				collectTableEntries(table, entries, keyCounts);
+			}
+		} else if (useCombinedRootTables) {
+			Table[] combinedTables = new Table[] { internalTestcaseTable, internalKeywordTable, internalSettingTable,
+					internalVariableTable };
+			for (Table combinedTable : combinedTables) {
+				List<Entry> children = new ArrayList<Entry>();
+				Map<String, Integer> childKeyCounts = new HashMap<String, Integer>();
+				for (Table table : model.getTables()) {
+					if (table.getTableType() == combinedTable.getTableType()) {
+						collectTableEntries(table, children, childKeyCounts);
+					}
+				}
+				entries.add(new Entry("combined:" + combinedTable.getTableType(), combinedTable, children));
+			}
+		} else {
+			for (Table table : model.getTables()) {
+				List<Entry> children = new ArrayList<Entry>();
+				collectTableEntries(table, children, new HashMap<String, Integer>());
+				entries.add(new Entry(getUniqueKey("table:" + table.getTableType(), keyCounts), table, children));
+			}
+		}
+		return entries;
+	}
+
+	private void collectTableEntries(Table table, List<Entry> entries, Map<String, Integer> keyCounts) {
+		if (table.getTableType() == TableType.TESTCASE) {
+			for (Line line : table.getTableLines()) {
 				if (line instanceof TableItemDefinition) {
 					TableItemDefinition item = (TableItemDefinition) line;
 					if (getTestcaseName(item) != null) {
-						elements.add(item);
+						entries.add(new Entry(getUniqueKey("testcase:" + getTestcaseName(item), keyCounts), item, null));
 					}
 				}
 			}
-		} else if (parentElement instanceof Table && ((Table) parentElement).getTableType() == TableType.KEYWORD) {
-			for (Line line : ((Table) parentElement).getTableLines()) {
+		} else if (table.getTableType() == TableType.KEYWORD) {
+			for (Line line : table.getTableLines()) {
 				if (line instanceof TableItemDefinition) {
 					TableItemDefinition item = (TableItemDefinition) line;
 					if (getKeywordName(item) != null) {
-						elements.add(item);
+						entries.add(new Entry(getUniqueKey("keyword:" + getKeywordName(item), keyCounts), item, null));
 					}
 				}
 			}
-		} else if (parentElement instanceof Table && ((Table) parentElement).getTableType() == TableType.SETTING) {
-			for (Line line : ((Table) parentElement).getTableLines()) {
+		} else if (table.getTableType() == TableType.SETTING) {
+			for (Line line : table.getTableLines()) {
 				Step step = (Step) line;
 				if (getSettingName(step) != null) {
-					elements.add(step);
+					entries.add(new Entry(getUniqueKey("setting:" + getSettingName(step), keyCounts), step, null));
 				}
 			}
-		} else if (parentElement instanceof Table && ((Table) parentElement).getTableType() == TableType.VARIABLE) {
-			for (Line line : ((Table) parentElement).getTableLines()) {
+		} else if (table.getTableType() == TableType.VARIABLE) {
+			for (Line line : table.getTableLines()) {
 				Step step = (Step) line;
 				if (getVariableName(step) != null) {
-					elements.add(step);
-				}
-			}
-		}
-		return elements;
-	}
-
-	@Override
-	public Object getParent(Object element) {
-		if (element instanceof Line && !useFlattenedTreeMode) {
-			if (useCombinedRootTables) {
-				if (element instanceof TableItemDefinition) {
-					if (((TableItemDefinition) element).getItemType() == TableItemType.TESTCASE) {
-						return internalTestcaseTable;
-					} else {
-						return internalKeywordTable;
-					}
-				} else if (element instanceof Step) {
-					Step step = (Step) element;
-					if (step.getStepType() == StepType.SETTING) {
-						return internalSettingTable;
-					} else {
-						return internalVariableTable;
-					}
+					entries.add(new Entry(getUniqueKey("variable:" + getVariableName(step), keyCounts), step, null));
 				}
-			} else {
-				return ModelUtil.getContainingTable(model, ((Line) element).getLineOffset());
 			}
 		}
-		return null;
 	}
 
-	@Override
-	public boolean hasChildren(Object element) {
-		return (element instanceof Table);
+	/**
+	 * Makes keys unique among siblings by numbering repeats (ex. several
+	 * Library settings).
+	 */
+	private String getUniqueKey(String key, Map<String, Integer> keyCounts) {
+		Integer count = keyCounts.get(key);
+		keyCounts.put(key, count == null ? 1 : count + 1);
+		return count == null ? key : key + "#" + count;
 	}
 
 	static String getSettingName(Step step) {
@@ -20,7 +20,9 @@ public class RobotLabelProvider extends LabelProvider {
 
 	@Override
 	public String getText(Object element) {
-		if (element instanceof TableItemDefinition) {
+		if (element instanceof OutlineNode) {
+			return ((OutlineNode) element).getLabel();
+		} else if (element instanceof TableItemDefinition) {
 			return ((TableItemDefinition) element).getName();
 		} else if (element instanceof Table && ((Table) element).getTableType() == TableType.TESTCASE) {
 			return "Test Cases";
@@ -49,6 +51,10 @@ public class RobotLabelProvider extends LabelProvider {
 
 	@Override
 	public Image getImage(Object element) {
+		if (element instanceof OutlineNode) {
+			element = ((OutlineNode) element).getLine();
+		}
+
 		if (element instanceof TableItemDefinition
 				&& ((TableItemDefinition) element).getItemType() == TableItemType.TESTCASE) {
 			return PyroUIPlugin.getDefault().getImageRegistry().get(PyroUIPlugin.IMAGE_TESTCASE);
@@ -1,22 +1,29 @@
 package com.millennialmedia.pyro.ui.internal.outline;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.IToolBarManager;
 import org.eclipse.jface.text.source.ISourceViewer;
-import org.eclipse.jface.viewers.AbstractTreeViewer;
+import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
 import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.jface.viewers.TreeViewer;
-import org.eclipse.jface.viewers.Viewer;
-import org.eclipse.jface.viewers.ViewerComparator;
+import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.BusyIndicator;
 import org.eclipse.swt.custom.CaretEvent;
 import org.eclipse.swt.custom.CaretListener;
+import org.eclipse.swt.custom.StyledText;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.TreeItem;
 import org.eclipse.ui.IActionBars;
 import org.eclipse.ui.views.contentoutline.ContentOutlinePage;
 
 import com.millennialmedia.pyro.model.Line;
+import com.millennialmedia.pyro.model.LineIndex;
 import com.millennialmedia.pyro.model.RobotModel;
 import com.millennialmedia.pyro.model.Step;
 import com.millennialmedia.pyro.model.Step.StepType;
@@ -32,10 +39,16 @@ import com.millennialmedia.pyro.ui.editor.RobotFrameworkEditor;
  * @author spaxton
  */
 public class RobotOutlinePage extends ContentOutlinePage {
+	private static final int CARET_SYNC_DELAY_MILLIS = 150;
+
+	// the model snapshot currently shown
 	private RobotModel model;
 	private RobotFrameworkEditor editor;
 	private boolean triggeredSelectionChangeInProgress = false;
+	// the item most recently selected to follow the caret
+	private OutlineNode lastSyncedItem;
 	private RobotContentProvider contentProvider;
+	private TreeViewer viewer;
 	private static RobotLabelProvider labelProvider = new RobotLabelProvider();
 
 	private LexicalSortAction lexicalSortAction;
@@ -43,6 +56,31 @@ public class RobotOutlinePage extends ContentOutlinePage {
 	private CollapseAllAction collapseAllAction;
 	private ExpandAllAction expandAllAction;
 
+	private Runnable caretSyncRunnable = new Runnable() {
+		@Override
+		public void run() {
+			try {
+				syncToCaret();
+			} catch (Exception e) {
+				// do nothing, just prevent the exception from leaking back to the
+				// event loop
+			}
+		}
+	};
+
+	// caret moves are coalesced, so the outline follows the caret only once it
+	// stops moving (ex. after an arrow key is released)
+	private CaretListener caretListener = new CaretListener() {
+		@Override
+		public void caretMoved(CaretEvent event) {
+			if (!triggeredSelectionChangeInProgress) {
+				Display display = ((Control) event.widget).getDisplay();
+				display.timerExec(-1, caretSyncRunnable);
+				display.timerExec(CARET_SYNC_DELAY_MILLIS, caretSyncRunnable);
+			}
+		}
+	};
+
 	class RobotActionBase extends Action {
 		private boolean canToggle;
 
@@ -85,24 +123,17 @@ public class RobotOutlinePage extends ContentOutlinePage {
 	}
 
 	class LexicalSortAction extends RobotActionBase {
-		private ViewerComparator alphaSortComparator = new ViewerComparator() {
-			public int compare(Viewer viewer, Object e1, Object e2) {
-				return String.CASE_INSENSITIVE_ORDER.compare(labelProvider.getText(e1), labelProvider.getText(e2));
-			};
-		};
-
 		public LexicalSortAction() {
 			super("Sort", PyroUIPlugin.IMAGE_AZSORT, true);
 		}
 
 		@Override
 		protected void internalRun(boolean isOn) {
-			if (isOn) {
-				getTreeViewer().setComparator(alphaSortComparator);
-			} else {
-				getTreeViewer().setComparator(null);
-			}
+			// the virtual tree can't use a viewer comparator, so the content
+			// provider does the sorting
+			contentProvider.setSortedOrder(isOn);
 			contentProvider.setCombinedRootTables(isOn);
+			lastSyncedItem = null;
 			getTreeViewer().refresh();
 		}
 	}
@@ -138,6 +169,7 @@ public class RobotOutlinePage extends ContentOutlinePage {
 
 			expandAllAction.setEnabled(isOn);
 			collapseAllAction.setEnabled(isOn);
+			lastSyncedItem = null;
 
 			getTreeViewer().refresh();
 		}
@@ -146,73 +178,111 @@ public class RobotOutlinePage extends ContentOutlinePage {
 	public RobotOutlinePage(final RobotModel model, final RobotFrameworkEditor editor) {
 		this.model = model;
 		this.editor = editor;
-		this.contentProvider = new RobotContentProvider(model);
+		this.contentProvider = new RobotContentProvider(model, labelProvider);
 
 		// setup listener for position changes in the source editor
-		editor.getViewer().getTextWidget().addCaretListener(new CaretListener() {
-			@Override
-			public void caretMoved(CaretEvent event) {
-				try {
-					if (triggeredSelectionChangeInProgress) {
-						return;
-					}
-
-					int offset = event.caretOffset;
-
-					// find the item in the outline view that corresponds to
-					// this caret position and select it
-					boolean underVariableTable = false;
-					boolean underSettingTable = false;
-
-					Line currentLine = model.getFirstLine();
-					Line containingItem = currentLine;
-					while (currentLine != null && currentLine.getLineOffset() <= offset) {
-						if (currentLine instanceof TableItemDefinition
-								|| (underSettingTable && currentLine instanceof Step && ((Step) currentLine).getStepType() == StepType.SETTING)
-								|| (underVariableTable && currentLine instanceof Step)) {
-							containingItem = currentLine;
-						} else if (currentLine instanceof Table
-								&& ((Table) currentLine).getTableType() == TableType.VARIABLE) {
-							underVariableTable = true;
-							underSettingTable = false;
-							containingItem = currentLine;
-						} else if (currentLine instanceof Table
-								&& ((Table) currentLine).getTableType() == TableType.SETTING) {
-							underSettingTable = true;
-							underVariableTable = false;
-							containingItem = currentLine;
-						} else if (currentLine instanceof Table) {
-							underVariableTable = false;
-							underSettingTable = false;
-							containingItem = currentLine;
-						}
-						currentLine = currentLine.getNextLine();
-					}
-					try {
-						triggeredSelectionChangeInProgress = true;
-						if (getTreeViewer() != null && getTreeViewer().getControl() != null && !getTreeViewer().getControl().isDisposed()) {
-							getTreeViewer().setSelection(new StructuredSelection(containingItem));
-							getTreeViewer().expandToLevel(containingItem, AbstractTreeViewer.ALL_LEVELS);
-							getTreeViewer().reveal(containingItem);
-						}
-					} finally {
-						triggeredSelectionChangeInProgress = false;
-					}
-				} catch (Exception e) {
-					// do nothing, just prevent the listener from leaking an exception back to the text editor
+		editor.getViewer().getTextWidget().addCaretListener(caretListener);
+	}
+
+	@Override
+	public void dispose() {
+		StyledText textWidget = editor.getViewer() != null ? editor.getViewer().getTextWidget() : null;
+		if (textWidget != null && !textWidget.isDisposed()) {
+			textWidget.removeCaretListener(caretListener);
+			textWidget.getDisplay().timerExec(-1, caretSyncRunnable);
+		}
+		super.dispose();
+	}
+
+	/**
+	 * Selects the outline item containing the caret, once the caret has come
+	 * to rest.
+	 */
+	private void syncToCaret() {
+		StyledText textWidget = editor.getViewer() != null ? editor.getViewer().getTextWidget() : null;
+		if (viewer == null || viewer.getControl().isDisposed() || textWidget == null || textWidget.isDisposed()) {
+			return;
+		}
+
+		// find the item in the outline view that corresponds to this caret
+		// position, and leave the tree alone if it's already selected
+		OutlineNode containingItem = contentProvider.getNode(getOutlineItemAtOffset(textWidget.getCaretOffset()));
+		if (containingItem == null || containingItem == lastSyncedItem) {
+			return;
+		}
+
+		// select through the tree widget, as the viewer would materialize every
+		// earlier sibling of the item while searching for it in the virtual tree
+		List<OutlineNode> path = new ArrayList<OutlineNode>();
+		for (OutlineNode node = containingItem; node != null; node = node.getParent()) {
+			path.add(0, node);
+		}
+		TreeItem item = null;
+		for (OutlineNode node : path) {
+			Object parent = node.getParent() != null ? node.getParent() : viewer.getInput();
+			int index = contentProvider.getShownChildren(parent).indexOf(node);
+			if (index < 0) {
+				return;
+			} else if (item == null) {
+				item = viewer.getTree().getItem(index);
+			} else {
+				item.setExpanded(true);
+				item = item.getItem(index);
+			}
+			if (item.getData() == null) {
+				contentProvider.updateElement(parent, index);
+			}
+		}
+		if (containingItem.getChildren().size() > 0) {
+			item.setExpanded(true);
+		}
+		viewer.getTree().setSelection(item);
+		viewer.getTree().showItem(item);
+		lastSyncedItem = containingItem;
+	}
+
+	/**
+	 * Finds the line shown in the outline view that corresponds to the given
+	 * document offset. This is the containing testcase/keyword definition, or
+	 * the containing setting or variable, or just the table itself.
+	 */
+	private Line getOutlineItemAtOffset(int offset) {
+		LineIndex lineIndex = model.getLineIndex();
+		int index = lineIndex.getIndexAtOffset(offset);
+		Table table = lineIndex.getTable(index);
+		if (table == null) {
+			return model.getFirstLine();
+		}
+
+		if (table.getTableType() == TableType.VARIABLE) {
+			// every line in the variable table is shown
+			return lineIndex.getLine(index);
+		} else if (table.getTableType() == TableType.SETTING) {
+			// settings are shown, but not comments
+			for (int i = index; lineIndex.getLine(i) != table; i--) {
+				Line line = lineIndex.getLine(i);
+				if (line instanceof Step && ((Step) line).getStepType() == StepType.SETTING) {
+					return line;
 				}
 			}
-		});
+			return table;
+		} else {
+			TableItemDefinition tableItem = lineIndex.getTableItem(index);
+			return tableItem != null ? tableItem : table;
+		}
 	}
 
 	@Override
 	public void createControl(Composite parent) {
-		super.createControl(parent);
-		TreeViewer viewer = getTreeViewer();
+		// the page's default tree isn't virtual, so the outline creates its own
+		// rather than calling super. only the visible rows ever get items
+		viewer = new TreeViewer(parent, SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL | SWT.VIRTUAL);
+		viewer.setUseHashlookup(true);
 		viewer.setContentProvider(contentProvider);
 		viewer.setLabelProvider(labelProvider);
 		viewer.addSelectionChangedListener(this);
-		viewer.setInput(model);
+		// the editor stands for the root, as the model changes with each reparse
+		viewer.setInput(editor);
 
 		IActionBars actionBars = getSite().getActionBars();
 		IToolBarManager toolbarManager = actionBars.getToolBarManager();
@@ -228,6 +298,35 @@ public class RobotOutlinePage extends ContentOutlinePage {
 		toolbarManager.add(lexicalSortAction);
 	}
 
+	@Override
+	protected TreeViewer getTreeViewer() {
+		return viewer;
+	}
+
+	@Override
+	public Control getControl() {
+		return viewer != null ? viewer.getControl() : null;
+	}
+
+	@Override
+	public void setFocus() {
+		if (viewer != null) {
+			viewer.getControl().setFocus();
+		}
+	}
+
+	@Override
+	public ISelection getSelection() {
+		return viewer != null ? viewer.getSelection() : StructuredSelection.EMPTY;
+	}
+
+	@Override
+	public void setSelection(ISelection selection) {
+		if (viewer != null) {
+			viewer.setSelection(selection);
+		}
+	}
+
 	@Override
 	public void selectionChanged(SelectionChangedEvent event) {
 		if (triggeredSelectionChangeInProgress) {
@@ -235,23 +334,43 @@ public class RobotOutlinePage extends ContentOutlinePage {
 		}
 
 		StructuredSelection selection = (StructuredSelection) event.getSelection();
-		Line line = (Line) selection.getFirstElement();
-		if (line != null) {
-			ISourceViewer viewer = editor.getViewer();
+		Object element = selection.getFirstElement();
+		lastSyncedItem = null;
+		if (element instanceof OutlineNode) {
+			Line line = ((OutlineNode) element).getLine();
+			ISourceViewer sourceViewer = editor.getViewer();
 			try {
 				triggeredSelectionChangeInProgress = true;
 				int newSelectedLineOffset = line.getLineOffset();
-				viewer.setSelectedRange(newSelectedLineOffset, 0);
-				viewer.revealRange(newSelectedLineOffset, 0);
+				sourceViewer.setSelectedRange(newSelectedLineOffset, 0);
+				sourceViewer.revealRange(newSelectedLineOffset, 0);
 			} finally {
 				triggeredSelectionChangeInProgress = false;
 			}
 		}
 	}
 
-	public void refresh() {
-		if (getTreeViewer() != null && getTreeViewer().getControl() != null && !getTreeViewer().getControl().isDisposed()) {
-			getTreeViewer().refresh(true);
+	/**
+	 * Updates the outline to show a newly-parsed model. Only the parents whose
+	 * children changed are refreshed, and the virtual tree then asks again for
+	 * just their visible rows. The rest of the tree keeps its items along with
+	 * their expansion and selection state.
+	 */
+	public void refresh(RobotModel newModel) {
+		model = newModel;
+		contentProvider.setModel(newModel);
+		if (viewer != null && viewer.getControl() != null && !viewer.getControl().isDisposed()) {
+			RobotContentProvider.Delta delta = contentProvider.update();
+			if (!delta.isEmpty()) {
+				// the refreshed items may now hold other nodes
+				lastSyncedItem = null;
+			}
+			for (OutlineNode parent : delta.getChangedParents()) {
+				viewer.refresh(parent != null ? parent : viewer.getInput(), true);
+			}
+			for (OutlineNode node : delta.getRelabeledNodes()) {
+				viewer.update(node, null);
+			}
 		}
 	}
 
@@ -21,5 +21,11 @@ public interface IPreferenceConstants {
 		SMART_CAPS, UPPERCASE, PRESERVE_CASE 
 	};
 	
+	/*
+	 * The estimated heap, in megabytes, that the models of parsed dependency files may retain before the
+	 * least-recently used ones are evicted.
+	 */
+	String MODEL_CACHE_BUDGET = "model.cache.budget";
+	
 	
 }
@@ -0,0 +1,94 @@
+package com.millennialmedia.pyro.ui.internal.preferences;
+
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.preference.PreferencePage;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Spinner;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPreferencePage;
+
+import com.millennialmedia.pyro.model.ModelCacheStatistics;
+import com.millennialmedia.pyro.model.ModelManager;
+import com.millennialmedia.pyro.ui.PyroUIPlugin;
+import com.millennialmedia.pyro.ui.internal.nls.Messages;
+
+/**
+ * Preference page for the memory budget of the model cache, which also shows
+ * the cache's current usage and counters.
+ *
+ * @author spaxton
+ */
+public class ModelCachePreferencePage extends PreferencePage implements IWorkbenchPreferencePage {
+	private static final int MIN_BUDGET_MEGABYTES = 8;
+	private static final int MAX_BUDGET_MEGABYTES = 4096;
+	private static final long MEGABYTE = 1024 * 1024;
+
+	private Spinner budgetSpinner;
+
+	@Override
+	protected Control createContents(Composite parent) {
+		Composite budgetComposite = new Composite(parent, SWT.NONE);
+		budgetComposite.setLayout(new GridLayout(2, false));
+		Label label = new Label(budgetComposite, SWT.NONE);
+		label.setText(Messages.ModelCachePreferencePage_budget);
+		budgetSpinner = new Spinner(budgetComposite, SWT.BORDER);
+		budgetSpinner.setMinimum(MIN_BUDGET_MEGABYTES);
+		budgetSpinner.setMaximum(MAX_BUDGET_MEGABYTES);
+		budgetSpinner.setIncrement(8);
+		budgetSpinner.setPageIncrement(64);
+
+		ModelCacheStatistics statistics = ModelManager.getManager().getCacheStatistics();
+		Label statisticsLabel = new Label(parent, SWT.NONE);
+		statisticsLabel.setText(NLS.bind(Messages.ModelCachePreferencePage_statistics,
+				new Object[] { statistics.getModelCount(), statistics.getWeight() / MEGABYTE, statistics.getHitCount(),
+						statistics.getMissCount(), statistics.getEvictionCount(),
+						statistics.getAverageLoadNanos() / 1000000 }));
+
+		setSpinnerState();
+		return new Composite(parent, SWT.NONE);
+	}
+
+	private void setSpinnerState() {
+		budgetSpinner.setSelection(getPreferenceStore().getInt(IPreferenceConstants.MODEL_CACHE_BUDGET));
+	}
+
+	@Override
+	public boolean performOk() {
+		getPreferenceStore().setValue(IPreferenceConstants.MODEL_CACHE_BUDGET, budgetSpinner.getSelection());
+		return true;
+	}
+
+	@Override
+	protected void performDefaults() {
+		super.performDefaults();
+		getPreferenceStore().setToDefault(IPreferenceConstants.MODEL_CACHE_BUDGET);
+		setSpinnerState();
+	}
+
+	static void initializeDefaults(IPreferenceStore store) {
+		store.setDefault(IPreferenceConstants.MODEL_CACHE_BUDGET, (int) (ModelManager.DEFAULT_CACHE_BUDGET / MEGABYTE));
+	}
+
+	/**
+	 * Applies the budget in the given store to the model cache.
+	 */
+	public static void applyBudget(IPreferenceStore store) {
+		int budget = Math.max(MIN_BUDGET_MEGABYTES, store.getInt(IPreferenceConstants.MODEL_CACHE_BUDGET));
+		ModelManager.getManager().setCacheBudget(budget * MEGABYTE);
+	}
+
+	@Override
+	public void init(IWorkbench workbench) {
+	}
+
+	@Override
+	protected IPreferenceStore doGetPreferenceStore() {
+		return PyroUIPlugin.getDefault().getPreferenceStore();
+	}
+
+}
@@ -18,6 +18,7 @@ public class PyroPreferenceInitializer extends AbstractPreferenceInitializer {
 
 		// call each page to initialize their default preference set
 		CapitalizationPreferencePage.initializeDefaults(store);
+		ModelCachePreferencePage.initializeDefaults(store);
 	}
 
 }
@@ -0,0 +1,285 @@
+package com.millennialmedia.pyro.ui.internal.syntaxcoloring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.Region;
+import org.eclipse.jface.text.presentation.IPresentationDamager;
+
+import com.millennialmedia.pyro.model.Line;
+import com.millennialmedia.pyro.model.Step;
+import com.millennialmedia.pyro.model.StepSegment;
+import com.millennialmedia.pyro.model.TableItemDefinition;
+
+/**
+ * Damager that works out which parts of the document need to be recolored
+ * when a newly-parsed model replaces the previous one. An edit can change the
+ * coloring well beyond the edited text (ex. a continuation line, or a
+ * [Template] setting that turns every keyword call of a testcase into an
+ * argument), so the damage is computed by comparing the segment types of the
+ * previous and new models rather than from the edit alone.
+ *
+ * Edits are recorded as they're made. When the new model arrives, each line
+ * of the previous model is mapped through those edits to its new offset and
+ * compared with the new model's line there. The damage is the lines whose
+ * coloring differs, plus the edited lines themselves.
+ *
+ * @author spaxton
+ */
+public class RobotPresentationDamager implements IPresentationDamager, IDocumentListener {
+	// beyond this many edits between models, just repaint everything
+	private static final int MAX_TRACKED_EDITS = 1000;
+	private static final Comparator<int[]> START_COMPARATOR = new Comparator<int[]>() {
+		@Override
+		public int compare(int[] range1, int[] range2) {
+			return range1[0] < range2[0] ? -1 : (range1[0] == range2[0] ? 0 : 1);
+		}
+	};
+
+	private IDocument document;
+	// each edit as {offset, replaced length, inserted length}, in order
+	private List<int[]> edits = new ArrayList<int[]>();
+	// sorted, disjoint {start, end} ranges of edited text in the current
+	// document
+	private List<int[]> editedRegions = new ArrayList<int[]>();
+	private boolean tooManyEdits;
+
+	@Override
+	public void setDocument(IDocument document) {
+		if (this.document != null) {
+			this.document.removeDocumentListener(this);
+		}
+		this.document = document;
+		if (document != null) {
+			document.addDocumentListener(this);
+		}
+		reset();
+	}
+
+	@Override
+	public IRegion getDamageRegion(ITypedRegion partition, DocumentEvent event, boolean documentPartitioningChanged) {
+		// only the edited lines are known at this point, the rest of the damage
+		// is reported once the model catches up with the edit
+		if (documentPartitioningChanged) {
+			return partition;
+		}
+		try {
+			int textLength = event.getText() != null ? event.getText().length() : 0;
+			int start = document.getLineInformationOfOffset(event.getOffset()).getOffset();
+			IRegion lastLine = document.getLineInformationOfOffset(event.getOffset() + textLength);
+			return new Region(start, lastLine.getOffset() + lastLine.getLength() - start);
+		} catch (BadLocationException e) {
+			return partition;
+		}
+	}
+
+	@Override
+	public void documentAboutToBeChanged(DocumentEvent event) {
+	}
+
+	@Override
+	public void documentChanged(DocumentEvent event) {
+		if (tooManyEdits) {
+			return;
+		} else if (edits.size() == MAX_TRACKED_EDITS) {
+			tooManyEdits = true;
+			edits.clear();
+			editedRegions.clear();
+			return;
+		}
+
+		int offset = event.getOffset();
+		int replacedLength = event.getLength();
+		int insertedLength = event.getText() != null ? event.getText().length() : 0;
+		int delta = insertedLength - replacedLength;
+		edits.add(new int[] { offset, replacedLength, insertedLength });
+
+		// shift the regions edited earlier, merging any that this edit touches
+		int[] edited = new int[] { offset, offset + insertedLength };
+		List<int[]> newRegions = new ArrayList<int[]>();
+		for (int[] region : editedRegions) {
+			if (region[1] < offset) {
+				newRegions.add(region);
+			} else if (region[0] > offset + replacedLength) {
+				newRegions.add(new int[] { region[0] + delta, region[1] + delta });
+			} else {
+				edited[0] = Math.min(edited[0], region[0]);
+				if (region[1] > offset + replacedLength) {
+					edited[1] = Math.max(edited[1], region[1] + delta);
+				}
+			}
+		}
+		newRegions.add(edited);
+		Collections.sort(newRegions, START_COMPARATOR);
+		editedRegions = newRegions;
+	}
+
+	/**
+	 * Forgets the edits recorded so far, which are already reflected in the
+	 * current model.
+	 */
+	public void reset() {
+		edits.clear();
+		editedRegions.clear();
+		tooManyEdits = false;
+	}
+
+	/**
+	 * Computes the regions of the current document that need to be recolored
+	 * when the model for the previous contents is replaced by a model of the
+	 * current contents, then forgets the recorded edits.
+	 *
+	 * @return sorted, non-overlapping regions of the current document
+	 */
+	public IRegion[] getModelDamage(Line previousFirstLine, Line newFirstLine) {
+		try {
+			if (document == null) {
+				return new IRegion[0];
+			} else if (tooManyEdits) {
+				return new IRegion[] { new Region(0, document.getLength()) };
+			}
+
+			List<int[]> damage = new ArrayList<int[]>();
+			try {
+				for (int[] region : editedRegions) {
+					// recolor whole lines around each edit
+					int startLine = document.getLineOfOffset(region[0]);
+					int endLine = document.getLineOfOffset(Math.max(region[0], region[1]));
+					damage.add(new int[] { document.getLineOffset(startLine),
+							document.getLineOffset(endLine) + document.getLineLength(endLine) });
+				}
+			} catch (BadLocationException e) {
+				return new IRegion[] { new Region(0, document.getLength()) };
+			}
+
+			// walk both line chains together. lines are ordered by offset, so
+			// each previous line is paired with the new line at its mapped
+			// offset, and any new line left unpaired has changed
+			Line previousLine = previousFirstLine;
+			Line newLine = newFirstLine;
+			while (newLine != null) {
+				int mappedOffset = previousLine != null ? mapOffset(previousLine.getLineOffset()) : -1;
+				if (previousLine != null && (mappedOffset < 0 || mappedOffset < newLine.getLineOffset())) {
+					// the line was edited away or has no counterpart. any of
+					// its text that remains loses its coloring
+					if (mappedOffset >= 0) {
+						damage.add(new int[] { mappedOffset, mappedOffset + previousLine.getLineLength() });
+					}
+					previousLine = previousLine.getNextLine();
+				} else if (previousLine != null && mappedOffset == newLine.getLineOffset()
+						&& isColoredAlike(previousLine, newLine)) {
+					previousLine = previousLine.getNextLine();
+					newLine = newLine.getNextLine();
+				} else {
+					damage.add(new int[] { newLine.getLineOffset(), newLine.getLineOffset() + newLine.getLineLength() });
+					if (previousLine != null && mappedOffset == newLine.getLineOffset()) {
+						previousLine = previousLine.getNextLine();
+					}
+					newLine = newLine.getNextLine();
+				}
+			}
+			for (; previousLine != null; previousLine = previousLine.getNextLine()) {
+				int mappedOffset = mapOffset(previousLine.getLineOffset());
+				if (mappedOffset >= 0) {
+					damage.add(new int[] { mappedOffset, mappedOffset + previousLine.getLineLength() });
+				}
+			}
+
+			return toRegions(damage);
+		} finally {
+			reset();
+		}
+	}
+
+	/**
+	 * Maps an offset in the document as of the previous model to the current
+	 * document, or returns -1 if the text at that offset was replaced.
+	 */
+	private int mapOffset(int offset) {
+		for (int[] edit : edits) {
+			if (offset < edit[0]) {
+				continue;
+			} else if (offset >= edit[0] + edit[1]) {
+				offset += edit[2] - edit[1];
+			} else {
+				return -1;
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Whether two lines would be given the same tokens by the scanner,
+	 * relative to the start of each line.
+	 */
+	private boolean isColoredAlike(Line previousLine, Line newLine) {
+		if (previousLine.getClass() != newLine.getClass() || previousLine.getLineLength() != newLine.getLineLength()) {
+			return false;
+		}
+
+		if (newLine instanceof TableItemDefinition) {
+			TableItemDefinition previousDefinition = (TableItemDefinition) previousLine;
+			TableItemDefinition newDefinition = (TableItemDefinition) newLine;
+			return previousDefinition.getItemType() == newDefinition.getItemType()
+					&& previousDefinition.getNameLength() == newDefinition.getNameLength();
+		} else if (newLine instanceof Step) {
+			List<StepSegment> previousSegments = ((Step) previousLine).getSegments();
+			List<StepSegment> newSegments = ((Step) newLine).getSegments();
+			if (previousSegments.size() != newSegments.size()) {
+				return false;
+			}
+			for (int i = 0; i < newSegments.size(); i++) {
+				StepSegment previousSegment = previousSegments.get(i);
+				StepSegment newSegment = newSegments.get(i);
+				if (previousSegment.getSegmentType() != newSegment.getSegmentType()
+						|| previousSegment.getOffsetInLine() != newSegment.getOffsetInLine()
+						|| getValueLength(previousSegment) != getValueLength(newSegment)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		// tables are colored across their whole line, and anything else isn't
+		// colored at all
+		return true;
+	}
+
+	private int getValueLength(StepSegment segment) {
+		return segment.getValue() != null ? segment.getValue().length() : -1;
+	}
+
+	private IRegion[] toRegions(List<int[]> ranges) {
+		Collections.sort(ranges, START_COMPARATOR);
+		List<IRegion> regions = new ArrayList<IRegion>();
+		int documentLength = document.getLength();
+		int start = -1;
+		int end = -1;
+		for (int[] range : ranges) {
+			int rangeEnd = Math.min(range[1], documentLength);
+			if (range[0] >= rangeEnd) {
+				continue;
+			} else if (start >= 0 && range[0] <= end) {
+				end = Math.max(end, rangeEnd);
+			} else {
+				if (start >= 0) {
+					regions.add(new Region(start, end - start));
+				}
+				start = range[0];
+				end = rangeEnd;
+			}
+		}
+		if (start >= 0) {
+			regions.add(new Region(start, end - start));
+		}
+		return regions.toArray(new IRegion[regions.size()]);
+	}
+
+}
@@ -1,7 +1,9 @@
 package com.millennialmedia.pyro.ui.internal.syntaxcoloring;
 
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.TextAttribute;
@@ -11,6 +13,7 @@ import org.eclipse.jface.text.rules.Token;
 import org.eclipse.swt.graphics.RGB;
 
 import com.millennialmedia.pyro.model.Line;
+import com.millennialmedia.pyro.model.LineIndex;
 import com.millennialmedia.pyro.model.RobotModel;
 import com.millennialmedia.pyro.model.Step;
 import com.millennialmedia.pyro.model.StepSegment;
@@ -23,22 +26,31 @@ import com.millennialmedia.pyro.ui.editor.RobotFrameworkEditor;
 /**
  * The scanner responsible for syntax-coloring of Robot source files.
  * 
+ * Only the requested range is scanned. The scan starts from the first model
+ * line overlapping the range, found through the model's line index, and ends
+ * with the last line overlapping it, so repairing a single line doesn't walk
+ * the rest of the document. Tokens are shared per color, and pending tokens
+ * are kept in reusable arrays.
+ * 
  * @author spaxton
  */
 public class Scanner implements ITokenScanner {
-	class TokenWrapper {
-		IToken token;
-		int offset;
-		int length;
-	}
+	private static final int INITIAL_BUFFER_SIZE = 32;
 
 	private RobotFrameworkEditor editor;
 	private ColorManager colorManager;
-	private IDocument document;
+	private Map<RGB, IToken> colorTokens = new HashMap<RGB, IToken>();
 	private Line modelLine;
-	private List<TokenWrapper> pendingTokens = new LinkedList<TokenWrapper>();
-	private TokenWrapper currentTokenWrapper;
-	private TokenWrapper lastParsedTokenWrapper;
+	private int rangeEnd;
+	private int lastTokenEnd;
+
+	// pending tokens, consumed from bufferIndex up to bufferSize
+	private IToken[] tokenBuffer = new IToken[INITIAL_BUFFER_SIZE];
+	private int[] offsetBuffer = new int[INITIAL_BUFFER_SIZE];
+	private int[] lengthBuffer = new int[INITIAL_BUFFER_SIZE];
+	private int bufferSize;
+	private int bufferIndex;
+	private int currentIndex;
 
 	public Scanner(RobotFrameworkEditor editor, ColorManager manager) {
 		this.editor = editor;
@@ -47,40 +59,46 @@ public class Scanner implements ITokenScanner {
 
 	@Override
 	public void setRange(IDocument document, int offset, int length) {
+		modelLine = null;
+		rangeEnd = offset + length;
+		lastTokenEnd = offset;
+		bufferSize = 0;
+		bufferIndex = 0;
+
 		RobotModel model = editor.getModel();
 		if (model != null) {
-			this.document = document;
-			modelLine = model.getFirstLine();
+			LineIndex lineIndex = model.getLineIndex();
+			modelLine = lineIndex != null ? lineIndex.getFirstLineEndingAfter(offset) : model.getFirstLine();
 		}
 	}
 
 	@Override
 	public IToken nextToken() {
-		while (pendingTokens.isEmpty()) {
+		while (bufferIndex == bufferSize) {
+			bufferIndex = 0;
+			bufferSize = 0;
 			fillPendingTokens();
 		}
-		currentTokenWrapper = pendingTokens.remove(0);
-		return currentTokenWrapper.token;
+		currentIndex = bufferIndex++;
+		return tokenBuffer[currentIndex];
 	}
 
 	@Override
 	public int getTokenOffset() {
-		return currentTokenWrapper.offset;
+		return offsetBuffer[currentIndex];
 	}
 
 	@Override
 	public int getTokenLength() {
-		return currentTokenWrapper.length;
+		return lengthBuffer[currentIndex];
 	}
 
 	private void fillPendingTokens() {
-		if (modelLine == null) {
-			// EOF
-			TokenWrapper wrapper = new TokenWrapper();
-			wrapper.token = Token.EOF;
-			wrapper.offset = document.getLength() - 1;
-			wrapper.length = 0;
-			pendingTokens.add(wrapper);
+		if (modelLine == null || modelLine.getLineOffset() >= rangeEnd) {
+			// end of the range, anything not covered by the model is left
+			// uncolored
+			addFillerTokenIfNecessary(rangeEnd);
+			appendToken(Token.EOF, rangeEnd, 0);
 			return;
 		}
 
@@ -90,16 +108,13 @@ public class Scanner implements ITokenScanner {
 
 		// now emit specific tokens
 		if (modelLine instanceof Table) {
-			addToken(new Token(new TextAttribute(colorManager.getColor(ColorDefaults.TABLE))), lineStartOffset,
-					((Table) modelLine).getLineLength());
+			addToken(getToken(ColorDefaults.TABLE), lineStartOffset, ((Table) modelLine).getLineLength());
 		} else if (modelLine instanceof TableItemDefinition) {
 			TableItemDefinition definition = (TableItemDefinition) modelLine;
 			if (definition.getItemType() == TableItemType.TESTCASE) {
-				addToken(new Token(new TextAttribute(colorManager.getColor(ColorDefaults.TESTCASE))), lineStartOffset,
-						definition.getNameLength());
+				addToken(getToken(ColorDefaults.TESTCASE), lineStartOffset, definition.getNameLength());
 			} else if (definition.getItemType() == TableItemType.KEYWORD) {
-				addToken(new Token(new TextAttribute(colorManager.getColor(ColorDefaults.KEYWORD_DEF))),
-						lineStartOffset, definition.getNameLength());
+				addToken(getToken(ColorDefaults.KEYWORD_DEF), lineStartOffset, definition.getNameLength());
 			}
 		} else if (modelLine instanceof Step) {
 			List<StepSegment> segments = ((Step) modelLine).getSegments();
@@ -109,8 +124,8 @@ public class Scanner implements ITokenScanner {
 
 				if (seg.getSegmentType() == SegmentType.COMMENT) {
 					// comments take up the rest of the row
-					addToken(new Token(new TextAttribute(colorManager.getColor(ColorDefaults.COMMENT))),
-							segmentStartOffset, modelLine.getLineLength() - seg.getOffsetInLine());
+					addToken(getToken(ColorDefaults.COMMENT), segmentStartOffset, modelLine.getLineLength()
+							- seg.getOffsetInLine());
 				} else {
 					RGB rgbColor = null;
 					switch (seg.getSegmentType()) {
@@ -146,8 +161,7 @@ public class Scanner implements ITokenScanner {
 						break;
 					}
 
-					addToken(new Token(new TextAttribute(colorManager.getColor(rgbColor))), segmentStartOffset, seg
-							.getValue().length());
+					addToken(getToken(rgbColor), segmentStartOffset, seg.getValue().length());
 				}
 			}
 		}
@@ -155,24 +169,44 @@ public class Scanner implements ITokenScanner {
 		modelLine = modelLine.getNextLine();
 	}
 
-	private void addFillerTokenIfNecessary(int newStartOffset) {
-		int previousEndOffset = 0;
-		if (lastParsedTokenWrapper != null) {
-			previousEndOffset = lastParsedTokenWrapper.offset + lastParsedTokenWrapper.length;
+	private IToken getToken(RGB rgb) {
+		IToken token = colorTokens.get(rgb);
+		if (token == null) {
+			token = new Token(new TextAttribute(colorManager.getColor(rgb)));
+			colorTokens.put(rgb, token);
 		}
-		if (previousEndOffset < newStartOffset) {
-			addToken(Token.UNDEFINED, previousEndOffset, newStartOffset - previousEndOffset);
+		return token;
+	}
+
+	private void addFillerTokenIfNecessary(int newStartOffset) {
+		if (lastTokenEnd < newStartOffset) {
+			addToken(Token.UNDEFINED, lastTokenEnd, newStartOffset - lastTokenEnd);
 		}
 	}
 
+	/**
+	 * Adds a token clipped to the unscanned part of the range, so the tokens
+	 * returned are contiguous and never extend outside the range.
+	 */
 	private void addToken(IToken token, int offset, int length) {
-		TokenWrapper wrapper = new TokenWrapper();
-		wrapper.token = token;
-		wrapper.length = length;
-		wrapper.offset = offset;
+		int start = Math.max(offset, lastTokenEnd);
+		int end = Math.min(offset + length, rangeEnd);
+		if (start < end) {
+			appendToken(token, start, end - start);
+			lastTokenEnd = end;
+		}
+	}
 
-		pendingTokens.add(wrapper);
-		lastParsedTokenWrapper = wrapper;
+	private void appendToken(IToken token, int offset, int length) {
+		if (bufferSize == tokenBuffer.length) {
+			tokenBuffer = Arrays.copyOf(tokenBuffer, bufferSize * 2);
+			offsetBuffer = Arrays.copyOf(offsetBuffer, bufferSize * 2);
+			lengthBuffer = Arrays.copyOf(lengthBuffer, bufferSize * 2);
+		}
+		tokenBuffer[bufferSize] = token;
+		offsetBuffer[bufferSize] = offset;
+		lengthBuffer[bufferSize] = length;
+		bufferSize++;
 	}
 
 }
@@ -0,0 +1,72 @@
+package com.millennialmedia.pyro.internal;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Plugin;
+import org.eclipse.core.runtime.Status;
+import org.osgi.framework.BundleContext;
+
+import com.millennialmedia.pyro.internal.cache.SummaryCache;
+import com.millennialmedia.pyro.internal.cache.SummaryCacheSaveJob;
+import com.millennialmedia.pyro.model.ModelManager;
+
+/**
+ * Core plugin activator. It owns the persistent model summary cache, which
+ * lives in the plugin's state location and is saved every few minutes in the
+ * background as well as when the plugin stops.
+ * 
+ * @author spaxton
+ */
+public class PyroPlugin extends Plugin {
+	public static final String PLUGIN_ID = "com.millennialmedia.pyro";
+
+	private static final String SUMMARY_CACHE_FILE = "summaries.bin";
+
+	private static PyroPlugin plugin;
+	private SummaryCache summaryCache;
+	private SummaryCacheSaveJob summaryCacheSaveJob;
+
+	public PyroPlugin() {
+		super();
+		plugin = this;
+	}
+
+	public static PyroPlugin getDefault() {
+		return plugin;
+	}
+
+	/**
+	 * Logs an error to the plugin's log. Outside of a running platform (ex. in
+	 * unit tests) there's no log, and the error is dropped.
+	 */
+	public static void logError(String message, Throwable exception) {
+		PyroPlugin currentPlugin = plugin;
+		if (currentPlugin != null) {
+			currentPlugin.getLog().log(new Status(IStatus.ERROR, PLUGIN_ID, message, exception));
+		}
+	}
+
+	public synchronized SummaryCache getSummaryCache() {
+		if (summaryCache == null) {
+			summaryCache = new SummaryCache(getStateLocation().append(SUMMARY_CACHE_FILE).toFile());
+			summaryCacheSaveJob = new SummaryCacheSaveJob(summaryCache);
+			summaryCacheSaveJob.start();
+		}
+		return summaryCache;
+	}
+
+	@Override
+	public void stop(BundleContext context) throws Exception {
+		ModelManager.shutdown();
+		synchronized (this) {
+			if (summaryCacheSaveJob != null) {
+				summaryCacheSaveJob.stop();
+			}
+			if (summaryCache != null) {
+				summaryCache.save();
+			}
+		}
+		plugin = null;
+		super.stop(context);
+	}
+
+}
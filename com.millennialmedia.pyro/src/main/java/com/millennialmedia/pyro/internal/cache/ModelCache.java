@@ -0,0 +1,280 @@
+package com.millennialmedia.pyro.internal.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.FutureTask;
+
+import com.millennialmedia.pyro.model.Line;
+import com.millennialmedia.pyro.model.ModelCacheStatistics;
+import com.millennialmedia.pyro.model.RobotModel;
+import com.millennialmedia.pyro.model.Step;
+
+/**
+ * In-memory cache of parsed models keyed by workspace path. The cache is
+ * bounded by an estimate of the heap its models retain, and the least-recently
+ * used models are evicted once that estimate exceeds the budget. Paths can be
+ * pinned (ex. while the file is open in an editor) so that their models are
+ * never evicted.
+ *
+ * Each path maps to the task that loads it, so concurrent requests for the
+ * same path all wait on a single load. Loads run outside of the cache's lock.
+ * A fork/join worker (ex. one parsing files in bulk) that waits on another
+ * thread's load tells its pool, so the pool can keep its other tasks running.
+ *
+ * @author spaxton
+ */
+public class ModelCache {
+	// rough per-object costs used to estimate a model's retained heap,
+	// including its share of the pooled segment values
+	private static final long MODEL_WEIGHT = 256;
+	private static final long LINE_WEIGHT = 80;
+	private static final long SEGMENT_WEIGHT = 32;
+
+	private static class Entry {
+		FutureTask<RobotModel> loadTask;
+		// zero until the load completes
+		long weight;
+
+		Entry(FutureTask<RobotModel> loadTask) {
+			this.loadTask = loadTask;
+		}
+	}
+
+	/**
+	 * Waits for another thread's load, letting a fork/join pool compensate for
+	 * the blocked worker.
+	 */
+	private static class LoadBlocker implements ForkJoinPool.ManagedBlocker {
+		private FutureTask<RobotModel> loadTask;
+
+		LoadBlocker(FutureTask<RobotModel> loadTask) {
+			this.loadTask = loadTask;
+		}
+
+		@Override
+		public boolean block() throws InterruptedException {
+			try {
+				loadTask.get();
+			} catch (ExecutionException e) {
+				// reported when the caller gets the result
+			}
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return loadTask.isDone();
+		}
+	}
+
+	// iterates from least- to most-recently used
+	private LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private Map<String, Integer> pinCounts = new HashMap<String, Integer>();
+	private long budget;
+	private long weight;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private long loadCount;
+	private long loadFailureCount;
+	private long totalLoadNanos;
+
+	/**
+	 * @param budget
+	 *            the estimated number of bytes the cached models may retain
+	 */
+	public ModelCache(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Returns the model cached for the given path, loading it with the given
+	 * loader if it isn't cached. If the path is already being loaded by another
+	 * thread, the caller waits for and shares that result.
+	 *
+	 * @return the model, or null if the load failed or the calling thread was
+	 *         interrupted. Failures aren't cached.
+	 */
+	public RobotModel get(String path, Callable<RobotModel> loader) {
+		Entry entry;
+		boolean load = false;
+		synchronized (this) {
+			entry = entries.get(path);
+			if (entry == null) {
+				entry = new Entry(new FutureTask<RobotModel>(loader));
+				entries.put(path, entry);
+				missCount++;
+				load = true;
+			} else {
+				hitCount++;
+			}
+		}
+
+		if (load) {
+			long start = System.nanoTime();
+			entry.loadTask.run();
+			long loadNanos = System.nanoTime() - start;
+			long entryWeight = 0;
+			try {
+				RobotModel model = entry.loadTask.get();
+				if (model != null) {
+					entryWeight = estimateWeight(model);
+				}
+			} catch (InterruptedException e) {
+				// can't happen, the task is done
+			} catch (ExecutionException e) {
+				// recorded below
+			}
+			synchronized (this) {
+				totalLoadNanos += loadNanos;
+				if (entryWeight > 0) {
+					loadCount++;
+					if (entries.get(path) == entry) {
+						entry.weight = entryWeight;
+						weight += entryWeight;
+						evict();
+					}
+				} else {
+					// don't cache the failure, a later request can try again
+					loadFailureCount++;
+					if (entries.get(path) == entry) {
+						entries.remove(path);
+					}
+				}
+			}
+		}
+
+		try {
+			if (!entry.loadTask.isDone() && ForkJoinTask.inForkJoinPool()) {
+				ForkJoinPool.managedBlock(new LoadBlocker(entry.loadTask));
+			}
+			return entry.loadTask.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// the loading thread has discarded the entry
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the model cached for the given path if it's already loaded,
+	 * without loading it. This doesn't count as a hit or miss.
+	 */
+	public synchronized RobotModel getIfLoaded(String path) {
+		Entry entry = entries.get(path);
+		if (entry != null && entry.weight > 0) {
+			try {
+				return entry.loadTask.get();
+			} catch (InterruptedException e) {
+				// can't happen, the task is done
+			} catch (ExecutionException e) {
+				// a failed load is never given a weight
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Discards the model cached for the given path. Threads already waiting on
+	 * its load still receive it.
+	 */
+	public synchronized void remove(String path) {
+		Entry entry = entries.remove(path);
+		if (entry != null) {
+			weight -= entry.weight;
+		}
+	}
+
+	/**
+	 * Discards the models cached for the given paths.
+	 *
+	 * @return the paths that had a model cached or loading
+	 */
+	public synchronized Set<String> removeAll(Collection<String> paths) {
+		Set<String> removedPaths = new HashSet<String>();
+		for (String path : paths) {
+			Entry entry = entries.remove(path);
+			if (entry != null) {
+				weight -= entry.weight;
+				removedPaths.add(path);
+			}
+		}
+		return removedPaths;
+	}
+
+	/**
+	 * Keeps the model for the given path from being evicted until a matching
+	 * call to unpin(). Pins are counted.
+	 */
+	public synchronized void pin(String path) {
+		Integer pinCount = pinCounts.get(path);
+		pinCounts.put(path, pinCount == null ? 1 : pinCount + 1);
+	}
+
+	public synchronized void unpin(String path) {
+		Integer pinCount = pinCounts.get(path);
+		if (pinCount == null) {
+			return;
+		}
+		if (pinCount > 1) {
+			pinCounts.put(path, pinCount - 1);
+		} else {
+			pinCounts.remove(path);
+			evict();
+		}
+	}
+
+	public synchronized long getBudget() {
+		return budget;
+	}
+
+	public synchronized void setBudget(long budget) {
+		this.budget = budget;
+		evict();
+	}
+
+	public synchronized ModelCacheStatistics getStatistics() {
+		return new ModelCacheStatistics(hitCount, missCount, evictionCount, loadCount, loadFailureCount,
+				totalLoadNanos, entries.size(), weight, budget);
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (weight > budget && iterator.hasNext()) {
+			Map.Entry<String, Entry> mapEntry = iterator.next();
+			// models still loading have no weight yet
+			if (mapEntry.getValue().weight > 0 && !pinCounts.containsKey(mapEntry.getKey())) {
+				iterator.remove();
+				weight -= mapEntry.getValue().weight;
+				evictionCount++;
+			}
+		}
+	}
+
+	/**
+	 * Estimates the heap retained by the given model from its line and segment
+	 * counts.
+	 */
+	public static long estimateWeight(RobotModel model) {
+		long modelWeight = MODEL_WEIGHT;
+		for (Line line = model.getFirstLine(); line != null; line = line.getNextLine()) {
+			modelWeight += LINE_WEIGHT;
+			if (line instanceof Step) {
+				modelWeight += SEGMENT_WEIGHT * ((Step) line).getSegments().size();
+			}
+		}
+		return modelWeight;
+	}
+
+}
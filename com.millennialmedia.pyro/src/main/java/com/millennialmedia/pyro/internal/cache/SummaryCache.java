@@ -0,0 +1,391 @@
+package com.millennialmedia.pyro.internal.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.millennialmedia.pyro.model.ModelSummary;
+import com.millennialmedia.pyro.model.Table;
+import com.millennialmedia.pyro.model.Table.TableType;
+import com.millennialmedia.pyro.model.TableItemDefinition;
+
+/**
+ * Persistent store of model summaries keyed by workspace path. Each entry
+ * records the modification stamp and content hash of the file it was built
+ * from, and is only served while one of them still matches the file.
+ *
+ * The cache file is read into memory in one go when loaded, rather than
+ * mapped, so it can still be replaced while it's in use (which fails on
+ * Windows for a mapped file). Only the paths and stamps are decoded up front,
+ * and each summary is decoded the first time it's requested, or written back
+ * as is if it never was. A missing, outdated or corrupt cache file is simply
+ * treated as empty.
+ *
+ * The cache holds at most a fixed number of entries, dropping the least
+ * recently used ones, and entries are kept in that order in the cache file.
+ *
+ * @author spaxton
+ */
+public class SummaryCache {
+	private static final int MAGIC = 0x50595253;
+	private static final int VERSION = 1;
+	private static final int MAX_ENTRIES = 10000;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static class Entry {
+		private long modificationStamp;
+		private long contentHash;
+		private ModelSummary summary;
+		// position of the still-encoded summary within the loaded cache file
+		private int encodedPosition = -1;
+		private int encodedLength;
+
+		private Entry copy() {
+			Entry copy = new Entry();
+			copy.modificationStamp = modificationStamp;
+			copy.contentHash = contentHash;
+			copy.summary = summary;
+			copy.encodedPosition = encodedPosition;
+			copy.encodedLength = encodedLength;
+			return copy;
+		}
+	}
+
+	private File cacheFile;
+	private ByteBuffer loadedBuffer;
+	// iterates from least- to most-recently used
+	private Map<String, Entry> entries = createEntryMap();
+	private boolean dirty;
+	private Object saveLock = new Object();
+
+	/**
+	 * @param cacheFile
+	 *            the file the cache is loaded from and saved to, or null for a
+	 *            cache that's only held in memory
+	 */
+	public SummaryCache(File cacheFile) {
+		this.cacheFile = cacheFile;
+		if (cacheFile != null) {
+			load();
+		}
+	}
+
+	/**
+	 * Returns the cached summary for the given path if it was built from a
+	 * file with the given modification stamp.
+	 */
+	public synchronized ModelSummary get(String path, long modificationStamp) {
+		Entry entry = entries.get(path);
+		if (entry == null || entry.modificationStamp != modificationStamp) {
+			return null;
+		}
+		return decode(path, entry);
+	}
+
+	/**
+	 * Returns the cached summary for the given path if it was built from a
+	 * file with either the given modification stamp or the given content hash.
+	 * A file that was touched without changing its contents keeps its summary.
+	 */
+	public synchronized ModelSummary get(String path, long modificationStamp, long contentHash) {
+		Entry entry = entries.get(path);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.modificationStamp != modificationStamp) {
+			if (entry.contentHash != contentHash) {
+				return null;
+			}
+			entry.modificationStamp = modificationStamp;
+			dirty = true;
+		}
+		return decode(path, entry);
+	}
+
+	public synchronized void put(String path, long modificationStamp, long contentHash, ModelSummary summary) {
+		Entry entry = new Entry();
+		entry.modificationStamp = modificationStamp;
+		entry.contentHash = contentHash;
+		entry.summary = summary;
+		entries.put(path, entry);
+		dirty = true;
+	}
+
+	public synchronized void remove(String path) {
+		if (entries.remove(path) != null) {
+			dirty = true;
+		}
+	}
+
+	/**
+	 * @return the paths of all cached summaries, ex. for pruning the entries
+	 *         of files that no longer exist
+	 */
+	public synchronized List<String> getPaths() {
+		return new ArrayList<String>(entries.keySet());
+	}
+
+	/**
+	 * Writes the cache back to its file if anything has changed since it was
+	 * last loaded or saved. The entries are copied under the lock and written
+	 * outside of it, so lookups don't wait on the disk. The cache is
+	 * best-effort, so any failure just leaves the previous file in place.
+	 */
+	public void save() {
+		synchronized (saveLock) {
+			List<String> paths;
+			List<Entry> snapshot = new ArrayList<Entry>();
+			ByteBuffer buffer;
+			synchronized (this) {
+				if (!dirty || cacheFile == null) {
+					return;
+				}
+				paths = new ArrayList<String>(entries.keySet());
+				for (Entry entry : entries.values()) {
+					snapshot.add(entry.copy());
+				}
+				buffer = loadedBuffer;
+				dirty = false;
+			}
+
+			if (!write(paths, snapshot, buffer)) {
+				synchronized (this) {
+					dirty = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hashes file contents for comparison against the hash a summary was built
+	 * from.
+	 */
+	public static long hash(String contents) {
+		CRC32 crc = new CRC32();
+		crc.update(contents.getBytes(UTF8));
+		return crc.getValue();
+	}
+
+	private boolean write(List<String> paths, List<Entry> snapshot, ByteBuffer buffer) {
+		File tempFile = new File(cacheFile.getPath() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			cacheFile.getParentFile().mkdirs();
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(snapshot.size());
+			ByteArrayOutputStream summaryBytes = new ByteArrayOutputStream();
+			for (int i = 0; i < snapshot.size(); i++) {
+				Entry entry = snapshot.get(i);
+				writeString(out, paths.get(i));
+				out.writeLong(entry.modificationStamp);
+				out.writeLong(entry.contentHash);
+				if (entry.summary != null) {
+					summaryBytes.reset();
+					writeSummary(new DataOutputStream(summaryBytes), entry.summary);
+					out.writeInt(summaryBytes.size());
+					summaryBytes.writeTo(out);
+				} else {
+					// never requested, so the loaded bytes are copied as they are
+					out.writeInt(entry.encodedLength);
+					out.write(buffer.array(), buffer.arrayOffset() + entry.encodedPosition, entry.encodedLength);
+				}
+			}
+			out.close();
+			out = null;
+
+			Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			return true;
+		} catch (IOException e) {
+			// leave the previous cache file in place
+			return false;
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+				}
+			}
+			tempFile.delete();
+		}
+	}
+
+	private void load() {
+		if (!cacheFile.isFile()) {
+			return;
+		}
+
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(cacheFile.toPath()));
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				return;
+			}
+
+			Map<String, Entry> loadedEntries = createEntryMap();
+			int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				String path = readString(buffer);
+				Entry entry = new Entry();
+				entry.modificationStamp = buffer.getLong();
+				entry.contentHash = buffer.getLong();
+				int length = buffer.getInt();
+				entry.encodedPosition = buffer.position();
+				entry.encodedLength = length;
+				buffer.position(entry.encodedPosition + length);
+				loadedEntries.put(path, entry);
+			}
+			entries = loadedEntries;
+			loadedBuffer = buffer;
+		} catch (IOException e) {
+			// unreadable cache, start over
+		} catch (RuntimeException e) {
+			// truncated or corrupt cache, start over
+		}
+	}
+
+	private static Map<String, Entry> createEntryMap() {
+		return new LinkedHashMap<String, SummaryCache.Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, SummaryCache.Entry> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+		};
+	}
+
+	private ModelSummary decode(String path, Entry entry) {
+		ModelSummary summary = decodeEntry(entry);
+		if (summary == null) {
+			entries.remove(path);
+			dirty = true;
+		}
+		return summary;
+	}
+
+	private ModelSummary decodeEntry(Entry entry) {
+		if (entry.summary == null && entry.encodedPosition >= 0 && loadedBuffer != null) {
+			try {
+				ByteBuffer buffer = loadedBuffer.duplicate();
+				buffer.position(entry.encodedPosition);
+				entry.summary = readSummary(buffer);
+			} catch (RuntimeException e) {
+				// corrupt entry, which the caller discards
+			}
+			entry.encodedPosition = -1;
+		}
+		return entry.summary;
+	}
+
+	private void writeSummary(DataOutputStream out, ModelSummary summary) throws IOException {
+		out.writeInt(summary.getKeywords().size());
+		for (TableItemDefinition keyword : summary.getKeywords().values()) {
+			writeString(out, keyword.getName());
+			out.writeInt(keyword.getNameLength());
+			out.writeInt(keyword.getLineOffset());
+			out.writeInt(keyword.getLineLength());
+		}
+		writeStrings(out, summary.getVariableNames());
+		writeStrings(out, summary.getResourceFilePaths());
+		writeStrings(out, summary.getVariableFilePaths());
+		writeStrings(out, summary.getLibraries());
+		out.writeInt(summary.getLibraryNameToPathMap().size());
+		for (Map.Entry<String, String> entry : summary.getLibraryNameToPathMap().entrySet()) {
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue());
+		}
+		out.writeInt(summary.getTables().size());
+		for (Table table : summary.getTables()) {
+			out.writeInt(table.getTableType() == null ? -1 : table.getTableType().ordinal());
+			writeString(out, table.getTableName());
+			out.writeInt(table.getLineOffset());
+			out.writeInt(table.getLineLength());
+		}
+	}
+
+	private ModelSummary readSummary(ByteBuffer buffer) {
+		ModelSummary summary = new ModelSummary();
+		int keywordCount = buffer.getInt();
+		for (int i = 0; i < keywordCount; i++) {
+			String name = readString(buffer);
+			int nameLength = buffer.getInt();
+			int lineOffset = buffer.getInt();
+			int lineLength = buffer.getInt();
+			summary.getKeywords().put(name, ModelSummary.createKeyword(name, nameLength, lineOffset, lineLength));
+		}
+		summary.getVariableNames().addAll(readStrings(buffer));
+		summary.getResourceFilePaths().addAll(readStrings(buffer));
+		summary.getVariableFilePaths().addAll(readStrings(buffer));
+		summary.getLibraries().addAll(readStrings(buffer));
+		int libraryCount = buffer.getInt();
+		for (int i = 0; i < libraryCount; i++) {
+			summary.getLibraryNameToPathMap().put(readString(buffer), readString(buffer));
+		}
+		int tableCount = buffer.getInt();
+		for (int i = 0; i < tableCount; i++) {
+			int tableType = buffer.getInt();
+			String tableName = readString(buffer);
+			int lineOffset = buffer.getInt();
+			int lineLength = buffer.getInt();
+			summary.getTables().add(
+					ModelSummary.createTable(tableType < 0 ? null : TableType.values()[tableType], tableName,
+							lineOffset, lineLength));
+		}
+		return summary;
+	}
+
+	private void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+		out.writeInt(strings.size());
+		for (String string : strings) {
+			writeString(out, string);
+		}
+	}
+
+	private List<String> readStrings(ByteBuffer buffer) {
+		int count = buffer.getInt();
+		if (count < 0 || count > buffer.remaining() / 4) {
+			throw new IllegalStateException("Corrupt string list");
+		}
+		List<String> strings = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			strings.add(readString(buffer));
+		}
+		return strings;
+	}
+
+	private void writeString(DataOutputStream out, String string) throws IOException {
+		if (string == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = string.getBytes(UTF8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		} else if (length > buffer.remaining()) {
+			throw new IllegalStateException("Corrupt string");
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+}
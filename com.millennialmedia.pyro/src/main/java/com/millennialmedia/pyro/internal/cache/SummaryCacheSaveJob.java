@@ -0,0 +1,93 @@
+package com.millennialmedia.pyro.internal.cache;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Background job that saves the summary cache every few minutes while it has
+ * changes, so a crash only loses the summaries built since the last save
+ * rather than the whole session. Before saving, it drops the summaries of
+ * files that no longer exist (ex. files deleted while Eclipse wasn't running,
+ * which no resource delta ever reports).
+ *
+ * @author spaxton
+ */
+public class SummaryCacheSaveJob extends Job {
+	private static final long SAVE_INTERVAL_MILLIS = 5 * 60 * 1000;
+
+	private SummaryCache cache;
+	private volatile boolean stopped;
+
+	public SummaryCacheSaveJob(SummaryCache cache) {
+		super("Saving Robot file summaries");
+		this.cache = cache;
+		setSystem(true);
+		setPriority(DECORATE);
+	}
+
+	/**
+	 * Schedules the first save after the usual interval.
+	 */
+	public void start() {
+		schedule(SAVE_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * Stops the job for good and waits for a save that's already running, so
+	 * nothing is written once the plugin has stopped.
+	 */
+	public void stop() throws InterruptedException {
+		stopped = true;
+		cancel();
+		join();
+	}
+
+	@Override
+	public boolean shouldSchedule() {
+		return !stopped;
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		pruneRemovedFiles();
+		if (monitor.isCanceled()) {
+			return Status.CANCEL_STATUS;
+		}
+		cache.save();
+		if (monitor.isCanceled()) {
+			return Status.CANCEL_STATUS;
+		}
+		schedule(SAVE_INTERVAL_MILLIS);
+		return Status.OK_STATUS;
+	}
+
+	private void pruneRemovedFiles() {
+		IWorkspaceRoot root;
+		try {
+			root = ResourcesPlugin.getWorkspace().getRoot();
+		} catch (IllegalStateException e) {
+			// the workspace is already closed, nothing to check against
+			return;
+		}
+		for (String path : cache.getPaths()) {
+			Path filePath = new Path(path);
+			if (filePath.segmentCount() == 0) {
+				cache.remove(path);
+				continue;
+			}
+			// files of closed projects can't be checked, so they're kept until
+			// the project is opened or deleted
+			IProject project = root.getProject(filePath.segment(0));
+			if (!project.exists() || (project.isOpen() && !root.exists(filePath))) {
+				cache.remove(path);
+			}
+		}
+	}
+
+}
@@ -1,71 +1,102 @@
 package com.millennialmedia.pyro.internal.parser;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Base class for readers which perform the tokenizing of a raw file into a
  * sequence of rows and cells.
  * 
+ * The buffer is scanned a single time. Row boundaries and trailing whitespace
+ * are found here, and subclasses walk each row's characters to find the cells,
+ * so no intermediate copies of the rows are ever created. Cell contents are
+ * pooled, so each distinct value in the file is a single String.
+ * 
  * @author spaxton
  */
 public abstract class AbstractReader {
-	private Map<Row, Integer> lineOffsetsMap = new HashMap<Row, Integer>();
-	private Map<Row, Integer> lineLengthMap = new HashMap<Row, Integer>();
+	protected static final char LINEFEED = '\n';
+	protected static final char TAB = '\t';
+	protected static final char SPACE = ' ';
+	protected static final char NBSP = '\u00A0';
 
-	public void reset() {
-		lineOffsetsMap.clear();
-		lineLengthMap.clear();
-	}
+	private StringPool stringPool = new StringPool();
 
 	public List<Row> getRows(String buffer) {
-		int rowOffset = 0;
 		List<Row> rows = new ArrayList<Row>();
-		String[] rawRows = splitIntoRows(buffer);
-		for (int i=0;i<rawRows.length;i++) {
-			String rawRow = rawRows[i];
-			// line length in the model includes the terminating linefeed except for the last row (which may not have one)
-			int lineLength = rawRow.length() + ((i == rawRows.length - 1) ? 0 : 1);
-			String processedRow = processRow(rawRow);
-			List<Cell> cells = splitRow(processedRow);
-			Row newRow = new Row();
-			newRow.getCells().addAll(cells);
-			rows.add(newRow);
-			lineOffsetsMap.put(newRow, rowOffset);
-			lineLengthMap.put(newRow, lineLength);
-			rowOffset += lineLength;
+
+		// trailing linefeeds don't produce any rows, though an empty buffer is
+		// still a single empty row
+		int bufferEnd = buffer.length();
+		while (bufferEnd > 0 && buffer.charAt(bufferEnd - 1) == LINEFEED) {
+			bufferEnd--;
+		}
+		if (bufferEnd == 0 && buffer.length() > 0) {
+			return rows;
 		}
 
-		return rows;
-	};
+		int rowStart = 0;
+		boolean lastRow = false;
+		while (!lastRow) {
+			int lineEnd = buffer.indexOf(LINEFEED, rowStart);
+			if (lineEnd < 0 || lineEnd >= bufferEnd) {
+				lineEnd = bufferEnd;
+				lastRow = true;
+			}
 
-	public int getOffset(Row row) {
-		return lineOffsetsMap.get(row);
-	}
+			// strip trailing whitespace (including non-breaking spaces)
+			int rowEnd = lineEnd;
+			while (rowEnd > rowStart && isWhitespace(buffer.charAt(rowEnd - 1))) {
+				rowEnd--;
+			}
 
-	public int getLength(Row row) {
-		return lineLengthMap.get(row);
-	}
+			Row row = new Row();
+			row.setOffset(rowStart);
+			// line length in the model includes the terminating linefeed except
+			// for the last row (which may not have one)
+			row.setLength(lineEnd - rowStart + (lastRow ? 0 : 1));
+			splitRow(buffer, rowStart, rowEnd, row.getCells());
+			rows.add(row);
 
-	protected String[] splitIntoRows(String buffer) {
-		return buffer.split("\n");
-	};
+			rowStart = lineEnd + 1;
+		}
 
-	private String processRow(String row) {
-		// replace any non-breaking spaces and strip trailing whitespace
-		return rstrip(row.replace("\u00A0", " "));
+		return rows;
 	}
 
-	private String rstrip(String src) {
-		int i = src.length() - 1;
-		while (i >= 0 && Character.isWhitespace(src.charAt(i))) {
-			i--;
+	/**
+	 * Splits the characters of a single row into cells. Trailing whitespace
+	 * has already been excluded from the given range. Cell offsets are
+	 * relative to the start of the row.
+	 */
+	protected abstract void splitRow(String buffer, int rowStart, int rowEnd, List<Cell> cells);
+
+	protected Cell createCell(String buffer, int rowStart, int cellStart, int cellEnd) {
+		Cell newCell = new Cell();
+		newCell.setOffsetInRow(cellStart - rowStart);
+		// non-breaking spaces are treated as regular spaces
+		boolean hasNbsp = false;
+		for (int i = cellStart; i < cellEnd && !hasNbsp; i++) {
+			hasNbsp = buffer.charAt(i) == NBSP;
 		}
-		return src.substring(0, i + 1);
+		newCell.setParsedContents(hasNbsp ? intern(buffer.substring(cellStart, cellEnd).replace(NBSP, SPACE))
+				: stringPool.get(buffer, cellStart, cellEnd));
+		return newCell;
+	}
+
+	/**
+	 * Returns the pooled instance of the given cell contents.
+	 */
+	protected String intern(String contents) {
+		return stringPool.get(contents);
 	}
 
-	protected abstract List<Cell> splitRow(String row);
+	protected static boolean isSpace(char c) {
+		return c == SPACE || c == NBSP;
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == NBSP || Character.isWhitespace(c);
+	}
 
 }
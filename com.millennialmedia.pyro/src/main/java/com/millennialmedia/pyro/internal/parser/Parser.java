@@ -6,11 +6,14 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 
 import com.millennialmedia.pyro.internal.parser.populator.KeywordTablePopulator;
 import com.millennialmedia.pyro.internal.parser.populator.SettingTablePopulator;
@@ -20,8 +23,12 @@ import com.millennialmedia.pyro.internal.parser.populator.UnknownTablePopulator;
 import com.millennialmedia.pyro.internal.parser.populator.VariableTablePopulator;
 import com.millennialmedia.pyro.internal.parser.postprocessor.ModelPostProcessorRegistryReader;
 import com.millennialmedia.pyro.model.Line;
+import com.millennialmedia.pyro.model.LineIndex;
 import com.millennialmedia.pyro.model.RobotModel;
+import com.millennialmedia.pyro.model.Step;
 import com.millennialmedia.pyro.model.Table;
+import com.millennialmedia.pyro.model.Table.TableType;
+import com.millennialmedia.pyro.model.TableItemDefinition;
 import com.millennialmedia.pyro.model.util.AbstractModelPostProcessor;
 
 /**
@@ -34,30 +41,53 @@ import com.millennialmedia.pyro.model.util.AbstractModelPostProcessor;
  * This class is internal and not exposed beyond the core plugin. Client access
  * to the parsing functionality is entirely through the ModelManager.
  * 
+ * Separate parser instances may run concurrently. All per-parse state lives in
+ * populators created for that parse, and the shared post-processors are
+ * required to be stateless.
+ * 
  * @author spaxton
  */
 public final class Parser {
+	// each parse creates its own populators, since they track the state of
+	// the table being populated
 	private enum TableTypeEnum {
-		UNKNOWN(new UnknownTablePopulator()), 
-		TESTCASE(new TestCaseTablePopulator()), 
-		KEYWORD(new KeywordTablePopulator()), 
-		SETTING(new SettingTablePopulator()), 
-		VARIABLE(new VariableTablePopulator());
-
-		private AbstractTablePopulator populator;
-
-		TableTypeEnum(AbstractTablePopulator populator) {
-			this.populator = populator;
-		}
+		UNKNOWN {
+			@Override
+			AbstractTablePopulator createPopulator() {
+				return new UnknownTablePopulator();
+			}
+		},
+		TESTCASE {
+			@Override
+			AbstractTablePopulator createPopulator() {
+				return new TestCaseTablePopulator();
+			}
+		},
+		KEYWORD {
+			@Override
+			AbstractTablePopulator createPopulator() {
+				return new KeywordTablePopulator();
+			}
+		},
+		SETTING {
+			@Override
+			AbstractTablePopulator createPopulator() {
+				return new SettingTablePopulator();
+			}
+		},
+		VARIABLE {
+			@Override
+			AbstractTablePopulator createPopulator() {
+				return new VariableTablePopulator();
+			}
+		};
 
-		public AbstractTablePopulator getPopulator() {
-			return populator;
-		}
+		abstract AbstractTablePopulator createPopulator();
 	}
 
 	// set up the map of all allowable table names to the associated table
 	// populators
-	private static Map<String, TableTypeEnum> tableMappings = new HashMap<String, TableTypeEnum>();
+	private static final Map<String, TableTypeEnum> tableMappings = new HashMap<String, TableTypeEnum>();
 	static {
 		tableMappings.put("Test Case", TableTypeEnum.TESTCASE);
 		tableMappings.put("Test Cases", TableTypeEnum.TESTCASE);
@@ -87,23 +117,223 @@ public final class Parser {
 	}
 
 	public RobotModel parse(String buffer) {
+		return parse(buffer, null);
+	}
+
+	/**
+	 * Parses the given buffer, giving up as soon as the monitor is canceled.
+	 * 
+	 * @param monitor
+	 *            checked for cancellation between rows, may be null
+	 * @return the new model, or null if the parse was canceled
+	 */
+	public RobotModel parse(String buffer, IProgressMonitor monitor) {
 		RobotModel model = new RobotModel();
 		try {
-			getReader().reset();
 			List<Row> rows = getReader().getRows(buffer);
-			populateTables(model, rows);
+			populateTables(model, rows, monitor);
+			if (monitor != null && monitor.isCanceled()) {
+				return null;
+			}
 			postProcess(model);
+			model.setLineIndex(new LineIndex(model.getFirstLine()));
+		} catch (OperationCanceledException e) {
+			return null;
 		} catch (Exception e) {
 		}
 		return model;
 	}
 
-	private void populateTables(RobotModel model, List<Row> rows) {
+	/**
+	 * Builds the model for a document change by re-parsing only the testcase
+	 * or keyword definition(s) touched by the change. The given model isn't
+	 * modified. The new model is spliced together from the re-parsed lines
+	 * and copies of the given model's other lines, which share their contents
+	 * with the originals and have their offsets shifted past the change. The
+	 * post-processors are only run against the re-parsed lines.
+	 * 
+	 * Null is returned whenever the change can't be handled locally (ex. edits
+	 * to settings/variables tables or anything that adds, removes or alters a
+	 * table header). Callers are expected to fall back to a full parse in that
+	 * case.
+	 * 
+	 * @param buffer
+	 *            the complete document contents after the change
+	 * @param offset
+	 *            document offset of the change
+	 * @param replacedLength
+	 *            number of characters removed at the offset
+	 * @param insertedLength
+	 *            number of characters inserted at the offset
+	 * @return the new model, or null if the change needs a full parse
+	 */
+	public RobotModel reparse(RobotModel model, String buffer, int offset, int replacedLength, int insertedLength) {
+		try {
+			return reparseTableItems(model, buffer, offset, offset + replacedLength, insertedLength - replacedLength);
+		} catch (Exception e) {
+		}
+		return null;
+	}
+
+	private RobotModel reparseTableItems(RobotModel model, String buffer, int changeStart, int changeEnd, int delta) {
+		// find the table item containing the start of the change
+		LineIndex lineIndex = model.getLineIndex();
+		int startIndex = lineIndex.getIndexAtOffset(changeStart);
+		Table containingTable = lineIndex.getTable(startIndex);
+		TableItemDefinition firstItem = lineIndex.getTableItem(startIndex);
+		if (firstItem == null || containingTable == null
+				|| (containingTable.getTableType() != TableType.TESTCASE && containingTable.getTableType() != TableType.KEYWORD)) {
+			return null;
+		}
+
+		// now find the first table or table item that begins after the damaged
+		// range. everything in between will be replaced.
+		Line boundaryLine = null;
+		for (int i = startIndex + 1; i < lineIndex.size(); i++) {
+			Line line = lineIndex.getLine(i);
+			if (line instanceof Table || line instanceof TableItemDefinition) {
+				if (line.getLineOffset() > changeEnd) {
+					boundaryLine = line;
+					break;
+				} else if (line instanceof Table) {
+					// the change touches a table header
+					return null;
+				}
+			}
+		}
+
+		int regionStart = firstItem.getLineOffset();
+		int regionEnd = (boundaryLine != null ? boundaryLine.getLineOffset() : buffer.length() - delta) + delta;
+		if (regionEnd < regionStart || regionEnd > buffer.length()) {
+			return null;
+		}
+
+		// re-tokenize just the affected region and run it through a fresh
+		// populator for the containing table
+		RobotModel newModel = new RobotModel();
+		String regionText = buffer.substring(regionStart, regionEnd);
+		List<Row> rows = getReader().getRows(regionText);
+		AbstractTablePopulator populator = containingTable.getTableType() == TableType.TESTCASE ? new TestCaseTablePopulator()
+				: new KeywordTablePopulator();
+		Table scratchTable = new Table();
+		populator.setModel(newModel);
+		populator.setTable(scratchTable);
+
+		Line regionHolder = Line.UNKNOWN();
+		Line lastRegionLine = regionHolder;
+		for (int i = 0; i < rows.size(); i++) {
+			Row row = rows.get(i);
+			if (isEmpty(row)) {
+				continue;
+			} else if (row.getCells().get(0).getParsedContents().startsWith("*")) {
+				// a table header was introduced
+				return null;
+			}
+
+			int rowOffset = regionStart + row.getOffset();
+			int rowLength = row.getLength();
+			if (i == rows.size() - 1 && boundaryLine != null) {
+				// the reader doesn't count a linefeed for the last row it sees,
+				// but within the document this row is followed by others
+				rowLength++;
+			}
+
+			Line newLine = populator.populate(row);
+			if (lastRegionLine == regionHolder && !(newLine instanceof TableItemDefinition)) {
+				// the region no longer starts a new item (ex. the name was
+				// removed), so the lines belong to the previous item
+				return null;
+			}
+			newLine.setLineOffset(rowOffset);
+			newLine.setLineLength(rowLength);
+			lastRegionLine.setNextLine(newLine);
+			while (lastRegionLine.getNextLine() != null) {
+				lastRegionLine = lastRegionLine.getNextLine();
+				lastRegionLine.setLineOffset(rowOffset);
+				lastRegionLine.setLineLength(rowLength);
+			}
+		}
+
+		// chain copies of the lines outside the region, shifting the ones after
+		// it. the new lines are linked in between once they're post-processed
+		Map<Line, Line> copies = new IdentityHashMap<Line, Line>();
+		Line firstLineHolder = Line.UNKNOWN();
+		Line lastLine = firstLineHolder;
+		Line lineBeforeRegion = null;
+		int shift = 0;
+		Line line = model.getFirstLine();
+		while (line != null) {
+			if (line == firstItem) {
+				lineBeforeRegion = lastLine;
+				line = boundaryLine;
+				shift = delta;
+				continue;
+			}
+			Line copy = line.copy();
+			copy.setLineOffset(line.getLineOffset() + shift);
+			copies.put(line, copy);
+			lastLine.setNextLine(copy);
+			lastLine = copy;
+			line = line.getNextLine();
+		}
+
+		// rebuild the tables and definitions from the copies, with the new
+		// lines in place of the replaced items
+		for (Table table : model.getTables()) {
+			Table tableCopy = (Table) copies.get(table);
+			boolean spliced = false;
+			for (Line tableLine : table.getTableLines()) {
+				Line lineCopy = copies.get(tableLine);
+				if (lineCopy != null) {
+					tableCopy.getTableLines().add(lineCopy);
+				} else if (tableLine == firstItem) {
+					tableCopy.getTableLines().addAll(scratchTable.getTableLines());
+					spliced = true;
+				}
+			}
+			if (table == containingTable && !spliced) {
+				tableCopy.getTableLines().addAll(scratchTable.getTableLines());
+			}
+			newModel.getTables().add(tableCopy);
+		}
+		for (Map.Entry<Line, Line> entry : copies.entrySet()) {
+			if (entry.getKey() instanceof TableItemDefinition) {
+				List<Step> stepCopies = ((TableItemDefinition) entry.getValue()).getSteps();
+				for (Step step : ((TableItemDefinition) entry.getKey()).getSteps()) {
+					stepCopies.add((Step) copies.get(step));
+				}
+			}
+		}
+
+		// post-process the new lines in isolation. the settings tables are
+		// included since they may affect the testcases (ex. Test Template)
+		RobotModel partialModel = new RobotModel();
+		for (Table table : newModel.getTables()) {
+			if (table.getTableType() == TableType.SETTING) {
+				partialModel.getTables().add(table);
+			}
+		}
+		partialModel.getTables().add(scratchTable);
+		partialModel.setFirstLine(regionHolder.getNextLine());
+		postProcess(partialModel);
+
+		// splice the new lines in ahead of the boundary
+		Line boundaryCopy = boundaryLine != null ? copies.get(boundaryLine) : null;
+		lastRegionLine.setNextLine(boundaryCopy);
+		lineBeforeRegion.setNextLine(regionHolder.getNextLine());
+		newModel.setFirstLine(firstLineHolder.getNextLine());
+		newModel.setLineIndex(new LineIndex(newModel.getFirstLine()));
+		return newModel;
+	}
+
+	private void populateTables(RobotModel model, List<Row> rows, IProgressMonitor monitor) {
 		Line firstLineHolder = Line.UNKNOWN();
 		Line previousLine = firstLineHolder;
 		AbstractTablePopulator populator = new UnknownTablePopulator();
 		for (Row row : rows) {
-			if (isEmpty(row)) {
+			if (monitor != null && monitor.isCanceled()) {
+				throw new OperationCanceledException();
+			} else if (isEmpty(row)) {
 				continue;
 			} else if (row.getCells().get(0).getParsedContents().startsWith("*")) {
 				// start of new table
@@ -112,27 +342,27 @@ public final class Parser {
 					// we found a leading * but it's not a valid table name - this is ignored
 					continue;
 				}
-				populator = tableType.getPopulator();
+				populator = tableType.createPopulator();
 				populator.setModel(model);
 				Table table = createTable(populator);
 				table.setTableName(row.getCells().get(0).getParsedContents());
-				table.setLineOffset(getReader().getOffset(row));
-				table.setLineLength(getReader().getLength(row));
+				table.setLineOffset(row.getOffset());
+				table.setLineLength(row.getLength());
 				model.getTables().add(table);
 				previousLine.setNextLine(table);
 				previousLine = table;
 			} else {
 				Line newLine = populator.populate(row);
-				newLine.setLineOffset(getReader().getOffset(row));
-				newLine.setLineLength(getReader().getLength(row));
+				newLine.setLineOffset(row.getOffset());
+				newLine.setLineLength(row.getLength());
 				previousLine.setNextLine(newLine);
 
 				// we may be returned a chain of lines - always advance to the
 				// last one
 				while (previousLine.getNextLine() != null) {
 					previousLine = previousLine.getNextLine();
-					previousLine.setLineOffset(getReader().getOffset(row));
-					previousLine.setLineLength(getReader().getLength(row));
+					previousLine.setLineOffset(row.getOffset());
+					previousLine.setLineLength(row.getLength());
 				}
 			}
 		}
@@ -147,35 +377,37 @@ public final class Parser {
 
 	private AbstractReader getReader() {
 		if (reader == null) {
-			String extension = file.getFileExtension();
-			if (extension != null) {
-				if ("tsv".equalsIgnoreCase(extension)) {
-					// tab-separated format
-					reader = new TsvReader();
-				} else if ("txt".equalsIgnoreCase(extension) || "robot".equalsIgnoreCase(extension)) {
-					// plain text format
-					reader = new TxtReader();
-				} else {
-					// TODO the markup-based file formats would be read here, if
-					// we ever support them
-					// safety fallback, a no-op reader that returns a truly
-					// empty model
-					reader = new AbstractReader() {
-						public List<Row> getRows(String buffer) {
-							return Collections.emptyList();
-						};
-
-						@Override
-						protected List<Cell> splitRow(String row) {
-							return null;
-						}
-					};
-				}
-			}
+			reader = createReader();
 		}
 		return reader;
 	}
 
+	private AbstractReader createReader() {
+		String extension = file.getFileExtension();
+		if (extension != null) {
+			if ("tsv".equalsIgnoreCase(extension)) {
+				// tab-separated format
+				return new TsvReader();
+			} else if ("txt".equalsIgnoreCase(extension) || "robot".equalsIgnoreCase(extension)) {
+				// plain text format
+				return new TxtReader();
+			}
+		}
+		// TODO the markup-based file formats would be read here, if
+		// we ever support them
+		// safety fallback, a no-op reader that returns a truly
+		// empty model
+		return new AbstractReader() {
+			public List<Row> getRows(String buffer) {
+				return Collections.emptyList();
+			};
+
+			@Override
+			protected void splitRow(String buffer, int rowStart, int rowEnd, List<Cell> cells) {
+			}
+		};
+	}
+
 	private TableTypeEnum determineTableType(Row row) {
 		StringBuilder header = new StringBuilder();
 		for (Cell cell : row.getCells()) {
@@ -223,7 +455,11 @@ public final class Parser {
 		return false;
 	}
 
-	private String getContents(IFile file) {
+	/**
+	 * Reads the contents of the given file, or returns null if it can't be
+	 * read.
+	 */
+	public static String getContents(IFile file) {
 		try {
 			InputStream input = file.getContents();
 			String contents = getContents(input);
@@ -235,7 +471,7 @@ public final class Parser {
 		return null;
 	}
 
-	private String getContents(InputStream in) throws IOException {
+	private static String getContents(InputStream in) throws IOException {
 		StringBuffer buffer = new StringBuffer();
 		BufferedReader reader = new BufferedReader(new InputStreamReader(in));
 		String line;
@@ -10,6 +10,8 @@ import java.util.List;
  */
 public class Row {
 	private List<Cell> cells = new ArrayList<Cell>();
+	private int offset;
+	private int length;
 
 	public List<Cell> getCells() {
 		return cells;
@@ -19,4 +21,20 @@ public class Row {
 		this.cells = cells;
 	}
 
+	public int getOffset() {
+		return offset;
+	}
+
+	public void setOffset(int offset) {
+		this.offset = offset;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public void setLength(int length) {
+		this.length = length;
+	}
+
 }
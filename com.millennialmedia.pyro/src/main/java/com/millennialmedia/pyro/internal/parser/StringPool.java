@@ -0,0 +1,70 @@
+package com.millennialmedia.pyro.internal.parser;
+
+/**
+ * A pool of the cell contents read from a file. Contents that repeat (ex.
+ * keyword calls, variables and setting names) share a single String instance
+ * across the model, and a repeat is recognized from the buffer's characters
+ * without creating a new String for it.
+ * 
+ * @author spaxton
+ */
+public class StringPool {
+	private String[] table = new String[256];
+	private int size;
+
+	/**
+	 * Returns the pooled String with the given range of the buffer's
+	 * characters, adding one if there isn't one yet.
+	 */
+	public String get(String buffer, int start, int end) {
+		// the same hash as String.hashCode(), which each pooled String caches
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + buffer.charAt(i);
+		}
+
+		int length = end - start;
+		int mask = table.length - 1;
+		for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+			String pooled = table[slot];
+			if (pooled == null) {
+				pooled = buffer.substring(start, end);
+				table[slot] = pooled;
+				if (++size * 2 > table.length) {
+					resize();
+				}
+				return pooled;
+			} else if (pooled.length() == length && pooled.hashCode() == hash
+					&& buffer.regionMatches(start, pooled, 0, length)) {
+				return pooled;
+			}
+		}
+	}
+
+	/**
+	 * Returns the pooled String equal to the given one.
+	 */
+	public String get(String value) {
+		return get(value, 0, value.length());
+	}
+
+	private void resize() {
+		String[] oldTable = table;
+		table = new String[oldTable.length * 2];
+		int mask = table.length - 1;
+		for (String pooled : oldTable) {
+			if (pooled != null) {
+				int slot = spread(pooled.hashCode()) & mask;
+				while (table[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = pooled;
+			}
+		}
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+}
@@ -1,9 +1,6 @@
 package com.millennialmedia.pyro.internal.parser;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.StringTokenizer;
 
 /**
  * Reader class for tab-separated file format.
@@ -11,39 +8,49 @@ import java.util.StringTokenizer;
  * @author spaxton
  */
 public class TsvReader extends AbstractReader {
-	private static final String TAB = "\t";
 
 	@Override
-	protected List<Cell> splitRow(String row) {
-		if (row == null) {
-			return Collections.emptyList();
+	protected void splitRow(String buffer, int rowStart, int rowEnd, List<Cell> cells) {
+		// a leading tab yields an empty first cell, otherwise runs of tabs
+		// act as a single separator
+		if (rowStart < rowEnd && buffer.charAt(rowStart) == TAB) {
+			cells.add(createCell(buffer, rowStart, rowStart, rowStart));
 		}
-		List<Cell> cells = new ArrayList<Cell>();
-		int offset = 0;
-
-		StringTokenizer tokenizer = new StringTokenizer(row, TAB, true);
-		boolean firstToken = true;
-		while (tokenizer.hasMoreTokens()) {
-			String token = tokenizer.nextToken();
-			if (!TAB.equals(token)) {
-				cells.add(createCell(token.trim(), offset + token.indexOf(token.trim())));
-			} else {
-				if (firstToken) {
-					cells.add(createCell("", offset));
-				}
+
+		int i = rowStart;
+		while (i < rowEnd) {
+			if (buffer.charAt(i) == TAB) {
+				i++;
+				continue;
 			}
-			firstToken = false;
-			offset += token.length();
-		}
 
-		return cells;
+			int tokenEnd = i;
+			while (tokenEnd < rowEnd && buffer.charAt(tokenEnd) != TAB) {
+				tokenEnd++;
+			}
+
+			// trim the cell contents
+			int cellStart = i;
+			int cellEnd = tokenEnd;
+			while (cellStart < cellEnd && isTrimmable(buffer.charAt(cellStart))) {
+				cellStart++;
+			}
+			while (cellEnd > cellStart && isTrimmable(buffer.charAt(cellEnd - 1))) {
+				cellEnd--;
+			}
+			if (cellStart == cellEnd) {
+				// a blank cell is positioned at the start of its token
+				cellStart = i;
+				cellEnd = i;
+			}
+
+			cells.add(createCell(buffer, rowStart, cellStart, cellEnd));
+			i = tokenEnd;
+		}
 	}
 
-	private Cell createCell(String token, int offset) {
-		Cell newCell = new Cell();
-		newCell.setOffsetInRow(offset);
-		newCell.setParsedContents(token);
-		return newCell;
+	private static boolean isTrimmable(char c) {
+		return c <= SPACE || c == NBSP;
 	}
 
 }
@@ -1,60 +1,89 @@
 package com.millennialmedia.pyro.internal.parser;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.regex.Pattern;
 
 /**
- * Reader class for space-separated file format.
+ * Reader class for space-separated file format. This also handles the
+ * pipe-separated variant, used when a row starts with "| ".
  * 
  * @author spaxton
  */
 public class TxtReader extends AbstractReader {
-	private static final String TAB = "\t";
-	private static final Pattern SPACE_PATTERN = Pattern.compile(" {2,}");
-	private static final Pattern PIPE_PATTERN = Pattern.compile(" \\|(?= )");
+	private static final char PIPE = '|';
 
 	@Override
-	protected List<Cell> splitRow(String row) {
-		if (row == null) {
-			return Collections.emptyList();
+	protected void splitRow(String buffer, int rowStart, int rowEnd, List<Cell> cells) {
+		if (rowEnd - rowStart >= 2 && buffer.charAt(rowStart) == PIPE && isSpace(buffer.charAt(rowStart + 1))) {
+			splitPipeSeparatedRow(buffer, rowStart, rowEnd, cells);
+		} else {
+			splitSpaceSeparatedRow(buffer, rowStart, rowEnd, cells);
 		}
+	}
 
-		String processedRow = row.replace(TAB, "  ");
+	private void splitSpaceSeparatedRow(String buffer, int rowStart, int rowEnd, List<Cell> cells) {
+		// cells are separated by any run of two or more spaces, or by a run
+		// that includes a tab. a leading separator yields an empty first cell.
+		int cellStart = rowStart;
+		int i = rowStart;
+		while (i < rowEnd) {
+			char c = buffer.charAt(i);
+			if (!isSpace(c) && c != TAB) {
+				i++;
+				continue;
+			}
 
-		String[] rawCells = null;
-		if (row.startsWith("| ")) {
-			if (processedRow.endsWith(" |")) {
-				processedRow = processedRow.substring(1, processedRow.length() - 2);
-			} else {
-				processedRow = processedRow.substring(1);
+			int separatorStart = i;
+			boolean hasTab = false;
+			while (i < rowEnd && (isSpace(c = buffer.charAt(i)) || c == TAB)) {
+				hasTab |= c == TAB;
+				i++;
 			}
-			rawCells = PIPE_PATTERN.split(processedRow);
-		} else {
-			rawCells = SPACE_PATTERN.split(processedRow);
+			if (hasTab || i - separatorStart > 1) {
+				cells.add(createCell(buffer, rowStart, cellStart, separatorStart));
+				cellStart = i;
+			}
+		}
+		cells.add(createCell(buffer, rowStart, cellStart, rowEnd));
+	}
+
+	private void splitPipeSeparatedRow(String buffer, int rowStart, int rowEnd, List<Cell> cells) {
+		// skip the leading pipe and the trailing one, if there is one
+		int bodyStart = rowStart + 1;
+		int bodyEnd = rowEnd;
+		if (buffer.charAt(rowEnd - 1) == PIPE && isBlank(buffer.charAt(rowEnd - 2))) {
+			bodyEnd = Math.max(bodyStart, rowEnd - 2);
 		}
 
-		List<Cell> cells = new ArrayList<Cell>();
-		int offset = 0;
-		processedRow = row;
-		for (int i = 0; i < rawCells.length; i++) {
-			String rawCell = rawCells[i];
-			offset = offset + processedRow.indexOf(rawCell);
-			cells.add(createCell(rawCell, offset));
-			offset = offset + rawCell.length();
-			if (i < rawCells.length - 1) {
-				processedRow = row.substring(offset);
+		// cells are separated by a pipe with whitespace on either side. the
+		// whitespace before the pipe is consumed but the whitespace after it
+		// begins the next cell.
+		int cellStart = bodyStart;
+		int i = bodyStart;
+		while (i + 2 < bodyEnd) {
+			if (isBlank(buffer.charAt(i)) && buffer.charAt(i + 1) == PIPE && isBlank(buffer.charAt(i + 2))) {
+				cells.add(createCell(buffer, rowStart, cellStart, i));
+				i += 2;
+				cellStart = i;
+			} else {
+				i++;
 			}
 		}
-		return cells;
+		cells.add(createCell(buffer, rowStart, cellStart, bodyEnd));
 	}
 
-	private Cell createCell(String token, int offset) {
-		Cell newCell = new Cell();
-		newCell.setOffsetInRow(offset);
-		newCell.setParsedContents(token);
+	@Override
+	protected Cell createCell(String buffer, int rowStart, int cellStart, int cellEnd) {
+		Cell newCell = super.createCell(buffer, rowStart, cellStart, cellEnd);
+		// tabs only survive within pipe-separated cells, where they're treated
+		// as spaces
+		if (newCell.getParsedContents().indexOf(TAB) >= 0) {
+			newCell.setParsedContents(intern(newCell.getParsedContents().replace("\t", "  ")));
+		}
 		return newCell;
 	}
 
+	private static boolean isBlank(char c) {
+		return isSpace(c) || c == TAB;
+	}
+
 }
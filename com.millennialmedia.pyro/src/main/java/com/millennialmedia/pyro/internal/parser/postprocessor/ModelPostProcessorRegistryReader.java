@@ -1,6 +1,8 @@
 package com.millennialmedia.pyro.internal.parser.postprocessor;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.TreeMap;
 
 import org.eclipse.core.runtime.CoreException;
@@ -13,6 +15,8 @@ import com.millennialmedia.pyro.model.util.AbstractModelPostProcessor;
 /**
  * Registry reader singleton to load model post-processors that are contributed
  * via the {@code com.millennialmedia.pyro.modelPostProcessor} extension point.
+ * The registry is read once and the same post-processor instances are shared
+ * by every parse.
  * 
  * @author spaxton
  */
@@ -54,7 +58,7 @@ public class ModelPostProcessorRegistryReader {
 				}
 			}
 		}
-		postProcessors = priorityToProcessorMap.values();
+		postProcessors = Collections.unmodifiableList(new ArrayList<AbstractModelPostProcessor>(priorityToProcessorMap.values()));
 	}
 
 }
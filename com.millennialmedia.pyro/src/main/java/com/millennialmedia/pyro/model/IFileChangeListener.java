@@ -0,0 +1,23 @@
+package com.millennialmedia.pyro.model;
+
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+
+/**
+ * Notified by the {@link ModelManager} of the workspace files whose contents
+ * changed, once per resource change event and after the cached models of
+ * those files have been discarded. Changes that don't touch file contents (ex.
+ * markers or team synchronization state) aren't reported, and a moved file is
+ * reported as removed from its old path and added at its new one.
+ *
+ * Listeners are typically called on the thread making the workspace change,
+ * so they should only discard their own derived data rather than rebuild it.
+ *
+ * @author spaxton
+ */
+public interface IFileChangeListener {
+
+	void filesChanged(List<IFile> changedFiles, List<IFile> addedFiles, List<IFile> removedFiles);
+
+}
@@ -42,4 +42,19 @@ public class Line {
 		this.lineLength = lineLength;
 	}
 
+	/**
+	 * Returns an unlinked copy of this line at the same offset, used to carry
+	 * an unchanged line over into a new model snapshot. Subclasses share their
+	 * contents with the copy rather than duplicating them.
+	 */
+	public Line copy() {
+		return copyPosition(new Line());
+	}
+
+	protected <T extends Line> T copyPosition(T copy) {
+		copy.setLineOffset(lineOffset);
+		copy.setLineLength(lineLength);
+		return copy;
+	}
+
 }
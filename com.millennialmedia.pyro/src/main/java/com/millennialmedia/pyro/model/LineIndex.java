@@ -0,0 +1,128 @@
+package com.millennialmedia.pyro.model;
+
+/**
+ * A sorted index over a model's chain of lines, used to locate the line, table
+ * and table item for a document offset with a binary search rather than a walk
+ * of the whole chain.
+ *
+ * The index is a snapshot of the chain at the time it's built. The parser
+ * rebuilds it after every parse/reparse, so clients should always retrieve it
+ * fresh from {@link RobotModel#getLineIndex()}.
+ *
+ * @author spaxton
+ */
+public class LineIndex {
+	private Line[] lines;
+	private int[] offsets;
+	private int[] endOffsets;
+	private int[] tableIndexes;
+	private int[] tableItemIndexes;
+
+	public LineIndex(Line firstLine) {
+		int count = 0;
+		for (Line line = firstLine; line != null; line = line.getNextLine()) {
+			count++;
+		}
+
+		lines = new Line[count];
+		offsets = new int[count];
+		endOffsets = new int[count];
+		tableIndexes = new int[count];
+		tableItemIndexes = new int[count];
+
+		int tableIndex = -1;
+		int tableItemIndex = -1;
+		int i = 0;
+		for (Line line = firstLine; line != null; line = line.getNextLine(), i++) {
+			if (line instanceof Table) {
+				tableIndex = i;
+				tableItemIndex = -1;
+			} else if (line instanceof TableItemDefinition) {
+				tableItemIndex = i;
+			}
+			lines[i] = line;
+			offsets[i] = line.getLineOffset();
+			endOffsets[i] = line.getLineOffset() + line.getLineLength();
+			tableIndexes[i] = tableIndex;
+			tableItemIndexes[i] = tableItemIndex;
+		}
+	}
+
+	public int size() {
+		return lines.length;
+	}
+
+	public Line getLine(int index) {
+		return lines[index];
+	}
+
+	/**
+	 * Returns the index of the last line that begins at or before the given
+	 * offset, or -1 if the offset precedes all lines. When several lines share
+	 * a single document line, this is the last of them.
+	 */
+	public int getIndexAtOffset(int offset) {
+		int low = 0;
+		int high = offsets.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (offsets[mid] <= offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low - 1;
+	}
+
+	/**
+	 * Returns the last line that begins at or before the given offset.
+	 */
+	public Line getLineAtOffset(int offset) {
+		int index = getIndexAtOffset(offset);
+		return index < 0 ? null : lines[index];
+	}
+
+	/**
+	 * Returns the first line whose end (including its linefeed) lies beyond
+	 * the given offset. When several lines share a single document line, this
+	 * is the first of them.
+	 */
+	public Line getFirstLineEndingAfter(int offset) {
+		int low = 0;
+		int high = endOffsets.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (endOffsets[mid] <= offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low < lines.length ? lines[low] : null;
+	}
+
+	public Table getContainingTable(int offset) {
+		return getTable(getIndexAtOffset(offset));
+	}
+
+	public TableItemDefinition getContainingTableItem(int offset) {
+		return getTableItem(getIndexAtOffset(offset));
+	}
+
+	/**
+	 * Returns the table containing the line at the given index.
+	 */
+	public Table getTable(int index) {
+		return index < 0 || tableIndexes[index] < 0 ? null : (Table) lines[tableIndexes[index]];
+	}
+
+	/**
+	 * Returns the testcase/keyword definition containing the line at the given
+	 * index.
+	 */
+	public TableItemDefinition getTableItem(int index) {
+		return index < 0 || tableItemIndexes[index] < 0 ? null : (TableItemDefinition) lines[tableItemIndexes[index]];
+	}
+
+}
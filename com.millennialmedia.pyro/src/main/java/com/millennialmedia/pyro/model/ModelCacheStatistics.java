@@ -0,0 +1,95 @@
+package com.millennialmedia.pyro.model;
+
+/**
+ * A snapshot of the model cache's counters, as returned by
+ * {@link ModelManager#getCacheStatistics()}. Counts are cumulative since the
+ * manager was created. Weights are estimates of the heap retained by the
+ * cached models, in bytes.
+ *
+ * @author spaxton
+ */
+public class ModelCacheStatistics {
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private long loadCount;
+	private long loadFailureCount;
+	private long totalLoadNanos;
+	private int modelCount;
+	private long weight;
+	private long budget;
+
+	public ModelCacheStatistics(long hitCount, long missCount, long evictionCount, long loadCount,
+			long loadFailureCount, long totalLoadNanos, int modelCount, long weight, long budget) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.loadCount = loadCount;
+		this.loadFailureCount = loadFailureCount;
+		this.totalLoadNanos = totalLoadNanos;
+		this.modelCount = modelCount;
+		this.weight = weight;
+		this.budget = budget;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * The fraction of requests served from the cache, or 1 if there haven't
+	 * been any requests.
+	 */
+	public double getHitRate() {
+		long requestCount = hitCount + missCount;
+		return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+	}
+
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public long getLoadCount() {
+		return loadCount;
+	}
+
+	public long getLoadFailureCount() {
+		return loadFailureCount;
+	}
+
+	/**
+	 * Total time spent parsing models into the cache, including failed loads.
+	 */
+	public long getTotalLoadNanos() {
+		return totalLoadNanos;
+	}
+
+	public long getAverageLoadNanos() {
+		long attempts = loadCount + loadFailureCount;
+		return attempts == 0 ? 0 : totalLoadNanos / attempts;
+	}
+
+	public int getModelCount() {
+		return modelCount;
+	}
+
+	public long getWeight() {
+		return weight;
+	}
+
+	public long getBudget() {
+		return budget;
+	}
+
+	@Override
+	public String toString() {
+		return "hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + ", loads=" + loadCount
+				+ ", load failures=" + loadFailureCount + ", average load=" + getAverageLoadNanos() / 1000000
+				+ "ms, models=" + modelCount + ", weight=" + weight + "/" + budget;
+	}
+
+}
@@ -1,51 +1,116 @@
 package com.millennialmedia.pyro.model;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceChangeEvent;
 import org.eclipse.core.resources.IResourceChangeListener;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IResourceVisitor;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 
+import com.millennialmedia.pyro.internal.PyroPlugin;
+import com.millennialmedia.pyro.internal.cache.ModelCache;
+import com.millennialmedia.pyro.internal.cache.SummaryCache;
 import com.millennialmedia.pyro.internal.parser.Parser;
+import com.millennialmedia.pyro.model.util.ModelUtil;
 
 /**
  * The public entry point to the Robot file parser. The singleton manager object
  * is responsible for parsing and caching models, removing modified files'
  * models from the cache, and reacting to explicit reparse requests.
  * 
+ * Models of static files are cached by workspace path within a budget on the
+ * heap they retain, evicting the least-recently used models beyond it. Files
+ * open in an editor have their models pinned in the cache until released.
+ * 
  * @author spaxton
  */
 public class ModelManager {
+	private static final List<String> ROBOT_FILE_EXTENSIONS = Arrays.asList("robot", "txt", "tsv");
+	// bulk parsing is spread over a bounded pool, leaving a core free for the
+	// UI on smaller machines
+	private static final int MAX_PARSE_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+	private static final long PROGRESS_INTERVAL_MILLIS = 100;
+	// the kinds of change to an existing file that affect its contents
+	private static final int CONTENT_CHANGE_FLAGS = IResourceDelta.CONTENT | IResourceDelta.REPLACED
+			| IResourceDelta.ENCODING;
+
+	/**
+	 * The default estimated heap, in bytes, that cached models may retain.
+	 */
+	public static final long DEFAULT_CACHE_BUDGET = 64L * 1024 * 1024;
+
 	private static ModelManager instance;
 
+	private IResourceChangeListener resourceChangeListener;
+
 	private ModelManager() {
 		// startup a resource listener to invalidate cached models on resource
 		// changes upon the filesystem
-		ResourcesPlugin.getWorkspace().addResourceChangeListener(new IResourceChangeListener() {
+		resourceChangeListener = new IResourceChangeListener() {
 
 			@Override
 			public void resourceChanged(IResourceChangeEvent event) {
+				if (event.getDelta() == null) {
+					return;
+				}
+				final List<IFile> changedFiles = new ArrayList<IFile>();
+				final List<IFile> addedFiles = new ArrayList<IFile>();
+				final List<IFile> removedFiles = new ArrayList<IFile>();
 				try {
 					event.getDelta().accept(new IResourceDeltaVisitor() {
 						@Override
 						public boolean visit(IResourceDelta delta) throws CoreException {
-							if (fileToModelMap.containsKey(delta.getResource())) {
-								fileToModelMap.remove(delta.getResource());
+							IResource resource = delta.getResource();
+							if (resource instanceof IFile) {
+								if (delta.getKind() == IResourceDelta.ADDED) {
+									addedFiles.add((IFile) resource);
+								} else if (delta.getKind() == IResourceDelta.REMOVED) {
+									removedFiles.add((IFile) resource);
+								} else if ((delta.getFlags() & CONTENT_CHANGE_FLAGS) != 0) {
+									changedFiles.add((IFile) resource);
+								}
 								return false;
 							}
-							return true;
+							// build output and team metadata never hold Robot
+							// files, so their subtrees are skipped
+							return !resource.isDerived() && !resource.isTeamPrivateMember();
 						}
 					});
 				} catch (CoreException e) {
 					// ignore
 				}
+				filesChanged(changedFiles, addedFiles, removedFiles);
 			}
-		});
+		};
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(resourceChangeListener,
+				IResourceChangeEvent.POST_CHANGE);
 	}
 
 	public static final synchronized ModelManager getManager() {
@@ -55,58 +120,552 @@ public class ModelManager {
 		return instance;
 	}
 
-	private Map<IFile, RobotModel> fileToModelMap = new WeakHashMap<IFile, RobotModel>();
-	private Map<IFile, RobotModel> fileToEditedModelMap = new WeakHashMap<IFile, RobotModel>();
+	/**
+	 * Disposes of the manager when the plugin stops. This stops listening for
+	 * resource changes, cancels any reindexing and shuts down the threads used
+	 * for bulk parsing, which would otherwise outlive the plugin.
+	 */
+	public static final synchronized void shutdown() {
+		if (instance != null) {
+			instance.dispose();
+			instance = null;
+		}
+	}
+
+	private ForkJoinPool parsePool;
+	private ReindexJob reindexJob;
+	private SummaryCache memorySummaryCache;
+	private ModelCache modelCache = new ModelCache(DEFAULT_CACHE_BUDGET);
+	private List<IFileChangeListener> fileChangeListeners = new CopyOnWriteArrayList<IFileChangeListener>();
+	private Map<IFile, RobotModel> fileToEditedModelMap = Collections
+			.synchronizedMap(new WeakHashMap<IFile, RobotModel>());
+	// guarded by fileToEditedModelMap
+	private Map<IFile, Set<IFile>> fileToEditedDependenciesMap = new HashMap<IFile, Set<IFile>>();
 
 	/**
 	 * Parses a static file into a model. This is used in scenarios where
 	 * dependencies of an edited file need to be loaded (ex. hyperlinking into
 	 * an included library).
+	 * 
+	 * This is safe to call from any thread. If the file is already being
+	 * parsed by another thread, the caller waits for and shares that result.
 	 */
-	public RobotModel getModel(IFile file) {
-		if (fileToModelMap.containsKey(file)) {
-			return fileToModelMap.get(file);
-		} else {
-			Parser parser = new Parser(file);
-			RobotModel model = parser.parse();
-			fileToModelMap.put(file, model);
-			return model;
+	public RobotModel getModel(final IFile file) {
+		RobotModel model = modelCache.get(getCacheKey(file), new Callable<RobotModel>() {
+			@Override
+			public RobotModel call() throws Exception {
+				return new Parser(file).parse();
+			}
+		});
+		return model != null ? model : new Parser(file).parse();
+	}
+
+	/**
+	 * Returns a summary of the given file for dependency lookups (ex. the
+	 * keywords and imports of a resource file). A model that's already been
+	 * parsed is summarized directly. Otherwise the summary persisted from an
+	 * earlier parse is used as long as the file hasn't changed, and the file is
+	 * only parsed when there's no such summary. Models parsed just to build a
+	 * summary aren't cached.
+	 */
+	public ModelSummary getSummary(IFile file) {
+		String path = getCacheKey(file);
+		RobotModel model = modelCache.getIfLoaded(path);
+		if (model != null) {
+			return ModelUtil.getSummary(model);
+		}
+
+		long modificationStamp = file.getModificationStamp();
+		SummaryCache summaryCache = getSummaryCache();
+		ModelSummary summary = summaryCache.get(path, modificationStamp);
+		if (summary == null) {
+			String contents = Parser.getContents(file);
+			if (contents == null) {
+				return new ModelSummary();
+			}
+			// a file that was touched without being changed keeps its summary
+			long contentHash = SummaryCache.hash(contents);
+			summary = summaryCache.get(path, modificationStamp, contentHash);
+			if (summary == null) {
+				summary = new ModelSummary(new Parser(file).parse(contents));
+				summaryCache.put(path, modificationStamp, contentHash, summary);
+			}
+		}
+		return summary;
+	}
+
+	/**
+	 * Parses the given files concurrently on a bounded pool of threads. Each
+	 * model is published into the cache as soon as it's complete, and files
+	 * that are already cached aren't parsed again.
+	 * 
+	 * The calling thread blocks until all files are parsed, reporting progress
+	 * to the given monitor. If the monitor is canceled, files not yet started
+	 * are skipped.
+	 * 
+	 * @return the models for the given files, omitting any skipped due to
+	 *         cancellation
+	 */
+	public Map<IFile, RobotModel> getModels(Collection<IFile> files, IProgressMonitor monitor) {
+		if (monitor == null) {
+			monitor = new NullProgressMonitor();
+		}
+		IFile[] fileArray = files.toArray(new IFile[files.size()]);
+		RobotModel[] models = new RobotModel[fileArray.length];
+		monitor.beginTask("Parsing Robot files", fileArray.length);
+		try {
+			if (fileArray.length > 0) {
+				AtomicInteger completedCount = new AtomicInteger();
+				AtomicBoolean canceled = new AtomicBoolean();
+				ForkJoinTask<Void> parseTask = getParsePool().submit(
+						new BulkParseAction(fileArray, models, 0, fileArray.length, completedCount, canceled));
+
+				// the monitor is only ever touched from this thread
+				int reportedCount = 0;
+				while (true) {
+					try {
+						parseTask.get(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+						break;
+					} catch (TimeoutException e) {
+						// still running
+					} catch (ExecutionException e) {
+						// a parser failure ends the bulk parse, and the files
+						// not parsed by then are left out of the result
+						PyroPlugin.logError("Failed to parse Robot files", e.getCause());
+						break;
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						canceled.set(true);
+						break;
+					} finally {
+						int completed = completedCount.get();
+						monitor.worked(completed - reportedCount);
+						reportedCount = completed;
+					}
+					if (monitor.isCanceled()) {
+						canceled.set(true);
+					}
+				}
+			}
+		} finally {
+			monitor.done();
+		}
+
+		Map<IFile, RobotModel> fileToModelMap = new HashMap<IFile, RobotModel>();
+		for (int i = 0; i < fileArray.length; i++) {
+			if (models[i] != null) {
+				fileToModelMap.put(fileArray[i], models[i]);
+			}
+		}
+		return fileToModelMap;
+	}
+
+	/**
+	 * Parses all Robot files (.robot, .txt and .tsv) within the given container
+	 * and its subfolders concurrently.
+	 * 
+	 * @see #getModels(Collection, IProgressMonitor)
+	 */
+	public Map<IFile, RobotModel> getModels(IContainer container, IProgressMonitor monitor) throws CoreException {
+		final List<IFile> files = new ArrayList<IFile>();
+		container.accept(new IResourceVisitor() {
+			@Override
+			public boolean visit(IResource resource) throws CoreException {
+				if (resource instanceof IFile && isRobotFile((IFile) resource)) {
+					files.add((IFile) resource);
+				}
+				return true;
+			}
+		});
+		return getModels(files, monitor);
+	}
+
+	/**
+	 * Discards the cached model for the given file, so the next request
+	 * reparses it. This is called automatically for any workspace change to
+	 * the file's contents.
+	 */
+	public void invalidate(IFile file) {
+		modelCache.remove(getCacheKey(file));
+	}
+
+	/**
+	 * Discards the cached models and summaries of a batch of changed files in
+	 * one pass, then notifies the file change listeners, which discard
+	 * whatever they derived from those files. Changed files that were cached,
+	 * are being edited or are imported by edited files are queued to be parsed
+	 * again in the background.
+	 */
+	void filesChanged(List<IFile> changedFiles, List<IFile> addedFiles, List<IFile> removedFiles) {
+		if (changedFiles.isEmpty() && addedFiles.isEmpty() && removedFiles.isEmpty()) {
+			return;
+		}
+		List<String> paths = new ArrayList<String>();
+		for (List<IFile> files : Arrays.asList(changedFiles, addedFiles, removedFiles)) {
+			for (IFile file : files) {
+				paths.add(getCacheKey(file));
+			}
+		}
+		Set<String> cachedPaths = modelCache.removeAll(paths);
+		for (IFile file : removedFiles) {
+			getSummaryCache().remove(getCacheKey(file));
+		}
+		for (IFileChangeListener listener : fileChangeListeners) {
+			listener.filesChanged(changedFiles, addedFiles, removedFiles);
+		}
+		discardEditedDependents(changedFiles, removedFiles);
+
+		// files that were in use are parsed again in the background, rather
+		// than by whichever thread needs them next
+		Set<String> editedImportNames = getEditedImportNames();
+		List<IFile> reindexFiles = new ArrayList<IFile>();
+		for (List<IFile> files : Arrays.asList(changedFiles, addedFiles)) {
+			for (IFile file : files) {
+				boolean inUse = cachedPaths.contains(getCacheKey(file)) || fileToEditedModelMap.containsKey(file)
+						|| editedImportNames.contains(file.getName());
+				if (inUse && isRobotFile(file)) {
+					reindexFiles.add(file);
+				}
+			}
 		}
+		if (!removedFiles.isEmpty()) {
+			getReindexJob().removeFiles(removedFiles);
+		}
+		if (!reindexFiles.isEmpty()) {
+			getReindexJob().addFiles(reindexFiles);
+		}
+	}
+
+	private void discardEditedDependents(List<IFile> changedFiles, List<IFile> removedFiles) {
+		List<IFile> dependentFiles = new ArrayList<IFile>();
+		synchronized (fileToEditedModelMap) {
+			for (Map.Entry<IFile, Set<IFile>> entry : fileToEditedDependenciesMap.entrySet()) {
+				Set<IFile> dependencies = entry.getValue();
+				if (!Collections.disjoint(dependencies, changedFiles)
+						|| !Collections.disjoint(dependencies, removedFiles)) {
+					dependentFiles.add(entry.getKey());
+				}
+			}
+		}
+		for (IFile file : dependentFiles) {
+			discardDependentProperties(file);
+		}
+	}
+
+	/**
+	 * Moves the files being edited to the front of the given list, followed by
+	 * the files they import.
+	 * 
+	 * @return the number of such files
+	 */
+	int sortByReindexPriority(List<IFile> files) {
+		List<IFile> editedFiles = new ArrayList<IFile>();
+		List<IFile> importedFiles = new ArrayList<IFile>();
+		List<IFile> otherFiles = new ArrayList<IFile>();
+		Set<String> editedImportNames = getEditedImportNames();
+		for (IFile file : files) {
+			if (fileToEditedModelMap.containsKey(file)) {
+				editedFiles.add(file);
+			} else if (editedImportNames.contains(file.getName())) {
+				importedFiles.add(file);
+			} else {
+				otherFiles.add(file);
+			}
+		}
+		files.clear();
+		files.addAll(editedFiles);
+		files.addAll(importedFiles);
+		files.addAll(otherFiles);
+		return editedFiles.size() + importedFiles.size();
+	}
+
+	/**
+	 * Returns the file names of the resource files imported by the files being
+	 * edited. Import paths are only resolved by the UI, so matching on the name
+	 * alone is a close enough approximation for scheduling.
+	 */
+	private Set<String> getEditedImportNames() {
+		Set<String> names = new HashSet<String>();
+		List<RobotModel> editedModels;
+		synchronized (fileToEditedModelMap) {
+			editedModels = new ArrayList<RobotModel>(fileToEditedModelMap.values());
+		}
+		for (RobotModel editedModel : editedModels) {
+			for (String path : ModelUtil.getResourceFilePaths(editedModel)) {
+				int nameStart = Math.max(path.lastIndexOf('/'), Math.max(path.lastIndexOf('\\'), path.lastIndexOf('}')));
+				names.add(path.substring(nameStart + 1));
+			}
+		}
+		return names;
+	}
+
+	public void addFileChangeListener(IFileChangeListener listener) {
+		fileChangeListeners.add(listener);
+	}
+
+	public void removeFileChangeListener(IFileChangeListener listener) {
+		fileChangeListeners.remove(listener);
+	}
+
+	/**
+	 * Discards the dependent properties of the models for the given file, both
+	 * the model being edited and the cached model, so they're derived again
+	 * from the current contents of the file's dependencies.
+	 */
+	public void discardDependentProperties(IFile file) {
+		synchronized (fileToEditedModelMap) {
+			RobotModel editedModel = fileToEditedModelMap.get(file);
+			if (editedModel != null) {
+				editedModel.getDependentProperties().clear();
+			}
+		}
+		RobotModel cachedModel = modelCache.getIfLoaded(getCacheKey(file));
+		if (cachedModel != null) {
+			cachedModel.getDependentProperties().clear();
+		}
+	}
+
+	/**
+	 * Records the files that the dependent properties of an edited file are
+	 * derived from (ex. the resource files its current imports resolve to,
+	 * directly or transitively). An edited file's imports come from its
+	 * unsaved contents, which listeners tracking imports on disk can't see, so
+	 * a change to any of these files discards the edited file's dependent
+	 * properties here instead. The files are forgotten once the file is
+	 * released.
+	 */
+	public void setEditedDependencies(IFile file, Collection<IFile> dependencies) {
+		synchronized (fileToEditedModelMap) {
+			fileToEditedDependenciesMap.put(file, new HashSet<IFile>(dependencies));
+		}
+	}
+
+	/**
+	 * Discards the dependent properties of every model being edited, for
+	 * changes whose dependents can't be determined (ex. a new file that may
+	 * satisfy any unresolved import).
+	 */
+	public void discardAllDependentProperties() {
+		synchronized (fileToEditedModelMap) {
+			for (RobotModel editedModel : fileToEditedModelMap.values()) {
+				editedModel.getDependentProperties().clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the model cache's hit, miss, eviction and load
+	 * counters.
+	 */
+	public ModelCacheStatistics getCacheStatistics() {
+		return modelCache.getStatistics();
+	}
+
+	public long getCacheBudget() {
+		return modelCache.getBudget();
+	}
+
+	/**
+	 * Sets the estimated heap, in bytes, that cached models may retain. Models
+	 * beyond the new budget are evicted right away.
+	 */
+	public void setCacheBudget(long budget) {
+		modelCache.setBudget(budget);
 	}
 
 	/**
 	 * Parses the given file contents into a Robot model. The provided file is
 	 * used to determine the parser mode based upon file extension and the model
-	 * is cached using this file as a key. The client will continue to manually
-	 * reparse() any new contents as-needed.
+	 * is cached using this file as a key. The client will continue to parse()
+	 * any new contents as-needed, publishing each result with replaceModel().
+	 * 
+	 * The file's cached static model is pinned until the client calls
+	 * releaseModel() for the file.
 	 */
 	public RobotModel getModel(IFile file, String bufferContents) {
 		Parser parser = new Parser(file);
 		RobotModel model = parser.parse(bufferContents);
 		fileToEditedModelMap.put(file, model);
+		modelCache.pin(getCacheKey(file));
 		return model;
 	}
 
 	/**
-	 * Replaces the contents of the existing model with the parser output for
-	 * the new given input string.
+	 * Called once a client is done editing a file it obtained a model for with
+	 * getModel(IFile, String), allowing the file's cached model to be evicted.
+	 */
+	public void releaseModel(IFile file) {
+		modelCache.unpin(getCacheKey(file));
+		synchronized (fileToEditedModelMap) {
+			fileToEditedDependenciesMap.remove(file);
+		}
+	}
+
+	/**
+	 * Parses new contents for a model obtained from getModel(IFile, String)
+	 * without modifying that model, so editors can parse off the UI thread
+	 * while the current model is still in use. The result is published later
+	 * with replaceModel().
+	 * 
+	 * @param monitor
+	 *            checked for cancellation during the parse, may be null
+	 * @return the newly-parsed model, or null if the given model isn't being
+	 *         edited or the parse was canceled
 	 */
-	public void reparse(RobotModel model, String contents) {
-		for (Map.Entry<IFile, RobotModel> entry : fileToEditedModelMap.entrySet()) {
-			if (entry.getValue() == model) {
-				IFile file = entry.getKey();
-				Parser parser = new Parser(file);
+	public RobotModel parse(RobotModel model, String contents, IProgressMonitor monitor) {
+		IFile file = getEditedFile(model);
+		if (file != null) {
+			return new Parser(file).parse(contents, monitor);
+		}
+		return null;
+	}
 
-				// parse a new model for the given contents
-				RobotModel newModel = parser.parse(contents);
+	/**
+	 * Parses new contents for a model obtained from getModel(IFile, String)
+	 * that differ from the model's contents by a single edit, without
+	 * modifying that model. When the edit is confined to testcases or
+	 * keywords, only those are reparsed and the new model shares the contents
+	 * of all other lines with the given model. Otherwise this falls back to a
+	 * full parse. Several edits can be passed as one by covering all of them.
+	 * 
+	 * @param contents
+	 *            the complete file contents after the edit
+	 * @param offset
+	 *            offset of the edit
+	 * @param replacedLength
+	 *            number of characters of the model's contents replaced by the
+	 *            edit
+	 * @param insertedLength
+	 *            number of characters inserted by the edit
+	 * @param monitor
+	 *            checked for cancellation during a full parse, may be null
+	 * @return the newly-parsed model, or null if the given model isn't being
+	 *         edited or the parse was canceled
+	 */
+	public RobotModel parse(RobotModel model, String contents, int offset, int replacedLength, int insertedLength,
+			IProgressMonitor monitor) {
+		IFile file = getEditedFile(model);
+		if (file != null) {
+			Parser parser = new Parser(file);
+			RobotModel newModel = parser.reparse(model, contents, offset, replacedLength, insertedLength);
+			return newModel != null ? newModel : parser.parse(contents, monitor);
+		}
+		return null;
+	}
+
+	/**
+	 * Publishes a newly-parsed model as the model of the file edited through
+	 * the given model. Neither model's contents are modified, so readers still
+	 * holding the given model keep a consistent view of the previous contents.
+	 * 
+	 * The new model starts out with the dependent properties of the given
+	 * model, since edits don't change the files it depends on.
+	 */
+	public void replaceModel(RobotModel model, RobotModel newModel) {
+		IFile file = getEditedFile(model);
+		if (file != null) {
+			// a discard can't slip in between the copy and the publish
+			synchronized (fileToEditedModelMap) {
+				newModel.getDependentProperties().putAll(model.getDependentProperties());
+				fileToEditedModelMap.put(file, newModel);
+			}
+		}
+	}
+
+	private static boolean isRobotFile(IFile file) {
+		return file.getFileExtension() != null && ROBOT_FILE_EXTENSIONS.contains(file.getFileExtension().toLowerCase());
+	}
+
+	private static String getCacheKey(IFile file) {
+		return file.getFullPath().toString();
+	}
+
+	private IFile getEditedFile(RobotModel model) {
+		synchronized (fileToEditedModelMap) {
+			for (Map.Entry<IFile, RobotModel> entry : fileToEditedModelMap.entrySet()) {
+				if (entry.getValue() == model) {
+					return entry.getKey();
+				}
+			}
+		}
+		return null;
+	}
+
+	private synchronized SummaryCache getSummaryCache() {
+		if (PyroPlugin.getDefault() != null) {
+			return PyroPlugin.getDefault().getSummaryCache();
+		}
+		// outside of a running platform, summaries are only kept in memory
+		if (memorySummaryCache == null) {
+			memorySummaryCache = new SummaryCache(null);
+		}
+		return memorySummaryCache;
+	}
+
+	private synchronized ReindexJob getReindexJob() {
+		if (reindexJob == null) {
+			reindexJob = new ReindexJob(this);
+		}
+		return reindexJob;
+	}
+
+	private void dispose() {
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(resourceChangeListener);
+		ReindexJob currentReindexJob;
+		ForkJoinPool currentParsePool;
+		synchronized (this) {
+			currentReindexJob = reindexJob;
+			currentParsePool = parsePool;
+			parsePool = null;
+		}
+		if (currentReindexJob != null) {
+			currentReindexJob.cancel();
+		}
+		if (currentParsePool != null) {
+			currentParsePool.shutdownNow();
+		}
+	}
+
+	private synchronized ForkJoinPool getParsePool() {
+		if (parsePool == null) {
+			parsePool = new ForkJoinPool(MAX_PARSE_THREADS);
+		}
+		return parsePool;
+	}
+
+	/**
+	 * Splits a range of files in half until each task holds a single file,
+	 * which is then parsed through the cache.
+	 */
+	private class BulkParseAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private IFile[] files;
+		private RobotModel[] models;
+		private int start;
+		private int end;
+		private AtomicInteger completedCount;
+		private AtomicBoolean canceled;
+
+		BulkParseAction(IFile[] files, RobotModel[] models, int start, int end, AtomicInteger completedCount,
+				AtomicBoolean canceled) {
+			this.files = files;
+			this.models = models;
+			this.start = start;
+			this.end = end;
+			this.completedCount = completedCount;
+			this.canceled = canceled;
+		}
 
-				// the client will continue to reuse the same model object
-				// transparently,
-				// so just swap in the newly-parsed information into that model
-				model.setTables(newModel.getTables());
-				model.setFirstLine(newModel.getFirstLine());
-				model.getCustomProperties().clear();
-				model.getCustomProperties().putAll(newModel.getCustomProperties());
+		@Override
+		protected void compute() {
+			if (end - start > 1) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new BulkParseAction(files, models, start, middle, completedCount, canceled),
+						new BulkParseAction(files, models, middle, end, completedCount, canceled));
+			} else if (!canceled.get()) {
+				models[start] = getModel(files[start]);
+				completedCount.incrementAndGet();
 			}
 		}
 	}
@@ -0,0 +1,130 @@
+package com.millennialmedia.pyro.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.millennialmedia.pyro.model.StepSegment.SegmentType;
+import com.millennialmedia.pyro.model.Table.TableType;
+import com.millennialmedia.pyro.model.TableItemDefinition.TableItemType;
+import com.millennialmedia.pyro.model.util.IModelConstants;
+import com.millennialmedia.pyro.model.util.ModelUtil;
+
+/**
+ * A compact digest of a Robot file, holding just the information other files
+ * need when they depend on it: keyword definitions, variable table names,
+ * imports and the table layout. Summaries are persisted across sessions, so
+ * dependency lookups can usually be served without parsing the file.
+ *
+ * The keyword definitions and tables are placeholders carrying only names,
+ * types and offsets. They hold no steps or table lines.
+ *
+ * @author spaxton
+ */
+public class ModelSummary {
+	private Map<String, TableItemDefinition> keywords = new LinkedHashMap<String, TableItemDefinition>();
+	private List<String> variableNames = new ArrayList<String>();
+	private List<String> resourceFilePaths = new ArrayList<String>();
+	private List<String> variableFilePaths = new ArrayList<String>();
+	private List<String> libraries = new ArrayList<String>();
+	private Map<String, String> libraryNameToPathMap = new LinkedHashMap<String, String>();
+	private List<Table> tables = new ArrayList<Table>();
+
+	public ModelSummary() {
+	}
+
+	/**
+	 * Summarizes a fully-parsed model.
+	 */
+	@SuppressWarnings("unchecked")
+	public ModelSummary(RobotModel model) {
+		for (TableItemDefinition keyword : ModelUtil.getKeywords(model).values()) {
+			keywords.put(keyword.getName(), createKeyword(keyword.getName(), keyword.getNameLength(),
+					keyword.getLineOffset(), keyword.getLineLength()));
+		}
+
+		for (Table table : model.getTables()) {
+			tables.add(createTable(table.getTableType(), table.getTableName(), table.getLineOffset(),
+					table.getLineLength()));
+			if (table.getTableType() == TableType.VARIABLE) {
+				for (Line line : table.getTableLines()) {
+					if (line instanceof Step) {
+						for (StepSegment segment : ((Step) line).getSegments()) {
+							if (segment.getSegmentType() == SegmentType.VARIABLE) {
+								variableNames.add(segment.getValue());
+								break;
+							}
+						}
+					}
+				}
+			}
+		}
+
+		resourceFilePaths.addAll(ModelUtil.getResourceFilePaths(model));
+		variableFilePaths.addAll(ModelUtil.getVariableFilePaths(model));
+		if (model.getCustomProperties().containsKey(IModelConstants.PROPSKEY_ORDERED_LIBRARY_PATHS)) {
+			libraries.addAll(ModelUtil.getLibraries(model));
+		}
+		Map<String, String> modelLibraryNameToPathMap = (Map<String, String>) model.getCustomProperties().get(
+				IModelConstants.PROPSKEY_LIBRARY_NAME_TO_PATH_MAP);
+		if (modelLibraryNameToPathMap != null) {
+			libraryNameToPathMap.putAll(modelLibraryNameToPathMap);
+		}
+	}
+
+	/**
+	 * Keyword definitions keyed by name.
+	 */
+	public Map<String, TableItemDefinition> getKeywords() {
+		return keywords;
+	}
+
+	/**
+	 * The raw variable cell contents of each variable table row (ex.
+	 * "${name}=").
+	 */
+	public List<String> getVariableNames() {
+		return variableNames;
+	}
+
+	public List<String> getResourceFilePaths() {
+		return resourceFilePaths;
+	}
+
+	public List<String> getVariableFilePaths() {
+		return variableFilePaths;
+	}
+
+	public List<String> getLibraries() {
+		return libraries;
+	}
+
+	public Map<String, String> getLibraryNameToPathMap() {
+		return libraryNameToPathMap;
+	}
+
+	public List<Table> getTables() {
+		return tables;
+	}
+
+	public static TableItemDefinition createKeyword(String name, int nameLength, int lineOffset, int lineLength) {
+		TableItemDefinition keyword = new TableItemDefinition();
+		keyword.setItemType(TableItemType.KEYWORD);
+		keyword.setName(name);
+		keyword.setNameLength(nameLength);
+		keyword.setLineOffset(lineOffset);
+		keyword.setLineLength(lineLength);
+		return keyword;
+	}
+
+	public static Table createTable(TableType tableType, String tableName, int lineOffset, int lineLength) {
+		Table table = new Table();
+		table.setTableType(tableType);
+		table.setTableName(tableName);
+		table.setLineOffset(lineOffset);
+		table.setLineLength(lineLength);
+		return table;
+	}
+
+}
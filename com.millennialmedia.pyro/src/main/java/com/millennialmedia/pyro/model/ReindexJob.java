@@ -0,0 +1,106 @@
+package com.millennialmedia.pyro.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Background job that re-parses changed files into the model cache, so later
+ * lookups find them already parsed instead of parsing on whatever thread
+ * needs them first. Changes arriving in quick succession (ex. a branch switch
+ * or a large merge) keep pushing the job back, so a storm of resource changes
+ * is handled as a single batch.
+ *
+ * The files being edited and the files they import are parsed first. The rest
+ * are parsed in chunks at the lowest job priority, and the job steps aside
+ * whenever interactive work is running, picking up again later.
+ *
+ * @author spaxton
+ */
+class ReindexJob extends Job {
+	private static final long COALESCE_DELAY_MILLIS = 500;
+	private static final long YIELD_DELAY_MILLIS = 1000;
+	private static final int CHUNK_SIZE = 16;
+
+	private ModelManager manager;
+	private Set<IFile> pendingFiles = new LinkedHashSet<IFile>();
+
+	ReindexJob(ModelManager manager) {
+		super("Indexing Robot files");
+		this.manager = manager;
+		setPriority(DECORATE);
+	}
+
+	/**
+	 * Adds files to the next batch, and delays the batch until changes stop
+	 * arriving.
+	 */
+	void addFiles(Collection<IFile> files) {
+		synchronized (this) {
+			pendingFiles.addAll(files);
+		}
+		schedule(COALESCE_DELAY_MILLIS);
+	}
+
+	/**
+	 * Drops files from the next batch (ex. when they're removed).
+	 */
+	synchronized void removeFiles(Collection<IFile> files) {
+		pendingFiles.removeAll(files);
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		List<IFile> files = new ArrayList<IFile>();
+		synchronized (this) {
+			for (IFile file : pendingFiles) {
+				if (file.exists()) {
+					files.add(file);
+				}
+			}
+			pendingFiles.clear();
+		}
+
+		// the priority files go first as a single chunk
+		int priorityCount = manager.sortByReindexPriority(files);
+		SubMonitor progress = SubMonitor.convert(monitor, getName(), files.size());
+		int start = 0;
+		while (start < files.size()) {
+			if (progress.isCanceled()) {
+				// whatever's left is parsed on demand
+				return Status.CANCEL_STATUS;
+			}
+			if (start >= priorityCount && isInteractiveWorkRunning()) {
+				synchronized (this) {
+					pendingFiles.addAll(files.subList(start, files.size()));
+				}
+				schedule(YIELD_DELAY_MILLIS);
+				return Status.OK_STATUS;
+			}
+			int end = start < priorityCount ? priorityCount : Math.min(files.size(), start + CHUNK_SIZE);
+			List<IFile> chunk = files.subList(start, end);
+			manager.getModels(chunk, progress.newChild(chunk.size()));
+			start = end;
+		}
+		return Status.OK_STATUS;
+	}
+
+	private boolean isInteractiveWorkRunning() {
+		for (Job job : getJobManager().find(null)) {
+			if (job != this && job.getState() == RUNNING && (job.getPriority() == INTERACTIVE || job.isUser())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
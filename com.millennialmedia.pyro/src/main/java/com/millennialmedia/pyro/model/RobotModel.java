@@ -1,38 +1,82 @@
 package com.millennialmedia.pyro.model;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.resources.IFile;
 
 /**
  * The container model for a Robot source file.
  * 
+ * Models of edited files are snapshots. Once a model has been handed out to
+ * readers its lines aren't modified again, and a reparse produces a new model
+ * instead, so readers on any thread see a consistent model for as long as
+ * they hold it. An edit confined to testcases or keywords only reparses those,
+ * and the lines outside of them are carried over as copies that share their
+ * contents (ex. a step's segments) with the previous model. Custom properties
+ * hold data derived from the model on demand and may be added from any
+ * thread. Data that's also derived from other files
+ * (ex. libraries resolved through imported resource files) belongs in the
+ * dependent properties instead, which are discarded whenever one of the
+ * model's dependencies changes but are carried over when an edited file is
+ * reparsed.
+ * 
  * @author spaxton
  */
 public class RobotModel {
 	private List<Table> tables = new ArrayList<Table>();
 	private Line firstLine;
-	private Map<String, Object> customProperties = new HashMap<String, Object>();
+	private volatile LineIndex lineIndex;
+	private Map<String, Object> customProperties = new ConcurrentHashMap<String, Object>();
+	private Map<String, Object> dependentProperties = new ConcurrentHashMap<String, Object>();
 
 	public List<Table> getTables() {
 		return tables;
 	}
 
-	void setTables(List<Table> tables) {
-		this.tables = tables;
-	}
-
 	public Line getFirstLine() {
 		return firstLine;
 	}
 
 	public void setFirstLine(Line firstLine) {
 		this.firstLine = firstLine;
+		this.lineIndex = null;
+	}
+
+	/**
+	 * Returns the offset index over this model's lines. The parser builds the
+	 * index as part of every parse, otherwise it's built on first use.
+	 */
+	public LineIndex getLineIndex() {
+		LineIndex index = lineIndex;
+		if (index == null) {
+			index = new LineIndex(firstLine);
+			lineIndex = index;
+		}
+		return index;
+	}
+
+	public void setLineIndex(LineIndex lineIndex) {
+		this.lineIndex = lineIndex;
 	}
 
 	public Map<String, Object> getCustomProperties() {
 		return customProperties;
 	}
 
+	/**
+	 * Returns the properties derived from this model along with the files it
+	 * depends on. These are carried over to the new model when an edited file
+	 * is reparsed, so each entry should record what it was derived from in
+	 * this model (ex. the import settings) and be checked against the current
+	 * model before it's reused.
+	 * 
+	 * @see ModelManager#discardDependentProperties(IFile)
+	 */
+	public Map<String, Object> getDependentProperties() {
+		return dependentProperties;
+	}
+
 }
@@ -1,7 +1,8 @@
 package com.millennialmedia.pyro.model;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
 
 import com.millennialmedia.pyro.internal.parser.Cell;
 import com.millennialmedia.pyro.model.StepSegment.SegmentType;
@@ -10,7 +11,14 @@ import com.millennialmedia.pyro.model.StepSegment.SegmentType;
  * A line in a Robot file representing either a loose setting declaration or a
  * single step in a testcase or keyword definition. Steps will contain a list of
  * {@link StepSegment}.
- * 
+ *
+ * The segments are packed into a pair of arrays sized exactly to them rather
+ * than held as objects, since a workspace's models hold a very large number of
+ * them. The list returned by getSegments() creates segment views on demand.
+ * A copy of a step shares its arrays, and clones them before it's first
+ * modified. Steps are only copied out of published models, which are never
+ * modified, so the step being copied is left untouched.
+ *
  * @author spaxton
  */
 public class Step extends Line {
@@ -18,6 +26,10 @@ public class Step extends Line {
 		STEP, SETTING
 	};
 
+	private static final SegmentType[] SEGMENT_TYPES = SegmentType.values();
+	private static final int[] NO_SEGMENT_DATA = new int[0];
+	private static final String[] NO_SEGMENT_VALUES = new String[0];
+
 	// factory method for a full-line comment - it only adds a comment segment
 	// as the first cell but everything that
 	// consumes the model knows to ignore the rest of the line
@@ -29,11 +41,16 @@ public class Step extends Line {
 		return step;
 	}
 
-	private List<StepSegment> segments = new ArrayList<StepSegment>();
+	// each segment's offset in the line and its type's ordinal (or -1), in
+	// pairs, along with each segment's value
+	private int[] segmentData = NO_SEGMENT_DATA;
+	private String[] segmentValues = NO_SEGMENT_VALUES;
+	// set on a copy while its arrays are still those of the copied step
+	private boolean segmentsShared;
 	private StepType stepType;
 
 	public List<StepSegment> getSegments() {
-		return segments;
+		return new SegmentList();
 	}
 
 	public StepType getStepType() {
@@ -44,4 +61,120 @@ public class Step extends Line {
 		this.stepType = stepType;
 	}
 
+	int getSegmentOffset(int index) {
+		return segmentData[index * 2];
+	}
+
+	String getSegmentValue(int index) {
+		return segmentValues[index];
+	}
+
+	SegmentType getSegmentType(int index) {
+		int ordinal = segmentData[index * 2 + 1];
+		return ordinal >= 0 ? SEGMENT_TYPES[ordinal] : null;
+	}
+
+	void setSegmentType(int index, SegmentType segmentType) {
+		unshareSegments();
+		segmentData[index * 2 + 1] = segmentType != null ? segmentType.ordinal() : -1;
+	}
+
+	/**
+	 * Returns a copy of this step that shares its segments until the copy is
+	 * modified. This step isn't modified, so it's safe to copy steps of a
+	 * model that other threads are reading.
+	 */
+	@Override
+	public Step copy() {
+		Step copy = copyPosition(new Step());
+		copy.segmentData = segmentData;
+		copy.segmentValues = segmentValues;
+		copy.stepType = stepType;
+		copy.segmentsShared = true;
+		return copy;
+	}
+
+	private void unshareSegments() {
+		if (segmentsShared) {
+			segmentData = segmentData.clone();
+			segmentValues = segmentValues.clone();
+			segmentsShared = false;
+		}
+	}
+
+	private StepSegment copySegment(int index) {
+		return new StepSegment(getSegmentOffset(index), getSegmentValue(index), getSegmentType(index));
+	}
+
+	private void storeSegment(int index, int offsetInLine, String value, SegmentType segmentType) {
+		unshareSegments();
+		segmentData[index * 2] = offsetInLine;
+		segmentValues[index] = value;
+		setSegmentType(index, segmentType);
+	}
+
+	private void resizeSegments(int index, int insertedCount) {
+		// the segment at the index is either opened up or removed
+		int count = segmentValues.length;
+		int newCount = count + insertedCount;
+		int tailIndex = insertedCount > 0 ? index : index + 1;
+		int[] newData = new int[newCount * 2];
+		String[] newValues = new String[newCount];
+		System.arraycopy(segmentData, 0, newData, 0, index * 2);
+		System.arraycopy(segmentData, tailIndex * 2, newData, (tailIndex + insertedCount) * 2, (count - tailIndex) * 2);
+		System.arraycopy(segmentValues, 0, newValues, 0, index);
+		System.arraycopy(segmentValues, tailIndex, newValues, tailIndex + insertedCount, count - tailIndex);
+		segmentData = newData;
+		segmentValues = newValues;
+		segmentsShared = false;
+	}
+
+	private class SegmentList extends AbstractList<StepSegment> implements RandomAccess {
+		@Override
+		public StepSegment get(int index) {
+			checkIndex(index, size());
+			return new StepSegment(Step.this, index);
+		}
+
+		@Override
+		public int size() {
+			return segmentValues.length;
+		}
+
+		@Override
+		public StepSegment set(int index, StepSegment segment) {
+			checkIndex(index, size());
+			StepSegment previousSegment = copySegment(index);
+			storeSegment(index, segment.getOffsetInLine(), segment.getValue(), segment.getSegmentType());
+			return previousSegment;
+		}
+
+		@Override
+		public void add(int index, StepSegment segment) {
+			checkIndex(index, size() + 1);
+			// read the segment first, as it may be a view of this step
+			int offsetInLine = segment.getOffsetInLine();
+			String value = segment.getValue();
+			SegmentType segmentType = segment.getSegmentType();
+			resizeSegments(index, 1);
+			storeSegment(index, offsetInLine, value, segmentType);
+			modCount++;
+		}
+
+		@Override
+		public StepSegment remove(int index) {
+			checkIndex(index, size());
+			StepSegment previousSegment = copySegment(index);
+			resizeSegments(index, -1);
+			modCount++;
+			return previousSegment;
+		}
+
+		private void checkIndex(int index, int limit) {
+			if (index < 0 || index >= limit) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			}
+		}
+	}
+
 }
@@ -4,7 +4,12 @@ import com.millennialmedia.pyro.internal.parser.Cell;
 
 /**
  * The model representation of a single cell in a Robot table.
- * 
+ *
+ * Steps store their segments packed into arrays, so the segments obtained
+ * from a step are lightweight views of a position within that step. Changes
+ * made through a view (ex. by a post-processor) go straight to the step. A
+ * segment created by a populator stands alone until it's added to a step.
+ *
  * @author spaxton
  */
 public class StepSegment {
@@ -12,30 +17,71 @@ public class StepSegment {
 		ARGUMENT, COMMENT, KEYWORD_CALL, SETTING_NAME, SETTING_VALUE, VARIABLE, LOOP_CONSTRUCT, CONTROL_ARGUMENT, CONTINUATION, UNKNOWN
 	};
 
-	private Cell cell;
+	// the step and position viewed, or null for a standalone segment
+	private Step step;
+	private int index;
+
+	private int offsetInLine;
+	private String value;
 	private SegmentType segmentType;
 
 	public StepSegment(Cell cell) {
-		this.cell = cell;
+		this.offsetInLine = cell.getOffsetInRow();
+		this.value = cell.getParsedContents();
+	}
+
+	StepSegment(Step step, int index) {
+		this.step = step;
+		this.index = index;
+	}
+
+	StepSegment(int offsetInLine, String value, SegmentType segmentType) {
+		this.offsetInLine = offsetInLine;
+		this.value = value;
+		this.segmentType = segmentType;
 	}
 
 	public int getOffsetInLine() {
-		return cell.getOffsetInRow();
+		return step != null ? step.getSegmentOffset(index) : offsetInLine;
 	}
 
 	public String getValue() {
-		return cell.getParsedContents();
+		return step != null ? step.getSegmentValue(index) : value;
 	}
 
+	/**
+	 * Returns a new cell with this segment's offset and contents.
+	 */
 	public Cell getCell() {
+		Cell cell = new Cell();
+		cell.setOffsetInRow(getOffsetInLine());
+		cell.setParsedContents(getValue());
 		return cell;
 	}
 
 	public SegmentType getSegmentType() {
-		return segmentType;
+		return step != null ? step.getSegmentType(index) : segmentType;
 	}
 
 	public void setSegmentType(SegmentType segmentType) {
-		this.segmentType = segmentType;
+		if (step != null) {
+			step.setSegmentType(index, segmentType);
+		} else {
+			this.segmentType = segmentType;
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (step == null || !(obj instanceof StepSegment)) {
+			return this == obj;
+		}
+		StepSegment other = (StepSegment) obj;
+		return step == other.step && index == other.index;
+	}
+
+	@Override
+	public int hashCode() {
+		return step != null ? System.identityHashCode(step) * 31 + index : System.identityHashCode(this);
 	}
 }
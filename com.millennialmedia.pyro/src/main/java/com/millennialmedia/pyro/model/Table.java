@@ -37,4 +37,16 @@ public class Table extends Line {
 		return tableLines;
 	}
 
+	/**
+	 * Returns a copy of this table header. The copy's table lines are left
+	 * empty, to be filled in with the copies of this table's lines.
+	 */
+	@Override
+	public Table copy() {
+		Table copy = copyPosition(new Table());
+		copy.tableName = tableName;
+		copy.tableType = tableType;
+		return copy;
+	}
+
 }
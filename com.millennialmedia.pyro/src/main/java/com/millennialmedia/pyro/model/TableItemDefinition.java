@@ -50,4 +50,17 @@ public class TableItemDefinition extends Line {
 		this.nameLength = nameLength;
 	}
 
+	/**
+	 * Returns a copy of this definition line. The copy's steps are left empty,
+	 * to be filled in with the copies of this definition's steps.
+	 */
+	@Override
+	public TableItemDefinition copy() {
+		TableItemDefinition copy = copyPosition(new TableItemDefinition());
+		copy.itemType = itemType;
+		copy.name = name;
+		copy.nameLength = nameLength;
+		return copy;
+	}
+
 }
@@ -13,6 +13,17 @@ import com.millennialmedia.pyro.model.RobotModel;
  * Contributed classes are executed in priority order (lowest goes first) and
  * priority values must be unique across all plugin contributions.
  * 
+ * When a single testcase or keyword is reparsed after an edit, the
+ * post-processors are run against a partial model holding only the settings
+ * tables and the newly-parsed lines. Implementations should therefore only
+ * modify the lines reachable from the model they're given, and must tolerate
+ * seeing the same settings tables more than once.
+ * 
+ * A single instance of each contributed class is shared by all parses, which
+ * may run concurrently on different threads. Implementations must be
+ * stateless, keeping any working state in local variables or in the model
+ * itself.
+ * 
  * @author spaxton
  */
 public abstract class AbstractModelPostProcessor {
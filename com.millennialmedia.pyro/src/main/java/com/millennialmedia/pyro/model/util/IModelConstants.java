@@ -11,11 +11,13 @@ import java.util.Set;
  */
 public interface IModelConstants {
 	String PROPSKEY_KEYWORD_NAME_TO_DEFINITION_MAP = "KEYWORDS_MAP";
+	String PROPSKEY_KEYWORD_MATCHER = "KEYWORD_MATCHER";
 	String PROPSKEY_RESOURCE_FILE_PATHS = "RESOURCE_FILE_PATHS";
 	String PROPSKEY_VARIABLE_FILE_PATHS = "VARIABLE_FILE_PATHS";
 	String PROPSKEY_LIBRARY_NAME_TO_PATH_MAP = "LIBRARY_NAME_TO_PATH_MAP";
 	String PROPSKEY_ORDERED_LIBRARY_PATHS = "ORDERED_LIBRARY_PATHS";
 	String PROPSKEY_VARIABLE_TABLE_VARS = "VARIABLE_TABLE_VARS";
+	String PROPSKEY_MODEL_SUMMARY = "MODEL_SUMMARY";
 
 	String GIVEN = "given";
 	String WHEN = "when";
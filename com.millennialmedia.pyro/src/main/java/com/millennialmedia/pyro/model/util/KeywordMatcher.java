@@ -0,0 +1,165 @@
+package com.millennialmedia.pyro.model.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves keyword calls against a set of keyword definitions. Each
+ * definition's name is normalized once when it's added. Plain names are then
+ * found with a hash lookup, while names with embedded arguments (ex.
+ * "Open ${page} page") are compiled into a pattern once and only tried when
+ * no plain name matches.
+ *
+ * @author spaxton
+ */
+public class KeywordMatcher<T> {
+	private static final Pattern EMBEDDED_ARGUMENT_PATTERN = Pattern.compile("\\$\\{[^\\{]*\\}");
+
+	/**
+	 * The result of a successful match, capturing the definition along with
+	 * the portion of the call string (after any BDD prefixes) that matched it.
+	 */
+	public static class Match<T> {
+		private T definition;
+		private String keywordName;
+		private int offset;
+
+		Match(T definition, String keywordName, int offset) {
+			this.definition = definition;
+			this.keywordName = keywordName;
+			this.offset = offset;
+		}
+
+		public T getDefinition() {
+			return definition;
+		}
+
+		public String getKeywordName() {
+			return keywordName;
+		}
+
+		/**
+		 * Offset of the matched keyword name within the original call string.
+		 */
+		public int getOffset() {
+			return offset;
+		}
+	}
+
+	private boolean allowEmbeddedArguments;
+	private Map<String, T> plainNames = new HashMap<String, T>();
+	private List<String> embeddedNamePrefixes = new ArrayList<String>();
+	private List<Pattern> embeddedNamePatterns = new ArrayList<Pattern>();
+	private List<T> embeddedNameDefinitions = new ArrayList<T>();
+
+	/**
+	 * @param allowEmbeddedArguments
+	 *            whether "${var}" portions of definition names should match
+	 *            any text (true for user keywords, false for library keywords)
+	 */
+	public KeywordMatcher(boolean allowEmbeddedArguments) {
+		this.allowEmbeddedArguments = allowEmbeddedArguments;
+	}
+
+	/**
+	 * Adds a keyword definition. If several definitions share a normalized
+	 * name, the first one added wins.
+	 */
+	public void addKeyword(String keywordName, T definition) {
+		String normalizedName = ModelUtil.normalizeKeywordName(keywordName, false);
+		Matcher matcher = EMBEDDED_ARGUMENT_PATTERN.matcher(normalizedName);
+		if (allowEmbeddedArguments && matcher.find()) {
+			String prefix = normalizedName.substring(0, matcher.start());
+			StringBuilder regex = new StringBuilder();
+			int literalStart = 0;
+			do {
+				if (matcher.start() > literalStart) {
+					regex.append(Pattern.quote(normalizedName.substring(literalStart, matcher.start())));
+				}
+				regex.append(".*?");
+				literalStart = matcher.end();
+			} while (matcher.find());
+			if (literalStart < normalizedName.length()) {
+				regex.append(Pattern.quote(normalizedName.substring(literalStart)));
+			}
+
+			embeddedNamePrefixes.add(prefix);
+			embeddedNamePatterns.add(Pattern.compile(regex.toString()));
+			embeddedNameDefinitions.add(definition);
+		} else if (!plainNames.containsKey(normalizedName)) {
+			plainNames.put(normalizedName, definition);
+		}
+	}
+
+	public void addKeywords(Map<String, ? extends T> definitions) {
+		for (Map.Entry<String, ? extends T> entry : definitions.entrySet()) {
+			addKeyword(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Finds the definition for the given keyword name, without considering any
+	 * BDD prefixes.
+	 */
+	public T get(String keywordName) {
+		return getNormalized(ModelUtil.normalizeKeywordName(keywordName, false));
+	}
+
+	/**
+	 * Finds the definition called by the given keyword call string. The full
+	 * string is tried first, then the remainder after each leading BDD prefix
+	 * ("Given", "When", "Then", "And") is stripped off in turn.
+	 */
+	public Match<T> match(String keywordCall) {
+		int start = 0;
+		while (true) {
+			String candidate = start == 0 ? keywordCall : keywordCall.substring(start);
+			T definition = get(candidate);
+			if (definition != null) {
+				return new Match<T>(definition, candidate, start);
+			}
+
+			// advance past the next word if it's a BDD prefix
+			int wordEnd = keywordCall.indexOf(' ', start);
+			if (wordEnd < 0 || !isBDDPrefix(keywordCall, start, wordEnd)) {
+				return null;
+			}
+			start = wordEnd;
+			while (start < keywordCall.length() && keywordCall.charAt(start) == ' ') {
+				start++;
+			}
+		}
+	}
+
+	public boolean isEmpty() {
+		return plainNames.isEmpty() && embeddedNamePatterns.isEmpty();
+	}
+
+	private T getNormalized(String normalizedName) {
+		T definition = plainNames.get(normalizedName);
+		if (definition != null) {
+			return definition;
+		}
+		for (int i = 0; i < embeddedNamePatterns.size(); i++) {
+			if (normalizedName.startsWith(embeddedNamePrefixes.get(i))
+					&& embeddedNamePatterns.get(i).matcher(normalizedName).matches()) {
+				return embeddedNameDefinitions.get(i);
+			}
+		}
+		return null;
+	}
+
+	private static boolean isBDDPrefix(String keywordCall, int start, int end) {
+		for (String prefix : IModelConstants.BDD_PREFIXES) {
+			if (prefix.length() == end - start && keywordCall.regionMatches(true, start, prefix, 0, prefix.length())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
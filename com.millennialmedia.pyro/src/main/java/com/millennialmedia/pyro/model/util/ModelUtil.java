@@ -5,9 +5,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 
 import com.millennialmedia.pyro.model.Line;
+import com.millennialmedia.pyro.model.ModelSummary;
 import com.millennialmedia.pyro.model.RobotModel;
 import com.millennialmedia.pyro.model.Step;
 import com.millennialmedia.pyro.model.Step.StepType;
@@ -47,6 +47,36 @@ public class ModelUtil {
 		return keywordsMap;
 	}
 
+	/**
+	 * Returns a matcher for resolving keyword calls against the keywords
+	 * defined in the given model.
+	 */
+	@SuppressWarnings("unchecked")
+	public static KeywordMatcher<TableItemDefinition> getKeywordMatcher(RobotModel model) {
+		if (model.getCustomProperties().containsKey(IModelConstants.PROPSKEY_KEYWORD_MATCHER)) {
+			return (KeywordMatcher<TableItemDefinition>) model.getCustomProperties().get(
+					IModelConstants.PROPSKEY_KEYWORD_MATCHER);
+		}
+
+		KeywordMatcher<TableItemDefinition> matcher = new KeywordMatcher<TableItemDefinition>(true);
+		matcher.addKeywords(getKeywords(model));
+		model.getCustomProperties().put(IModelConstants.PROPSKEY_KEYWORD_MATCHER, matcher);
+		return matcher;
+	}
+
+	/**
+	 * Returns a summary of the given model, as used for dependency lookups.
+	 */
+	public static ModelSummary getSummary(RobotModel model) {
+		if (model.getCustomProperties().containsKey(IModelConstants.PROPSKEY_MODEL_SUMMARY)) {
+			return (ModelSummary) model.getCustomProperties().get(IModelConstants.PROPSKEY_MODEL_SUMMARY);
+		}
+
+		ModelSummary summary = new ModelSummary(model);
+		model.getCustomProperties().put(IModelConstants.PROPSKEY_MODEL_SUMMARY, summary);
+		return summary;
+	}
+
 	public static List<String> getResourceFilePaths(RobotModel model) {
 		return getSettingFilePaths(model, "Resource", IModelConstants.PROPSKEY_RESOURCE_FILE_PATHS);
 	}
@@ -178,36 +208,16 @@ public class ModelUtil {
 	}
 
 	public static Table getContainingTable(RobotModel model, int offset) {
-		Line line = model.getFirstLine();
-		Table lastTable = null;
-		while (line != null && line.getLineOffset() <= offset) {
-			if (line instanceof Table) {
-				lastTable = (Table) line;
-			}
-			line = line.getNextLine();
-		}
-		return lastTable;
+		return model.getLineIndex().getContainingTable(offset);
 	}
 
 	public static TableItemDefinition getContainingTableItem(RobotModel model, int offset,
-			TableItemDefinition.TableItemType tableItemType) {
-		Line line = model.getFirstLine();
-		Table lastTable = null;
-		TableItemDefinition lastTableItem = null;
-		while (line != null && line.getLineOffset() <= offset) {
-			if (line instanceof Table) {
-				lastTable = (Table) line;
-			} else if (line instanceof TableItemDefinition) {
-				if ((TableItemType.KEYWORD == tableItemType && lastTable.getTableType() == TableType.KEYWORD)
-						|| (TableItemType.TESTCASE == tableItemType && lastTable.getTableType() == TableType.TESTCASE)) {
-					lastTableItem = (TableItemDefinition) line;
-				} else {
-					lastTableItem = null;
-				}
-			}
-			line = line.getNextLine();
+			TableItemType tableItemType) {
+		TableItemDefinition tableItem = model.getLineIndex().getContainingTableItem(offset);
+		if (tableItem != null && tableItem.getItemType() == tableItemType) {
+			return tableItem;
 		}
-		return lastTableItem;
+		return null;
 	}
 
 	/**
@@ -217,7 +227,8 @@ public class ModelUtil {
 	 * in which a keyword call is made (ex. defined test variables, etc.)
 	 */
 	public static Map<TableItemDefinition, List<Step>> getLocalKeywordCallersMap(RobotModel model, String keywordName) {
-		String targetKeywordPattern = normalizeKeywordName(keywordName, true);
+		KeywordMatcher<String> targetKeywordMatcher = new KeywordMatcher<String>(true);
+		targetKeywordMatcher.addKeyword(keywordName, keywordName);
 		Map<TableItemDefinition, List<Step>> callersMap = new HashMap<TableItemDefinition, List<Step>>();
 		for (Table table : model.getTables()) {
 			if (table.getTableType() == TableType.TESTCASE || table.getTableType() == TableType.KEYWORD) {
@@ -226,20 +237,15 @@ public class ModelUtil {
 						TableItemDefinition tableItem = (TableItemDefinition) line;
 						for (Step step : tableItem.getSteps()) {
 							for (StepSegment segment : step.getSegments()) {
-								if (segment.getSegmentType() == SegmentType.KEYWORD_CALL) {
-									Set<String> possibleKeywordNames = getCandidateKeywordStrings(segment.getValue())
-											.keySet();
-									for (String possibleKeywordName : possibleKeywordNames)
-										if (normalizeKeywordName(possibleKeywordName, false).matches(
-												targetKeywordPattern)) {
-											if (callersMap.containsKey(tableItem)) {
-												callersMap.get(tableItem).add(step);
-											} else {
-												List<Step> steps = new ArrayList<Step>();
-												steps.add(step);
-												callersMap.put(tableItem, steps);
-											}
-										}
+								if (segment.getSegmentType() == SegmentType.KEYWORD_CALL
+										&& targetKeywordMatcher.match(segment.getValue()) != null) {
+									if (callersMap.containsKey(tableItem)) {
+										callersMap.get(tableItem).add(step);
+									} else {
+										List<Step> steps = new ArrayList<Step>();
+										steps.add(step);
+										callersMap.put(tableItem, steps);
+									}
 								}
 							}
 						}
@@ -0,0 +1,85 @@
+package com.millennialmedia.pyro.python;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A name defined by a Python module: a class, a function or a variable. Classes
+ * carry the names of their base classes as written in the source (ex.
+ * "Base" or "module.Base"), and the functions and classes defined directly in
+ * their bodies.
+ *
+ * @author spaxton
+ */
+public class PythonDefinition {
+	public enum DefinitionType {
+		CLASS, FUNCTION, VARIABLE
+	}
+
+	private DefinitionType type;
+	private String name;
+	private int line;
+	private int column;
+	private List<String> baseClasses = new ArrayList<String>();
+	private List<PythonDefinition> members = new ArrayList<PythonDefinition>();
+
+	PythonDefinition(DefinitionType type, String name, int line, int column) {
+		this.type = type;
+		this.name = name;
+		this.line = line;
+		this.column = column;
+	}
+
+	public DefinitionType getType() {
+		return type;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the 1-based line of the defined name
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * @return the 1-based column of the defined name
+	 */
+	public int getColumn() {
+		return column;
+	}
+
+	public List<String> getBaseClasses() {
+		return Collections.unmodifiableList(baseClasses);
+	}
+
+	public List<PythonDefinition> getMembers() {
+		return Collections.unmodifiableList(members);
+	}
+
+	/**
+	 * @return the first member with the given name (ignoring case), or null if
+	 *         there's none
+	 */
+	public PythonDefinition findMember(String name) {
+		return PythonModuleOutline.findDefinition(members, name);
+	}
+
+	void addBaseClass(String baseClass) {
+		baseClasses.add(baseClass);
+	}
+
+	void addMember(PythonDefinition member) {
+		members.add(member);
+	}
+
+	@Override
+	public String toString() {
+		return type + " " + name + " (" + line + ":" + column + ")";
+	}
+
+}
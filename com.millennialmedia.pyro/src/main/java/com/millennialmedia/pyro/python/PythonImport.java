@@ -0,0 +1,54 @@
+package com.millennialmedia.pyro.python;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A module-level import statement. For "import a.b, c" the module is null and
+ * the names are the imported modules. For "from a import b, c" the module is
+ * "a" (including any leading dots of a relative import) and the names are the
+ * imported names, or empty for a wildcard import. Aliases given with "as" are
+ * dropped.
+ *
+ * @author spaxton
+ */
+public class PythonImport {
+	private String module;
+	private List<String> names = new ArrayList<String>();
+	private int line;
+
+	PythonImport(String module, int line) {
+		this.module = module;
+		this.line = line;
+	}
+
+	public String getModule() {
+		return module;
+	}
+
+	public List<String> getNames() {
+		return Collections.unmodifiableList(names);
+	}
+
+	public boolean isWildcard() {
+		return module != null && names.isEmpty();
+	}
+
+	/**
+	 * @return the 1-based line of the import statement
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	void addName(String name) {
+		names.add(name);
+	}
+
+	@Override
+	public String toString() {
+		return module == null ? "import " + names : "from " + module + " import " + (names.isEmpty() ? "*" : names);
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.millennialmedia.pyro.python;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.millennialmedia.pyro.python.PythonDefinition.DefinitionType;
+
+/**
+ * The module-level structure of a Python source file as extracted by the
+ * {@link PythonSourceScanner}: its classes, functions and variables in source
+ * order, its imports, and the names listed in its __all__ assignment.
+ * Definitions nested inside functions aren't included.
+ *
+ * @author spaxton
+ */
+public class PythonModuleOutline {
+	private List<PythonDefinition> definitions = new ArrayList<PythonDefinition>();
+	private List<PythonImport> imports = new ArrayList<PythonImport>();
+	private List<String> allNames;
+	private Set<String> variableNames = new HashSet<String>();
+
+	PythonModuleOutline() {
+	}
+
+	/**
+	 * @return the module-level classes, functions and variables in source
+	 *         order. A variable assigned more than once is only listed at its
+	 *         first assignment.
+	 */
+	public List<PythonDefinition> getDefinitions() {
+		return Collections.unmodifiableList(definitions);
+	}
+
+	public List<PythonDefinition> getDefinitions(DefinitionType type) {
+		List<PythonDefinition> typedDefinitions = new ArrayList<PythonDefinition>();
+		for (PythonDefinition definition : definitions) {
+			if (definition.getType() == type) {
+				typedDefinitions.add(definition);
+			}
+		}
+		return typedDefinitions;
+	}
+
+	/**
+	 * @return the first module-level definition with the given name (ignoring
+	 *         case), or null if there's none
+	 */
+	public PythonDefinition findDefinition(String name) {
+		return findDefinition(definitions, name);
+	}
+
+	public List<PythonImport> getImports() {
+		return Collections.unmodifiableList(imports);
+	}
+
+	/**
+	 * Checks whether the given name (ignoring case) is bound at module level,
+	 * either by a definition or by an import.
+	 */
+	public boolean isGlobalName(String name) {
+		if (findDefinition(name) != null) {
+			return true;
+		}
+		for (PythonImport pythonImport : imports) {
+			for (String importedName : pythonImport.getNames()) {
+				if (name.equalsIgnoreCase(importedName)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the string literals in the list or tuple assigned to __all__
+	 *         (empty if any other value is assigned), or null if the module
+	 *         doesn't assign __all__
+	 */
+	public List<String> getAllNames() {
+		return allNames == null ? null : Collections.unmodifiableList(allNames);
+	}
+
+	void addDefinition(PythonDefinition definition) {
+		if (definition.getType() == DefinitionType.VARIABLE && !variableNames.add(definition.getName())) {
+			return;
+		}
+		definitions.add(definition);
+	}
+
+	void addImport(PythonImport pythonImport) {
+		imports.add(pythonImport);
+	}
+
+	void setAllNames(List<String> allNames) {
+		this.allNames = allNames;
+	}
+
+	static PythonDefinition findDefinition(List<PythonDefinition> definitions, String name) {
+		for (PythonDefinition definition : definitions) {
+			if (name.equalsIgnoreCase(definition.getName())) {
+				return definition;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,618 @@
+package com.millennialmedia.pyro.python;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.millennialmedia.pyro.python.PythonDefinition.DefinitionType;
+
+/**
+ * Extracts a {@link PythonModuleOutline} from Python source in a single pass,
+ * without building a syntax tree. The source is split into logical lines
+ * (joining bracketed and backslash-continued lines, and skipping strings and
+ * comments), and only the statements that define module-level names are
+ * looked at: class and function definitions, imports, and assignments.
+ * Indentation is tracked to tell methods from module-level functions and to
+ * skip the bodies of functions entirely.
+ *
+ * This is much cheaper than a full parse, and tolerant of anything it doesn't
+ * understand, including syntax errors and both Python 2 and 3 syntax.
+ *
+ * @author spaxton
+ */
+public class PythonSourceScanner {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int TOKEN_NAME = 0;
+	private static final int TOKEN_STRING = 1;
+	private static final int TOKEN_OPERATOR = 2;
+	private static final int TOKEN_OTHER = 3;
+
+	// longest first, so the first match wins
+	private static final String[] OPERATORS = { "**=", "//=", ">>=", "<<=", "...", "->", ":=", "==", "!=", "<>",
+			"<=", ">=", "+=", "-=", "*=", "/=", "%=", "&=", "|=", "^=", "@=", "**", "//", "<<", ">>" };
+
+	// keywords that can start a statement containing a top-level "="
+	private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList("assert", "elif", "else", "except",
+			"exec", "finally", "for", "if", "lambda", "print", "return", "try", "while", "with", "yield"));
+	private static final Set<String> COMPOUND_KEYWORDS = new HashSet<String>(Arrays.asList("elif", "else", "except",
+			"finally", "for", "if", "try", "while", "with"));
+
+	private static final int TAB_SIZE = 8;
+
+	private String source;
+	private int length;
+	private int position;
+	private int line = 1;
+	private int lineStart;
+	private int depth;
+
+	// the tokens of the current logical line, as parallel arrays
+	private int tokenCount;
+	private int[] tokenTypes = new int[64];
+	private int[] tokenStarts = new int[64];
+	private int[] tokenEnds = new int[64];
+	private int[] tokenLines = new int[64];
+	private int[] tokenColumns = new int[64];
+	private int[] tokenDepths = new int[64];
+
+	// the enclosing class and function definitions of the current line
+	private List<PythonDefinition> scopes = new ArrayList<PythonDefinition>();
+	private List<Integer> scopeIndents = new ArrayList<Integer>();
+
+	private PythonModuleOutline outline = new PythonModuleOutline();
+
+	private PythonSourceScanner(String source) {
+		this.source = source;
+		this.length = source.length();
+		if (length > 0 && source.charAt(0) == '\uFEFF') {
+			position = 1;
+			lineStart = 1;
+		}
+	}
+
+	public static PythonModuleOutline scan(String source) {
+		PythonSourceScanner scanner = new PythonSourceScanner(source);
+		scanner.scanModule();
+		return scanner.outline;
+	}
+
+	/**
+	 * Scans the given file, decoded as UTF-8 (the Python 3 default). Other
+	 * encodings only garble string contents, never the structure.
+	 */
+	public static PythonModuleOutline scan(File file) throws IOException {
+		InputStream stream = new FileInputStream(file);
+		try {
+			byte[] bytes = new byte[(int) Math.max(file.length(), 16)];
+			int count = 0;
+			int read;
+			while ((read = stream.read(bytes, count, bytes.length - count)) >= 0) {
+				count += read;
+				if (count == bytes.length) {
+					bytes = Arrays.copyOf(bytes, bytes.length * 2);
+				}
+			}
+			return scan(new String(bytes, 0, count, UTF8));
+		} finally {
+			stream.close();
+		}
+	}
+
+	private void scanModule() {
+		while (position < length) {
+			int indent = readIndent();
+			if (position >= length) {
+				break;
+			}
+			char c = source.charAt(position);
+			if (c == '#' || c == '\n' || c == '\r') {
+				// blank or comment-only lines don't affect indentation
+				skipToNextLine();
+				continue;
+			}
+
+			while (!scopes.isEmpty() && scopeIndents.get(scopes.size() - 1) >= indent) {
+				scopes.remove(scopes.size() - 1);
+				scopeIndents.remove(scopeIndents.size() - 1);
+			}
+			PythonDefinition scope = scopes.isEmpty() ? null : scopes.get(scopes.size() - 1);
+
+			// nothing inside a function body is of interest, so its lines are
+			// only scanned for their extent
+			boolean inFunction = scope != null && scope.getType() == DefinitionType.FUNCTION;
+			readLogicalLine(!inFunction);
+			if (!inFunction && tokenCount > 0) {
+				handleStatement(indent, scope);
+			}
+		}
+	}
+
+	private int readIndent() {
+		int indent = 0;
+		while (position < length) {
+			char c = source.charAt(position);
+			if (c == ' ') {
+				indent++;
+			} else if (c == '\t') {
+				indent = (indent / TAB_SIZE + 1) * TAB_SIZE;
+			} else if (c == '\f') {
+				indent = 0;
+			} else {
+				break;
+			}
+			position++;
+		}
+		return indent;
+	}
+
+	private void skipToNextLine() {
+		while (position < length) {
+			char c = source.charAt(position++);
+			if (c == '\n' || c == '\r') {
+				if (c == '\r' && position < length && source.charAt(position) == '\n') {
+					position++;
+				}
+				newLine();
+				return;
+			}
+		}
+	}
+
+	private void newLine() {
+		line++;
+		lineStart = position;
+	}
+
+	/**
+	 * Tokenizes up to the end of the current logical line, leaving the position
+	 * at the start of the next one.
+	 */
+	private void readLogicalLine(boolean recordTokens) {
+		tokenCount = 0;
+		depth = 0;
+		while (position < length) {
+			char c = source.charAt(position);
+			if (c == '\n' || c == '\r') {
+				skipToNextLine();
+				if (depth == 0) {
+					return;
+				}
+			} else if (c == ' ' || c == '\t' || c == '\f') {
+				position++;
+			} else if (c == '#') {
+				while (position < length && source.charAt(position) != '\n' && source.charAt(position) != '\r') {
+					position++;
+				}
+			} else if (c == '\\') {
+				// an explicit line continuation
+				position++;
+				if (position < length && (source.charAt(position) == '\n' || source.charAt(position) == '\r')) {
+					skipToNextLine();
+				}
+			} else if (c == '"' || c == '\'') {
+				int start = position;
+				int startLine = line;
+				int startColumn = position - lineStart + 1;
+				readString();
+				addToken(recordTokens, TOKEN_STRING, start, startLine, startColumn);
+			} else if (isNameStart(c)) {
+				int start = position;
+				int startColumn = position - lineStart + 1;
+				while (position < length && isNamePart(source.charAt(position))) {
+					position++;
+				}
+				if (position < length && (source.charAt(position) == '"' || source.charAt(position) == '\'')
+						&& isStringPrefix(start, position)) {
+					int startLine = line;
+					readString();
+					addToken(recordTokens, TOKEN_STRING, start, startLine, startColumn);
+				} else {
+					addToken(recordTokens, TOKEN_NAME, start, line, startColumn);
+				}
+			} else if (c >= '0' && c <= '9' || c == '.' && position + 1 < length
+					&& Character.isDigit(source.charAt(position + 1))) {
+				int start = position;
+				while (position < length && (isNamePart(source.charAt(position)) || source.charAt(position) == '.')) {
+					position++;
+				}
+				addToken(recordTokens, TOKEN_OTHER, start, line, start - lineStart + 1);
+			} else {
+				int start = position;
+				position += getOperatorLength();
+				if (c == '(' || c == '[' || c == '{') {
+					addToken(recordTokens, TOKEN_OPERATOR, start, line, start - lineStart + 1);
+					depth++;
+				} else if (c == ')' || c == ']' || c == '}') {
+					depth = Math.max(0, depth - 1);
+					addToken(recordTokens, TOKEN_OPERATOR, start, line, start - lineStart + 1);
+				} else {
+					addToken(recordTokens, TOKEN_OPERATOR, start, line, start - lineStart + 1);
+				}
+			}
+		}
+	}
+
+	private int getOperatorLength() {
+		for (String operator : OPERATORS) {
+			if (source.startsWith(operator, position)) {
+				return operator.length();
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * Skips a string literal starting at the current quote, including
+	 * triple-quoted strings spanning several lines. Unterminated single-quoted
+	 * strings end at the end of their line.
+	 */
+	private void readString() {
+		char quote = source.charAt(position);
+		boolean triple = source.startsWith(quote == '"' ? "\"\"\"" : "'''", position);
+		position += triple ? 3 : 1;
+		while (position < length) {
+			char c = source.charAt(position);
+			if (c == '\\') {
+				position++;
+				if (position < length) {
+					char escaped = source.charAt(position);
+					if (escaped == '\n' || escaped == '\r') {
+						skipToNextLine();
+						continue;
+					}
+				}
+				position++;
+			} else if (c == quote) {
+				if (!triple) {
+					position++;
+					return;
+				} else if (source.startsWith(quote == '"' ? "\"\"\"" : "'''", position)) {
+					position += 3;
+					return;
+				}
+				position++;
+			} else if (c == '\n' || c == '\r') {
+				if (!triple) {
+					return;
+				}
+				skipToNextLine();
+			} else {
+				position++;
+			}
+		}
+	}
+
+	private boolean isStringPrefix(int start, int end) {
+		if (end - start > 2) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			if ("rRbBuUfF".indexOf(source.charAt(i)) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isNameStart(char c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || c > 127 && Character.isLetter(c);
+	}
+
+	private static boolean isNamePart(char c) {
+		return isNameStart(c) || c >= '0' && c <= '9' || c > 127 && Character.isLetterOrDigit(c);
+	}
+
+	private void addToken(boolean record, int type, int start, int tokenLine, int tokenColumn) {
+		if (!record) {
+			return;
+		}
+		if (tokenCount == tokenTypes.length) {
+			int capacity = tokenCount * 2;
+			tokenTypes = Arrays.copyOf(tokenTypes, capacity);
+			tokenStarts = Arrays.copyOf(tokenStarts, capacity);
+			tokenEnds = Arrays.copyOf(tokenEnds, capacity);
+			tokenLines = Arrays.copyOf(tokenLines, capacity);
+			tokenColumns = Arrays.copyOf(tokenColumns, capacity);
+			tokenDepths = Arrays.copyOf(tokenDepths, capacity);
+		}
+		tokenTypes[tokenCount] = type;
+		tokenStarts[tokenCount] = start;
+		tokenEnds[tokenCount] = position;
+		tokenLines[tokenCount] = tokenLine;
+		tokenColumns[tokenCount] = tokenColumn;
+		tokenDepths[tokenCount] = depth;
+		tokenCount++;
+	}
+
+	private void handleStatement(int indent, PythonDefinition scope) {
+		int index = 0;
+		if (isToken(index, TOKEN_NAME, "async")) {
+			index++;
+		}
+
+		if (isToken(index, TOKEN_NAME, "def") && isType(index + 1, TOKEN_NAME)) {
+			PythonDefinition function = newDefinition(DefinitionType.FUNCTION, index + 1);
+			addDefinition(function, scope);
+			pushScope(function, indent);
+		} else if (isToken(index, TOKEN_NAME, "class") && isType(index + 1, TOKEN_NAME)) {
+			PythonDefinition pythonClass = newDefinition(DefinitionType.CLASS, index + 1);
+			if (isToken(index + 2, TOKEN_OPERATOR, "(")) {
+				readBaseClasses(pythonClass, index + 3);
+			}
+			addDefinition(pythonClass, scope);
+			pushScope(pythonClass, indent);
+		} else if (scope == null) {
+			// imports and variables are only of interest at module level
+			int start = 0;
+			if (isType(0, TOKEN_NAME) && COMPOUND_KEYWORDS.contains(getText(0))) {
+				// a simple statement may follow a block header on the same line
+				// (ex. "try: import json")
+				start = findBlockBody();
+			}
+			if (start < 0) {
+				return;
+			} else if (isToken(start, TOKEN_NAME, "import")) {
+				readImport(start);
+			} else if (isToken(start, TOKEN_NAME, "from")) {
+				readFromImport(start);
+			} else {
+				readAssignment(start);
+			}
+		}
+	}
+
+	/**
+	 * @return the index of the first token after the block header's colon, or
+	 *         -1 if there's none
+	 */
+	private int findBlockBody() {
+		for (int index = 1; index < tokenCount; index++) {
+			if (tokenDepths[index] == 0 && isOperator(index, ":")) {
+				return index + 1;
+			}
+			if (isToken(index, TOKEN_NAME, "lambda")) {
+				// the colon may belong to the lambda
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	private void addDefinition(PythonDefinition definition, PythonDefinition scope) {
+		if (scope == null) {
+			outline.addDefinition(definition);
+		} else {
+			scope.addMember(definition);
+		}
+	}
+
+	private void pushScope(PythonDefinition definition, int indent) {
+		scopes.add(definition);
+		scopeIndents.add(indent);
+	}
+
+	private void readBaseClasses(PythonDefinition pythonClass, int index) {
+		// only plain and dotted names are kept, not keyword arguments (ex.
+		// metaclass=...) or other expressions
+		StringBuilder baseClass = new StringBuilder();
+		boolean simple = true;
+		for (; index < tokenCount; index++) {
+			boolean end = tokenDepths[index] == 0;
+			if (end || tokenDepths[index] == 1 && isOperator(index, ",")) {
+				if (simple && baseClass.length() > 0) {
+					pythonClass.addBaseClass(baseClass.toString());
+				}
+				if (end) {
+					return;
+				}
+				baseClass.setLength(0);
+				simple = true;
+			} else if (tokenDepths[index] == 1 && isType(index, TOKEN_NAME) && !isType(index - 1, TOKEN_NAME)
+					|| tokenDepths[index] == 1 && isOperator(index, ".")) {
+				baseClass.append(getText(index));
+			} else {
+				simple = false;
+			}
+		}
+	}
+
+	private void readImport(int start) {
+		PythonImport pythonImport = new PythonImport(null, tokenLines[start]);
+		int index = start + 1;
+		while (index < tokenCount) {
+			StringBuilder name = new StringBuilder();
+			index = readDottedName(index, name);
+			if (name.length() > 0) {
+				pythonImport.addName(name.toString());
+			}
+			index = skipAlias(index);
+			if (!isOperator(index, ",")) {
+				break;
+			}
+			index++;
+		}
+		outline.addImport(pythonImport);
+	}
+
+	private void readFromImport(int start) {
+		StringBuilder module = new StringBuilder();
+		int index = start + 1;
+		while (isOperator(index, ".") || isOperator(index, "...")) {
+			module.append(getText(index++));
+		}
+		index = readDottedName(index, module);
+		if (!isToken(index, TOKEN_NAME, "import")) {
+			return;
+		}
+		index++;
+
+		PythonImport pythonImport = new PythonImport(module.toString(), tokenLines[start]);
+		if (!isOperator(index, "*")) {
+			if (isOperator(index, "(")) {
+				index++;
+			}
+			while (isType(index, TOKEN_NAME)) {
+				pythonImport.addName(getText(index++));
+				index = skipAlias(index);
+				if (!isOperator(index, ",")) {
+					break;
+				}
+				index++;
+			}
+		}
+		outline.addImport(pythonImport);
+	}
+
+	private int readDottedName(int index, StringBuilder name) {
+		while (isType(index, TOKEN_NAME) && !isToken(index, TOKEN_NAME, "import")) {
+			name.append(getText(index++));
+			if (!isOperator(index, ".")) {
+				break;
+			}
+			name.append('.');
+			index++;
+		}
+		return index;
+	}
+
+	private int skipAlias(int index) {
+		if (isToken(index, TOKEN_NAME, "as") && isType(index + 1, TOKEN_NAME)) {
+			return index + 2;
+		}
+		return index;
+	}
+
+	/**
+	 * Records the names assigned by a (possibly chained) assignment. Each
+	 * target may be a single name, an annotated name, or a list of names (ex.
+	 * "a, b = 1, 2"). Anything else, like an attribute or subscript target,
+	 * ends the assignment.
+	 */
+	private void readAssignment(int start) {
+		int targetStart = start;
+		for (int index = 0; index < tokenCount; index++) {
+			if (tokenDepths[index] != 0 || !isOperator(index, "=")) {
+				continue;
+			}
+			if (targetStart == start && index == start + 1 && "__all__".equals(getText(start))) {
+				outline.setAllNames(readStringList(index + 1));
+			}
+			if (!readTargets(targetStart, index)) {
+				return;
+			}
+			targetStart = index + 1;
+		}
+	}
+
+	private boolean readTargets(int start, int end) {
+		List<Integer> nameIndexes = new ArrayList<Integer>();
+		if (end - start >= 2 && isType(start, TOKEN_NAME) && !isKeyword(start) && isOperator(start + 1, ":")) {
+			// an annotated assignment
+			nameIndexes.add(start);
+		} else {
+			int index = start;
+			boolean bracketed = isOperator(index, "(") || isOperator(index, "[");
+			if (bracketed) {
+				index++;
+			}
+			while (index < end && isType(index, TOKEN_NAME) && !isKeyword(index)) {
+				nameIndexes.add(index++);
+				if (index < end && isOperator(index, ",")) {
+					index++;
+				} else {
+					break;
+				}
+			}
+			if (bracketed && (isOperator(index, ")") || isOperator(index, "]"))) {
+				index++;
+			}
+			if (index != end || nameIndexes.isEmpty()) {
+				return false;
+			}
+		}
+		for (int nameIndex : nameIndexes) {
+			outline.addDefinition(newDefinition(DefinitionType.VARIABLE, nameIndex));
+		}
+		return true;
+	}
+
+	private boolean isKeyword(int index) {
+		return KEYWORDS.contains(getText(index));
+	}
+
+	private List<String> readStringList(int index) {
+		List<String> strings = new ArrayList<String>();
+		if (isType(index, TOKEN_STRING)) {
+			// a tuple without parentheses
+			for (; index < tokenCount; index++) {
+				if (isType(index, TOKEN_STRING)) {
+					strings.add(getStringValue(index));
+				} else if (!isOperator(index, ",")) {
+					return new ArrayList<String>();
+				}
+			}
+			return strings;
+		} else if (!isOperator(index, "[") && !isOperator(index, "(")) {
+			return strings;
+		}
+		String closing = isOperator(index, "[") ? "]" : ")";
+		for (index++; index < tokenCount; index++) {
+			if (isType(index, TOKEN_STRING)) {
+				strings.add(getStringValue(index));
+			} else if (isOperator(index, closing) && tokenDepths[index] == 0) {
+				// only a literal on its own counts, not ex. a concatenation
+				return index == tokenCount - 1 ? strings : new ArrayList<String>();
+			} else if (!isOperator(index, ",")) {
+				return new ArrayList<String>();
+			}
+		}
+		return strings;
+	}
+
+	private String getStringValue(int index) {
+		int start = tokenStarts[index];
+		int end = tokenEnds[index];
+		// skip any prefix, then the opening and closing quotes
+		while (source.charAt(start) != '"' && source.charAt(start) != '\'') {
+			start++;
+		}
+		char quote = source.charAt(start);
+		int quoteLength = end - start >= 6 && source.charAt(start + 1) == quote && source.charAt(start + 2) == quote ? 3
+				: 1;
+		if (end - start < 2 * quoteLength || source.charAt(end - 1) != quote) {
+			// unterminated
+			return source.substring(start + quoteLength, end);
+		}
+		return source.substring(start + quoteLength, end - quoteLength);
+	}
+
+	private PythonDefinition newDefinition(DefinitionType type, int nameIndex) {
+		return new PythonDefinition(type, getText(nameIndex), tokenLines[nameIndex], tokenColumns[nameIndex]);
+	}
+
+	private String getText(int index) {
+		return source.substring(tokenStarts[index], tokenEnds[index]);
+	}
+
+	private boolean isType(int index, int type) {
+		return index < tokenCount && tokenTypes[index] == type;
+	}
+
+	private boolean isToken(int index, int type, String text) {
+		return isType(index, type) && tokenEnds[index] - tokenStarts[index] == text.length()
+				&& source.startsWith(text, tokenStarts[index]);
+	}
+
+	private boolean isOperator(int index, String text) {
+		return isToken(index, TOKEN_OPERATOR, text);
+	}
+
+}